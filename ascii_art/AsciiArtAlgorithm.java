@@ -2,23 +2,50 @@ package ascii_art;
 
 
 import image.Image;
+import image_char_matching.CharsetSnapshot;
+import image_char_matching.ContrastNormalizer;
+import image_char_matching.ErrorDiffusionDitherer;
+import image_char_matching.SubCellEncoder;
 import image_char_matching.SubImgCharMatcher;
 import java.util.TreeSet;
-import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
 
 /**
  * AsciiArtAlgorithm class is responsible for creating the ASCII art of an image.
+ * A power of 2 resolution is rendered on the image padded to power of 2 dimensions, so that every
+ * sub-image is a whole square of pixels. Any other resolution is rendered directly on the original
+ * image, with sub-image edges that may fall inside pixels.
+ * In a sub-cell mode every sub-image is split further into sub-pixels, which are encoded straight into
+ * a Braille or block element character instead of being matched to the charset.
+ * The brightnesses and the ASCII art are kept in buffers that are reused while the grid keeps its size,
+ * so renders at an unchanged resolution allocate nothing. When a new image of the same size replaces
+ * the last one, only the rows of sub-images that span a changed row of pixels get new brightnesses. The
+ * rows of pixels are compared by their hashes, which costs far less than averaging them.
  */
 public class AsciiArtAlgorithm {
     private Image image;
-    private Image paddedImage;
     private int resolution;
     private boolean aChangeInCharsWasMade = false;
-    private boolean aChangeOfImageWasMade = true;
+    private boolean aChangeOfImageWasMade = false;
     private boolean aChangeOfResolutionWasMade = false;
     private char[][] currentAsciiArt;
     private final SubImgCharMatcher subImgCharMatcher;
-    private ArrayList<Double> subImageBrightnessesList = new ArrayList<>();
+    private double[] subImageBrightnesses = new double[0];
+    private double[] matchedBrightnesses = new double[0];
+    private ErrorDiffusionDitherer ditherer;
+    private Image brightnessesImage;
+    private int brightnessesResolution;
+    private SubCellEncoder.Mode brightnessesSubCellMode;
+    private int reusedSubImages;
+    private Image renderedImage;
+    private int renderedResolution;
+    private long renderedCharsetVersion;
+    private boolean dithering = false;
+    private boolean renderedDithering = false;
+    private ContrastNormalizer.Mode contrastMode = ContrastNormalizer.Mode.NONE;
+    private ContrastNormalizer.Mode renderedContrastMode = ContrastNormalizer.Mode.NONE;
+    private SubCellEncoder.Mode subCellMode = SubCellEncoder.Mode.NONE;
+    private SubCellEncoder.Mode renderedSubCellMode = SubCellEncoder.Mode.NONE;
 
     /**
      * Constructor to create an object of AsciiArtAlgorithm class.
@@ -27,34 +54,65 @@ public class AsciiArtAlgorithm {
      * @param charset char[]
      */
     public AsciiArtAlgorithm(Image image, int resolution, char[] charset) {
+        this(image, resolution, new SubImgCharMatcher(charset));
+    }
+
+    /**
+     * Constructor to create an object of AsciiArtAlgorithm class that shares a matcher with other
+     * renders. Charset edits made through the matcher are picked up by the next call to run.
+     * @param image Image object
+     * @param resolution int
+     * @param subImgCharMatcher SubImgCharMatcher holding the charset
+     */
+    public AsciiArtAlgorithm(Image image, int resolution, SubImgCharMatcher subImgCharMatcher) {
         this.image = image;
         this.resolution = resolution;
-        paddedImage = image.padImageToPowerOf2Dimensions();
-        subImgCharMatcher = new SubImgCharMatcher(charset);
-        run();
+        this.subImgCharMatcher = subImgCharMatcher;
     }
 
 
     /**
      * This method is called to create the ASCII art from the image.
-     * It checks if any change was made to the image, resolution or charset and
-     * updates the ASCII art accordingly.
+     * It compares the image, resolution and charset with the ones of the last render and only
+     * recomputes what differs, so any number of changes between two runs cost at most one render, and
+     * changes that cancel out cost nothing. The whole run uses a single version of the charset, even if
+     * the matcher is edited meanwhile. If the thread is interrupted, the run stops between two rows of
+     * sub-images and the next run starts over from the last finished render.
+     * The returned array is reused by later runs that render a grid of the same size, so it must be
+     * used or copied before the next run.
      * @return the ASCII art
+     * @throws CancellationException if the thread running the algorithm is interrupted
      */
     public char[][] run() {
-        if (aChangeOfImageWasMade) {
-            paddedImage = image.padImageToPowerOf2Dimensions();
-            currentAsciiArt = createNewImage(paddedImage);
-            aChangeOfImageWasMade = false;
-        }
-        if (aChangeInCharsWasMade) {
-            currentAsciiArt = matchNewBrightnesses();
-            aChangeInCharsWasMade = false;
+        CharsetSnapshot charset = subImgCharMatcher.getSnapshot();
+        boolean imageChanged = aChangeOfImageWasMade || image != renderedImage;
+        boolean gridChanged = imageChanged || aChangeOfResolutionWasMade ||
+                resolution != renderedResolution || subCellMode != renderedSubCellMode;
+        boolean contrastChanged = contrastMode != renderedContrastMode;
+        boolean matchChanged = aChangeInCharsWasMade || charset.getVersion() != renderedCharsetVersion ||
+                dithering != renderedDithering;
+        if (gridChanged || contrastChanged || matchChanged) {
+            // The buffers are overwritten in place, so a cancelled run must not leave them looking
+            // like a finished render.
+            renderedImage = null;
         }
-        if (aChangeOfResolutionWasMade) {
-            currentAsciiArt = createNewImage(paddedImage);
-            aChangeOfResolutionWasMade = false;
+        if (gridChanged) {
+            currentAsciiArt = createNewImage(charset);
+        } else if (contrastChanged) {
+            normalizeContrast();
+            currentAsciiArt = matchNewBrightnesses(charset);
+        } else if (matchChanged) {
+            currentAsciiArt = matchNewBrightnesses(charset);
         }
+        aChangeOfImageWasMade = false;
+        aChangeOfResolutionWasMade = false;
+        aChangeInCharsWasMade = false;
+        renderedImage = image;
+        renderedResolution = resolution;
+        renderedCharsetVersion = charset.getVersion();
+        renderedDithering = dithering;
+        renderedContrastMode = contrastMode;
+        renderedSubCellMode = subCellMode;
 
         return currentAsciiArt;
     }
@@ -63,48 +121,326 @@ public class AsciiArtAlgorithm {
     /**
      * This method creates an ASCII art from a new image. it is called when a new image is set
      * or when the resolution is changed.
-     * @param paddedImage Image object that is padded to power of 2 dimensions
+     * @param charset CharsetSnapshot to match the sub images with
      * @return char[][] new ASCII art
      */
+    private char[][] createNewImage(CharsetSnapshot charset) {
+        calculateNewBrightnesses();
+        normalizeContrast();
+        return matchNewBrightnesses(charset);
+    }
+
+    /**
+     * This method calculates the brightness of every sub-image, or sub-pixel in a sub-cell mode, of the
+     * current image into the brightness buffer.
+     */
+    private void calculateNewBrightnesses() {
+        Image previousImage = canReuseBrightnesses() ? brightnessesImage : null;
+        brightnessesImage = null;
+        reusedSubImages = 0;
+        if (subCellMode != SubCellEncoder.Mode.NONE) {
+            calculateSubCellBrightnesses(previousImage);
+        } else if (usesPaddedGrid()) {
+            calculatePaddedGridBrightnesses(image.getPaddedImage(),
+                    previousImage == null ? null : previousImage.getPaddedImage());
+        } else {
+            calculateFractionalGridBrightnesses(previousImage);
+        }
+        brightnessesImage = image;
+        brightnessesResolution = resolution;
+        brightnessesSubCellMode = subCellMode;
+    }
+
+    /**
+     * This method computes the brightnesses of the current image that the charset is matched with, the
+     * first half of a run, without matching them. With match, the halves of the renders of many images
+     * can run on different threads. The next run renders from scratch.
+     * @return double[] of a copy of the brightnesses after contrast normalization, row by row
+     * @throws CancellationException if the thread running the algorithm is interrupted
+     */
+    public double[] calculateBrightnesses() {
+        renderedImage = null;
+        calculateNewBrightnesses();
+        normalizeContrast();
+        return matchedBrightnesses.clone();
+    }
+
+    /**
+     * This method matches brightnesses computed by calculateBrightnesses to the current charset, the
+     * second half of a run, into a new ASCII art. It doesn't change the algorithm, so several threads
+     * may call it at once as long as the settings don't change.
+     * @param brightnesses double[] of the brightnesses, row by row
+     * @return char[][] of the ASCII art
+     * @throws CancellationException if the thread running the algorithm is interrupted
+     */
+    public char[][] match(double[] brightnesses) {
+        int rows = brightnesses.length / (resolution * subCellMode.getColumns() * subCellMode.getRows());
+        return matchBrightnesses(brightnesses, resolution, subImgCharMatcher.getSnapshot(),
+                new char[rows][resolution], new ErrorDiffusionDitherer(resolution));
+    }
+
+    /**
+     * This method computes the brightnesses the charset is matched with, by normalizing the contrast of
+     * the sub-image brightnesses. It is called when the brightnesses or the contrast mode change, not
+     * when the charset changes.
+     */
+    private void normalizeContrast() {
+        if (matchedBrightnesses.length != subImageBrightnesses.length) {
+            matchedBrightnesses = new double[subImageBrightnesses.length];
+        }
+        System.arraycopy(subImageBrightnesses, 0, matchedBrightnesses, 0, subImageBrightnesses.length);
+        if (contrastMode != ContrastNormalizer.Mode.NONE) {
+            ContrastNormalizer.fromBrightnesses(matchedBrightnesses, contrastMode)
+                    .apply(matchedBrightnesses, matchedBrightnesses);
+        }
+    }
+
+    /**
+     * This method checks if the brightness buffer holds the grid of another image of the same size, so
+     * the sub-images that didn't change keep their brightness. A forced change of image always
+     * recomputes every sub-image.
+     * @return boolean true if the brightnesses of unchanged sub-images can be kept
+     */
+    private boolean canReuseBrightnesses() {
+        return !aChangeOfImageWasMade && brightnessesImage != null && brightnessesImage != image &&
+                brightnessesImage.getWidth() == image.getWidth() &&
+                brightnessesImage.getHeight() == image.getHeight() &&
+                brightnessesResolution == resolution && brightnessesSubCellMode == subCellMode;
+    }
+
+    /**
+     * This method makes sure the brightness buffer fits a grid, reusing it if it has the right size.
+     * @param size int of the number of brightnesses in the grid
+     */
+    private void ensureBrightnessBuffer(int size) {
+        if (subImageBrightnesses.length != size) {
+            subImageBrightnesses = new double[size];
+        }
+    }
+
+    /**
+     * This method checks if a resolution can be rendered on an image, which is when every sub-image is
+     * at least a pixel wide. A power of 2 resolution is rendered on the padded image, so it may be as
+     * large as the padded width, and any other resolution as large as the original width.
+     * @param resolution int of the number of chars in every row
+     * @param imageWidth int of the width of the image before padding
+     * @return boolean true if the resolution can be rendered, false otherwise
+     */
+    public static boolean isValidResolution(int resolution, int imageWidth) {
+        if (resolution < 1) {
+            return false;
+        }
+        return resolution <= imageWidth ||
+                Integer.bitCount(resolution) == 1 && resolution <= Image.calculateNextPowerOf2(imageWidth);
+    }
 
-    private char[][] createNewImage(Image paddedImage) {
-        ArrayList<Image> subImages = paddedImage.divideImageIntoSubImages(resolution);
-        int rows = subImages.size() / resolution;
-        int cols = resolution;
-        char[][] asciiArt = new char[rows][cols];
-        ArrayList<Double> newSubImageBrightnessesList = new ArrayList<>();
+    /**
+     * This method checks if the current resolution divides the padded image into whole sub-images.
+     * @return boolean true if the resolution is a power of 2 that fits the padded image
+     */
+    private boolean usesPaddedGrid() {
+        return Integer.bitCount(resolution) == 1 && resolution <= image.getPaddedWidth();
+    }
+
+    /**
+     * This method calculates the brightness of every sub-image of the padded image, row by row, straight
+     * from the pixels of the padded image. Rows of sub-images equal to those of the previous image are
+     * skipped.
+     * @param paddedImage Image object that is padded to power of 2 dimensions
+     * @param previousPaddedImage Image whose brightnesses are in the buffer, or null to compute all
+     */
+    private void calculatePaddedGridBrightnesses(Image paddedImage, Image previousPaddedImage) {
+        int subImageSize = paddedImage.getWidth() / resolution;
+        int rows = paddedImage.getHeight() / subImageSize;
+        ensureBrightnessBuffer(rows * resolution);
         for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                Image subImage = subImages.get(i * cols + j);
-                double averageBrightness = subImage.calculateAverageBrightnessOfImage();
-                newSubImageBrightnessesList.add(averageBrightness);
-                char bestCharMatch = subImgCharMatcher.getCharByImageBrightness(averageBrightness);
-                asciiArt[i][j] = bestCharMatch;
+            checkInterrupted();
+            int top = i * subImageSize;
+            if (previousPaddedImage != null &&
+                    paddedImage.rowsEqual(previousPaddedImage, top, top + subImageSize)) {
+                reusedSubImages += resolution;
+                continue;
+            }
+            for (int j = 0; j < resolution; j++) {
+                subImageBrightnesses[i * resolution + j] = paddedImage.calculateAverageBrightnessOfSquare(
+                        j * subImageSize, top, subImageSize);
+            }
+        }
+    }
+
+    /**
+     * This method calculates the brightness of every sub-image of the original image, when the
+     * resolution does not divide it into whole pixels. Sub-images are as close to square as possible
+     * while the grid covers the image exactly. Rows of sub-images equal to those of the previous image
+     * are skipped.
+     * @param previousImage Image whose brightnesses are in the buffer, or null to compute all
+     */
+    private void calculateFractionalGridBrightnesses(Image previousImage) {
+        double subImageWidth = (double) image.getWidth() / resolution;
+        int rows = Math.max(1, (int) Math.round(image.getHeight() / subImageWidth));
+        double subImageHeight = (double) image.getHeight() / rows;
+        ensureBrightnessBuffer(rows * resolution);
+        for (int i = 0; i < rows; i++) {
+            checkInterrupted();
+            double top = i * subImageHeight;
+            double bottom = (i + 1) * subImageHeight;
+            if (previousImage != null && image.rowsEqual(previousImage, top, bottom)) {
+                reusedSubImages += resolution;
+                continue;
+            }
+            for (int j = 0; j < resolution; j++) {
+                subImageBrightnesses[i * resolution + j] = image.calculateAverageBrightnessOfRegion(
+                        j * subImageWidth, top, (j + 1) * subImageWidth, bottom);
+            }
+        }
+    }
+
+    /**
+     * This method calculates the brightness of every sub-pixel of every sub-image, row by row of
+     * sub-pixels. The grid of sub-images is the same as without sub-cells, on the padded image for a
+     * power of 2 resolution and on the original image otherwise. Rows of sub-pixels equal to those of
+     * the previous image are skipped.
+     * @param previousImage Image whose brightnesses are in the buffer, or null to compute all
+     */
+    private void calculateSubCellBrightnesses(Image previousImage) {
+        Image source = usesPaddedGrid() ? image.getPaddedImage() : image;
+        Image previousSource = previousImage == null ? null :
+                usesPaddedGrid() ? previousImage.getPaddedImage() : previousImage;
+        double subImageWidth = (double) source.getWidth() / resolution;
+        int rows = Math.max(1, (int) Math.round(source.getHeight() / subImageWidth));
+        int subPixelColumns = resolution * subCellMode.getColumns();
+        int subPixelRows = rows * subCellMode.getRows();
+        double subPixelWidth = (double) source.getWidth() / subPixelColumns;
+        double subPixelHeight = (double) source.getHeight() / subPixelRows;
+        ensureBrightnessBuffer(subPixelRows * subPixelColumns);
+        for (int i = 0; i < subPixelRows; i++) {
+            checkInterrupted();
+            double top = i * subPixelHeight;
+            double bottom = (i + 1) * subPixelHeight;
+            if (previousSource != null && source.rowsEqual(previousSource, top, bottom)) {
+                reusedSubImages += subPixelColumns;
+                continue;
+            }
+            for (int j = 0; j < subPixelColumns; j++) {
+                subImageBrightnesses[i * subPixelColumns + j] = source.calculateAverageBrightnessOfRegion(
+                        j * subPixelWidth, top, (j + 1) * subPixelWidth, bottom);
             }
         }
-        this.subImageBrightnessesList = newSubImageBrightnessesList;
-        return asciiArt;
     }
 
     /**
      * This method matches the new brightnesses of the sub images to the charset. it is called
-     * when a change is made to the charset.
+     * when a change is made to the charset. The art of the last run is overwritten if it has the size of
+     * the grid.
+     * @param charset CharsetSnapshot to match the brightnesses with
      * @return char[][] new ASCII art
      */
-    private char[][] matchNewBrightnesses() {
-        int rows = subImageBrightnessesList.size() / resolution;
-        int cols = resolution;
-        char[][] asciiArt = new char[rows][cols];
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                double averageBrightness = subImageBrightnessesList.get(i * cols + j);
-                char bestCharMatch = subImgCharMatcher.getCharByImageBrightness(averageBrightness);
-                asciiArt[i][j] = bestCharMatch;
+    private char[][] matchNewBrightnesses(CharsetSnapshot charset) {
+        int rows = matchedBrightnesses.length /
+                (resolution * subCellMode.getColumns() * subCellMode.getRows());
+        char[][] asciiArt = currentAsciiArt;
+        if (asciiArt == null || asciiArt.length != rows || asciiArt[0].length != resolution) {
+            asciiArt = new char[rows][resolution];
+        }
+        if (ditherer == null || ditherer.getColumns() != resolution) {
+            ditherer = new ErrorDiffusionDitherer(resolution);
+        } else {
+            ditherer.reset();
+        }
+        return matchBrightnesses(matchedBrightnesses, resolution, charset, asciiArt, ditherer);
+    }
+
+    /**
+     * This method matches a grid of brightnesses to the charset, with error diffusion if dithering is
+     * on. In a sub-cell mode the brightnesses are of sub-pixels and are encoded instead, without
+     * dithering.
+     * @param brightnesses double[] of the brightnesses, row by row
+     * @param cols int of the number of sub images in every row
+     * @param charset CharsetSnapshot to match the brightnesses with
+     * @param asciiArt char[][] of the size of the art, to write the art to
+     * @param ditherer ErrorDiffusionDitherer with no carried error, used if dithering is on
+     * @return char[][] the given ASCII art
+     */
+    private char[][] matchBrightnesses(double[] brightnesses, int cols, CharsetSnapshot charset,
+                                       char[][] asciiArt, ErrorDiffusionDitherer ditherer) {
+        if (subCellMode != SubCellEncoder.Mode.NONE) {
+            return SubCellEncoder.encode(brightnesses, cols, subCellMode, asciiArt);
+        }
+        int rows = asciiArt.length;
+        if (dithering) {
+            for (int i = 0; i < rows; i++) {
+                checkInterrupted();
+                ditherer.ditherRow(brightnesses, i * cols, charset, asciiArt[i]);
             }
+            return asciiArt;
         }
+        checkInterrupted();
+        charset.matchAll(brightnesses, asciiArt);
         return asciiArt;
     }
 
+    /**
+     * This method stops a render whose thread was interrupted. It is called once per row of sub-images,
+     * so a cancelled render stops within the time of a single row.
+     * @throws CancellationException if the current thread is interrupted
+     */
+    static void checkInterrupted() {
+        if (Thread.interrupted()) {
+            throw new CancellationException("Render cancelled.");
+        }
+    }
+
+    /**
+     * This method checks if the next run has to compute the brightness of the sub-images again, which
+     * is the slow part of a render, because the image, the resolution or the sub-cell mode changed.
+     * @return boolean true if the next run computes new brightnesses, false otherwise
+     */
+    public boolean needsNewBrightnesses() {
+        return aChangeOfImageWasMade || image != renderedImage || aChangeOfResolutionWasMade ||
+                resolution != renderedResolution || subCellMode != renderedSubCellMode;
+    }
+
+    /**
+     * This method creates a quick low resolution preview of the ASCII art that the next run will
+     * create. The preview has the same framing as the full art, but the brightness of each of its
+     * sub-images is estimated from a fixed number of pixels, so it takes time in proportion to the
+     * size of the preview rather than to the size of the image. It does not change the state of the
+     * algorithm.
+     * @param previewResolution int of the number of chars in every row of the preview
+     * @param samplesPerSide int of the number of pixels sampled along each side of a sub-image
+     * @return char[][] the preview
+     */
+    public char[][] createPreview(int previewResolution, int samplesPerSide) {
+        double frameWidth = image.getWidth();
+        double frameHeight = image.getHeight();
+        double offsetX = 0;
+        double offsetY = 0;
+        if (usesPaddedGrid()) {
+            frameWidth = image.getPaddedWidth();
+            frameHeight = image.getPaddedHeight();
+            offsetX = (image.getPaddedWidth() - image.getWidth()) / 2;
+            offsetY = (image.getPaddedHeight() - image.getHeight()) / 2;
+        }
+        int rows = Math.max(1, (int) Math.round(frameHeight / (frameWidth / previewResolution)));
+        int gridColumns = previewResolution * subCellMode.getColumns();
+        int gridRows = rows * subCellMode.getRows();
+        double subImageWidth = frameWidth / gridColumns;
+        double subImageHeight = frameHeight / gridRows;
+        double[] brightnesses = new double[gridRows * gridColumns];
+        for (int i = 0; i < gridRows; i++) {
+            checkInterrupted();
+            for (int j = 0; j < gridColumns; j++) {
+                brightnesses[i * gridColumns + j] = image.estimateAverageBrightnessOfRegion(
+                        j * subImageWidth - offsetX, i * subImageHeight - offsetY,
+                        (j + 1) * subImageWidth - offsetX, (i + 1) * subImageHeight - offsetY,
+                        samplesPerSide);
+            }
+        }
+        ContrastNormalizer.fromBrightnesses(brightnesses, contrastMode).apply(brightnesses, brightnesses);
+        return matchBrightnesses(brightnesses, previewResolution, subImgCharMatcher.getSnapshot(),
+                new char[rows][previewResolution], new ErrorDiffusionDitherer(previewResolution));
+    }
+
 
     /**
      * This method adds a character to the charset.
@@ -114,6 +450,14 @@ public class AsciiArtAlgorithm {
         subImgCharMatcher.addChar(c);
     }
 
+    /**
+     * This method adds several characters to the charset as a single edit.
+     * @param chars the chars to add
+     */
+    public void addChars(char[] chars) {
+        subImgCharMatcher.addChars(chars);
+    }
+
     /**
      * This method removes a character from the charset.
      * @param c the char to remove
@@ -122,6 +466,14 @@ public class AsciiArtAlgorithm {
         subImgCharMatcher.removeChar(c);
     }
 
+    /**
+     * This method removes several characters from the charset as a single edit.
+     * @param chars the chars to remove
+     */
+    public void removeChars(char[] chars) {
+        subImgCharMatcher.removeChars(chars);
+    }
+
     /**
      * This method sets a new image to the object.
      * @param newImage Image object to set as the new image
@@ -138,6 +490,66 @@ public class AsciiArtAlgorithm {
         this.resolution = newResolution;
     }
 
+    /**
+     * This method sets whether the sub-images are matched with Floyd-Steinberg error diffusion, which
+     * spreads the difference between each sub-image and its character to the neighboring sub-images.
+     * @param dithering true to diffuse the error, false to match every sub-image on its own
+     */
+    public void setDithering(boolean dithering) {
+        this.dithering = dithering;
+    }
+
+    /**
+     * This method returns whether the sub-images are matched with error diffusion.
+     * @return boolean true if dithering is on, false otherwise
+     */
+    public boolean isDithering() {
+        return dithering;
+    }
+
+    /**
+     * This method sets how the contrast of the sub-image brightnesses is normalized before they are
+     * matched to the charset.
+     * @param contrastMode ContrastNormalizer.Mode to use
+     */
+    public void setContrastMode(ContrastNormalizer.Mode contrastMode) {
+        this.contrastMode = contrastMode;
+    }
+
+    /**
+     * This method returns how the contrast of the sub-image brightnesses is normalized.
+     * @return ContrastNormalizer.Mode in use
+     */
+    public ContrastNormalizer.Mode getContrastMode() {
+        return contrastMode;
+    }
+
+    /**
+     * This method sets how every sub-image is split into sub-pixels. A change is picked up by the next
+     * run.
+     * @param subCellMode SubCellEncoder.Mode to use, NONE to match whole sub-images to the charset
+     */
+    public void setSubCellMode(SubCellEncoder.Mode subCellMode) {
+        this.subCellMode = subCellMode;
+    }
+
+    /**
+     * This method returns how every sub-image is split into sub-pixels.
+     * @return SubCellEncoder.Mode in use
+     */
+    public SubCellEncoder.Mode getSubCellMode() {
+        return subCellMode;
+    }
+
+    /**
+     * This method returns the number of sub-images whose brightness was kept from the previous image by
+     * the last run that computed brightnesses.
+     * @return int of the number of reused sub-images
+     */
+    public int getReusedSubImages() {
+        return reusedSubImages;
+    }
+
     /**
      * This method returns the current resolution.
      * @return int current resolution
@@ -151,7 +563,7 @@ public class AsciiArtAlgorithm {
      * @return int width of the image
      */
     public int getImageWidth() {
-        return paddedImage.getWidth();
+        return image.getPaddedWidth();
     }
 
     /**
@@ -159,7 +571,16 @@ public class AsciiArtAlgorithm {
      * @return int height of the image
      */
     public int getImageHeight() {
-        return paddedImage.getHeight();
+        return image.getPaddedHeight();
+    }
+
+    /**
+     * This method returns the width of the image before padding, which is the largest resolution
+     * that can be set unless it is a power of 2.
+     * @return int width of the original image
+     */
+    public int getOriginalImageWidth() {
+        return image.getWidth();
     }
 
     /**
@@ -180,8 +601,7 @@ public class AsciiArtAlgorithm {
      * @return boolean true if the charset contains the char, false otherwise
      */
     public boolean containsChar(char c) {
-        TreeSet<Character> currentChars = subImgCharMatcher.getCurrentCharsInMap();
-        return currentChars.contains(c);
+        return subImgCharMatcher.getSnapshot().contains(c);
     }
 
     /**
@@ -189,29 +609,29 @@ public class AsciiArtAlgorithm {
      * @return boolean true if the current chars in the charset is empty, false otherwise
      */
     public boolean isCurrentCharsMapEmpty() {
-        return subImgCharMatcher.getCurrentCharsInMap().isEmpty();
+        return subImgCharMatcher.getSnapshot().isEmpty();
     }
 
 
     /**
-     * This method sets the boolean aChangeInCharsWasMade parameter,
-     * which is used to check if a change in charset was made.
+     * This method sets the boolean aChangeInCharsWasMade parameter, which forces the next run to match
+     * the charset again. Changes of the charset are detected without it.
      */
     public void setAChangeInCharsWasMade(boolean aChangeInCharsWasMade) {
         this.aChangeInCharsWasMade = aChangeInCharsWasMade;
     }
 
     /**
-     * This method sets the boolean aChangeOfImageWasMade parameter,
-     * which is used to check if a change of image was made.
+     * This method sets the boolean aChangeOfImageWasMade parameter, which forces the next run to process
+     * the image again. Setting a new image is detected without it.
      */
     public void setAChangeOfImageWasMade(boolean aChangeOfImageWasMade) {
         this.aChangeOfImageWasMade = aChangeOfImageWasMade;
     }
 
     /**
-     * This method sets the boolean aChangeOfResolutionWasMade parameter,
-     * which is used to check if a change of resolution was made.
+     * This method sets the boolean aChangeOfResolutionWasMade parameter, which forces the next run to
+     * divide the image again. Changes of the resolution are detected without it.
      */
     public void setAChangeOfResolutionWasMade(boolean aChangeOfResolutionWasMade) {
         this.aChangeOfResolutionWasMade = aChangeOfResolutionWasMade;
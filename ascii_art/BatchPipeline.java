@@ -0,0 +1,426 @@
+package ascii_art;
+
+import ascii_output.HtmlAsciiOutput;
+import image.Image;
+import image.ImageBandReader;
+import image.ImageBudget;
+import image_char_matching.CharsetSnapshot;
+import image_char_matching.ContrastNormalizer;
+import image_char_matching.SubCellEncoder;
+import image_char_matching.SubImgCharMatcher;
+
+import javax.imageio.ImageIO;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * BatchPipeline renders every image of a list to an HTML ASCII art next to it, in four stages that run
+ * at the same time: decoding the image, computing its brightnesses, matching them to the charset and
+ * writing the art. Every stage has threads of its own and takes its images from a bounded queue, so
+ * reading files and writing arts overlap with the rendering, and a stage that falls behind blocks the
+ * stages before it instead of letting images pile up in memory.
+ * With a render cache, the decoding stage looks up the art of every image by its file and the settings
+ * first, and an art found in the cache goes straight to the writing stage. Arts that are rendered are
+ * added to the cache.
+ * Every stage keeps metrics of its queue and of the time its threads spend on images, which show the
+ * stage that limits the throughput.
+ */
+public class BatchPipeline {
+    private static final String OUTPUT_SUFFIX = ".html";
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private final RenderCache cache;
+    private final SubImgCharMatcher matcher;
+    private final int resolution;
+    private final boolean dithering;
+    private final ContrastNormalizer.Mode contrastMode;
+    private final SubCellEncoder.Mode subCellMode;
+    private final List<Stage> stages = new ArrayList<>();
+    private final AtomicInteger failedImages = new AtomicInteger();
+    private final AtomicInteger cachedImages = new AtomicInteger();
+    private long elapsedNanos;
+
+    /**
+     * An image on its way through the pipeline, filled in by the stages one after the other.
+     */
+    private static class Job {
+        private static final Job END = new Job(null);
+
+        private final Path file;
+        private String cacheKey;
+        private CharsetSnapshot charset;
+        private Image image;
+        private double[] brightnesses;
+        private char[][] art;
+
+        private Job(Path file) {
+            this.file = file;
+        }
+    }
+
+    /**
+     * The work a stage does on an image.
+     */
+    private interface StageWork {
+        /**
+         * This method does the work of the stage on an image.
+         * @param job Job of the image
+         * @param algorithm AsciiArtAlgorithm of the thread
+         * @throws IOException if the image can't be read or its art can't be written
+         */
+        void process(Job job, AsciiArtAlgorithm algorithm) throws IOException;
+    }
+
+    /**
+     * A stage of the pipeline, with its input queue, threads and metrics. Images whose art was found in
+     * the cache skip the stages that render arts.
+     */
+    public class Stage {
+        private final String name;
+        private final int threads;
+        private final boolean rendersArt;
+        private final BlockingQueue<Job> queue;
+        private final StageWork work;
+        private final AtomicInteger runningThreads;
+        private final AtomicLong processedImages = new AtomicLong();
+        private final AtomicLong busyNanos = new AtomicLong();
+        private final AtomicLong queuedImages = new AtomicLong();
+        private final AtomicLong queueDepthSum = new AtomicLong();
+        private final AtomicInteger maxQueueDepth = new AtomicInteger();
+        private Stage next;
+
+        private Stage(String name, int threads, boolean rendersArt, int queueCapacity, StageWork work) {
+            this.name = name;
+            this.threads = threads;
+            this.rendersArt = rendersArt;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.work = work;
+            this.runningThreads = new AtomicInteger(threads);
+        }
+
+        /**
+         * This method puts an image into the queue of the stage, waiting while the queue is full.
+         * @param job Job of the image
+         * @throws InterruptedException if the thread is interrupted while waiting
+         */
+        private void put(Job job) throws InterruptedException {
+            queue.put(job);
+            if (job != Job.END) {
+                int depth = queue.size();
+                queuedImages.incrementAndGet();
+                queueDepthSum.addAndGet(depth);
+                maxQueueDepth.accumulateAndGet(depth, Math::max);
+            }
+        }
+
+        /**
+         * This method takes images from the queue until the end of the batch, and passes them on to the
+         * next stage, or to the first stage after it that doesn't render arts if the art of the image was
+         * cached. The last thread of the stage to finish passes the end on to the next stage.
+         */
+        private void serve() {
+            AsciiArtAlgorithm algorithm = new AsciiArtAlgorithm(null, resolution, matcher);
+            algorithm.setDithering(dithering);
+            algorithm.setContrastMode(contrastMode);
+            algorithm.setSubCellMode(subCellMode);
+            try {
+                Job job;
+                while ((job = queue.take()) != Job.END) {
+                    long start = System.nanoTime();
+                    try {
+                        work.process(job, algorithm);
+                    } catch (CancellationException e) {
+                        return;
+                    } catch (IOException | RuntimeException e) {
+                        Logger.getGlobal().warning(String.format("Failed to render \"%s\" in %s stage",
+                                job.file, name));
+                        failedImages.incrementAndGet();
+                        continue;
+                    } finally {
+                        busyNanos.addAndGet(System.nanoTime() - start);
+                    }
+                    processedImages.incrementAndGet();
+                    Stage target = next;
+                    while (target != null && target.rendersArt && job.art != null) {
+                        target = target.next;
+                    }
+                    if (target != null) {
+                        target.put(job);
+                    }
+                }
+                if (runningThreads.decrementAndGet() == 0 && next != null) {
+                    for (int i = 0; i < next.threads; i++) {
+                        next.put(Job.END);
+                    }
+                }
+            } catch (InterruptedException e) {
+                // The batch was cancelled.
+            }
+        }
+
+        /**
+         * This method returns the name of the stage.
+         * @return String of the name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * This method returns the number of threads of the stage.
+         * @return int of the number of threads
+         */
+        public int getThreads() {
+            return threads;
+        }
+
+        /**
+         * This method returns the number of images the stage finished.
+         * @return long of the number of images
+         */
+        public long getProcessedImages() {
+            return processedImages.get();
+        }
+
+        /**
+         * This method returns the number of images the stage could finish per second if its threads were
+         * never left waiting for images, the throughput of the stage when it is the bottleneck.
+         * @return double of the images per second
+         */
+        public double getBusyThroughput() {
+            long nanos = busyNanos.get();
+            return nanos == 0 ? 0 : processedImages.get() * threads * NANOS_PER_SECOND / nanos;
+        }
+
+        /**
+         * This method returns the share of the time of the batch the threads of the stage spent on
+         * images. A stage near 1 is the bottleneck.
+         * @return double of the utilization, from 0 to 1
+         */
+        public double getUtilization() {
+            return elapsedNanos == 0 ? 0 : (double) busyNanos.get() / ((long) threads * elapsedNanos);
+        }
+
+        /**
+         * This method returns the average number of images in the queue of the stage, right after an
+         * image was put into it. A queue that is usually full belongs to the bottleneck.
+         * @return double of the average queue depth
+         */
+        public double getAverageQueueDepth() {
+            long queued = queuedImages.get();
+            return queued == 0 ? 0 : (double) queueDepthSum.get() / queued;
+        }
+
+        /**
+         * This method returns the largest number of images that were in the queue of the stage at once.
+         * @return int of the maximal queue depth
+         */
+        public int getMaxQueueDepth() {
+            return maxQueueDepth.get();
+        }
+    }
+
+    /**
+     * Constructor to create an object of BatchPipeline class.
+     * @param budget ImageBudget every image is loaded within
+     * @param cache RenderCache to look up and keep the arts in, or null to render every image
+     * @param matcher SubImgCharMatcher holding the charset
+     * @param resolution int of the number of characters in every row
+     * @param dithering boolean true to dither the matching
+     * @param contrastMode Mode of normalizing the contrast
+     * @param subCellMode Mode of splitting the cells into sub-pixels
+     * @param decodeThreads int of the number of threads decoding images
+     * @param brightnessThreads int of the number of threads computing brightnesses
+     * @param matchThreads int of the number of threads matching brightnesses to the charset
+     * @param writeThreads int of the number of threads writing arts
+     * @param queueCapacity int of the number of images that may wait for every stage
+     */
+    public BatchPipeline(ImageBudget budget, RenderCache cache, SubImgCharMatcher matcher, int resolution,
+                         boolean dithering, ContrastNormalizer.Mode contrastMode,
+                         SubCellEncoder.Mode subCellMode, int decodeThreads, int brightnessThreads,
+                         int matchThreads, int writeThreads, int queueCapacity) {
+        this.cache = cache;
+        this.matcher = matcher;
+        this.resolution = resolution;
+        this.dithering = dithering;
+        this.contrastMode = contrastMode;
+        this.subCellMode = subCellMode;
+        String fontName = matcher.getFont();
+        stages.add(new Stage("decode", decodeThreads, false, queueCapacity, (job, algorithm) -> {
+            if (cache != null && findCachedArt(job, budget)) {
+                return;
+            }
+            job.image = budget.load(job.file.toString());
+        }));
+        stages.add(new Stage("brightness", brightnessThreads, true, queueCapacity, (job, algorithm) -> {
+            algorithm.setImage(job.image);
+            algorithm.setAChangeOfImageWasMade(true);
+            job.brightnesses = algorithm.calculateBrightnesses();
+            job.image = null;
+        }));
+        stages.add(new Stage("match", matchThreads, true, queueCapacity, (job, algorithm) -> {
+            job.art = algorithm.match(job.brightnesses);
+            job.brightnesses = null;
+            if (job.cacheKey != null && matcher.getSnapshot() == job.charset) {
+                cache.put(job.cacheKey, job.art);
+            }
+        }));
+        stages.add(new Stage("write", writeThreads, false, queueCapacity, (job, algorithm) ->
+                new HtmlAsciiOutput(getOutputPath(job.file).toString(), fontName).write(job.art)));
+        for (int i = 0; i < stages.size() - 1; i++) {
+            stages.get(i).next = stages.get(i + 1);
+        }
+    }
+
+    /**
+     * This method looks up the art of an image in the cache, by the content of its file, the size it is
+     * loaded in within the budget and the settings of the pipeline. The key is kept in the job, so an art
+     * that isn't cached is stored under it once it is rendered.
+     * @param job Job of the image
+     * @param budget ImageBudget the image is loaded within
+     * @return boolean true if the art was found, and is in the job
+     * @throws IOException if the image file can't be read
+     */
+    private boolean findCachedArt(Job job, ImageBudget budget) throws IOException {
+        String filename = job.file.toString();
+        int width;
+        int height;
+        try (ImageBandReader reader = new ImageBandReader(filename)) {
+            int scaleFactor = budget.getScaleFactor(reader.getWidth(), reader.getHeight());
+            width = ImageBudget.scaleDimension(reader.getWidth(), scaleFactor);
+            height = ImageBudget.scaleDimension(reader.getHeight(), scaleFactor);
+        }
+        job.charset = matcher.getSnapshot();
+        job.cacheKey = cache.createKey(filename, resolution, job.charset,
+                RenderCache.describeMode(width, height, dithering, contrastMode, subCellMode));
+        job.art = cache.get(job.cacheKey);
+        if (job.art == null) {
+            return false;
+        }
+        cachedImages.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * This method lists the image files of a directory, by the suffixes ImageIO can read.
+     * @param directory Path of the directory
+     * @return List of Path of the images, in the order of their names
+     * @throws IOException if the directory can't be listed
+     */
+    public static List<Path> listImages(Path directory) throws IOException {
+        Set<String> imageSuffixes = new HashSet<>();
+        for (String suffix : ImageIO.getReaderFileSuffixes()) {
+            imageSuffixes.add(suffix.toLowerCase(Locale.ROOT));
+        }
+        List<Path> images = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int dot = name.lastIndexOf('.');
+                if (Files.isRegularFile(file) && dot >= 0 &&
+                        imageSuffixes.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT))) {
+                    images.add(file);
+                }
+            }
+        }
+        images.sort(null);
+        return images;
+    }
+
+    /**
+     * This method returns the path of the ASCII art of an image, the image path with an html suffix.
+     * @param file Path of the image
+     * @return Path of the ASCII art
+     */
+    public static Path getOutputPath(Path file) {
+        return file.resolveSibling(file.getFileName() + OUTPUT_SUFFIX);
+    }
+
+    /**
+     * This method renders a batch of images and waits until all of them are written. A pipeline runs a
+     * single batch. Images that fail in any stage are logged and counted, and the rest of the batch goes
+     * on.
+     * @param files List of Path of the images
+     * @throws CancellationException if the thread is interrupted, which stops all the stages
+     */
+    public void run(List<Path> files) {
+        long start = System.nanoTime();
+        List<Thread> threads = new ArrayList<>();
+        Stage last = stages.get(stages.size() - 1);
+        CountDownLatch lastStageDone = new CountDownLatch(last.threads);
+        for (Stage stage : stages) {
+            for (int i = 0; i < stage.threads; i++) {
+                Thread thread = new Thread(stage == last ? () -> {
+                    stage.serve();
+                    lastStageDone.countDown();
+                } : stage::serve, "batch-" + stage.name + "-" + i);
+                thread.setDaemon(true);
+                threads.add(thread);
+                thread.start();
+            }
+        }
+        Stage first = stages.get(0);
+        try {
+            for (Path file : files) {
+                first.put(new Job(file));
+            }
+            for (int i = 0; i < first.threads; i++) {
+                first.put(Job.END);
+            }
+            lastStageDone.await();
+        } catch (InterruptedException e) {
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+            throw new CancellationException("Batch cancelled.");
+        } finally {
+            elapsedNanos = System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * This method returns the stages of the pipeline, in order.
+     * @return List of Stage of the stages
+     */
+    public List<Stage> getStages() {
+        return stages;
+    }
+
+    /**
+     * This method returns the number of images that failed in some stage.
+     * @return int of the number of failed images
+     */
+    public int getFailedImages() {
+        return failedImages.get();
+    }
+
+    /**
+     * This method returns the number of images whose art was found in the cache.
+     * @return int of the number of cached images
+     */
+    public int getCachedImages() {
+        return cachedImages.get();
+    }
+
+    /**
+     * This method returns the wall time of the batch.
+     * @return long of the time, in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+}
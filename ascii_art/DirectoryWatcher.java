@@ -0,0 +1,317 @@
+package ascii_art;
+
+import ascii_output.HtmlAsciiOutput;
+import image.Image;
+import image.ImageBudget;
+import image_char_matching.ContrastNormalizer;
+import image_char_matching.SubCellEncoder;
+import image_char_matching.SubImgCharMatcher;
+
+import javax.imageio.ImageIO;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * DirectoryWatcher keeps an HTML ASCII art next to every image file of a directory. Image files that are
+ * created or modified are rendered again once their events stop arriving for a short while, so a file
+ * that is still being written is rendered once. Renders run on a fixed number of threads with a bounded
+ * queue, and when the queue is full the thread that schedules renders runs them itself, which slows the
+ * handling of further events instead of piling up work.
+ * Every file keeps its own AsciiArtAlgorithm, up to a fixed number of files, so a file that changed in
+ * part only gets new brightnesses for the sub-images that changed.
+ */
+public class DirectoryWatcher implements Closeable {
+    private static final String OUTPUT_SUFFIX = ".html";
+    private static final int KEPT_ALGORITHMS = 16;
+
+    private final Path directory;
+    private final ImageBudget budget;
+    private final SubImgCharMatcher matcher;
+    private final int resolution;
+    private final boolean dithering;
+    private final ContrastNormalizer.Mode contrastMode;
+    private final SubCellEncoder.Mode subCellMode;
+    private final long debounceMillis;
+    private final Set<String> imageSuffixes = new HashSet<>();
+    private final WatchService watchService;
+    private final ScheduledExecutorService scheduler;
+    private final ThreadPoolExecutor renderExecutor;
+    private final Thread watchThread;
+    private final ConcurrentHashMap<Path, ScheduledFuture<?>> pendingFiles = new ConcurrentHashMap<>();
+    private final Set<Path> queuedFiles = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger renders = new AtomicInteger();
+    private final LinkedHashMap<Path, AsciiArtAlgorithm> algorithms =
+            new LinkedHashMap<Path, AsciiArtAlgorithm>(KEPT_ALGORITHMS, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Path, AsciiArtAlgorithm> eldest) {
+                    return size() > KEPT_ALGORITHMS;
+                }
+            };
+
+    /**
+     * Constructor to create an object of DirectoryWatcher class. The directory is watched right away,
+     * and images without an ASCII art newer than themselves are rendered.
+     * @param directory String of the directory to watch
+     * @param budget ImageBudget every image is loaded within
+     * @param matcher SubImgCharMatcher holding the charset, whose edits apply to later renders
+     * @param resolution int of the number of characters in every row
+     * @param dithering boolean true to dither the matching
+     * @param contrastMode Mode of normalizing the contrast
+     * @param subCellMode Mode of splitting the cells into sub-pixels
+     * @param threads int of the number of images rendered at the same time
+     * @param queueCapacity int of the number of renders that may wait for a thread
+     * @param debounceMillis long of the time without events of a file before it is rendered
+     * @throws IOException if the directory can't be watched
+     */
+    public DirectoryWatcher(String directory, ImageBudget budget, SubImgCharMatcher matcher, int resolution,
+                            boolean dithering, ContrastNormalizer.Mode contrastMode,
+                            SubCellEncoder.Mode subCellMode, int threads, int queueCapacity,
+                            long debounceMillis) throws IOException {
+        this.directory = Paths.get(directory).toAbsolutePath().normalize();
+        if (!Files.isDirectory(this.directory)) {
+            throw new IOException("Not a directory: " + directory);
+        }
+        this.budget = budget;
+        this.matcher = matcher;
+        this.resolution = resolution;
+        this.dithering = dithering;
+        this.contrastMode = contrastMode;
+        this.subCellMode = subCellMode;
+        this.debounceMillis = debounceMillis;
+        for (String suffix : ImageIO.getReaderFileSuffixes()) {
+            imageSuffixes.add(suffix.toLowerCase(Locale.ROOT));
+        }
+        watchService = this.directory.getFileSystem().newWatchService();
+        this.directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        scheduler = Executors.newSingleThreadScheduledExecutor(DirectoryWatcher::newDaemonThread);
+        renderExecutor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), DirectoryWatcher::newDaemonThread,
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        watchThread = newDaemonThread(this::watch);
+        watchThread.start();
+        scanDirectory();
+    }
+
+    /**
+     * This method returns the watched directory.
+     * @return Path of the directory
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * This method returns the number of renders started since the watcher started, including those
+     * that failed.
+     * @return int of the number of renders
+     */
+    public int getRenders() {
+        return renders.get();
+    }
+
+    /**
+     * This method creates the threads of the watcher, which must not keep the program alive.
+     * @param runnable Runnable of the task of the thread
+     * @return Thread of the new thread
+     */
+    private static Thread newDaemonThread(Runnable runnable) {
+        Thread thread = new Thread(runnable);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * This method takes the events of the directory until the watcher is closed. When events were lost,
+     * the whole directory is checked for images that changed since their ASCII art was written.
+     */
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        scanDirectory();
+                    } else {
+                        schedule(directory.resolve((Path) event.context()));
+                    }
+                }
+                if (!key.reset()) {
+                    Logger.getGlobal().warning(String.format("Stopped watching \"%s\"", directory));
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // The watcher was closed.
+        }
+    }
+
+    /**
+     * This method schedules a render of every image of the directory whose ASCII art is missing or
+     * older than the image.
+     */
+    private void scanDirectory() {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                if (isImage(file) && !isUpToDate(file)) {
+                    schedule(file);
+                }
+            }
+        } catch (IOException e) {
+            Logger.getGlobal().warning(String.format("Failed to list \"%s\"", directory));
+        }
+    }
+
+    /**
+     * This method checks if the ASCII art of an image is newer than the image.
+     * @param file Path of the image
+     * @return boolean true if the ASCII art exists and is newer, false otherwise
+     */
+    private static boolean isUpToDate(Path file) {
+        Path output = getOutputPath(file);
+        try {
+            return Files.exists(output) &&
+                    Files.getLastModifiedTime(output).compareTo(Files.getLastModifiedTime(file)) >= 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * This method checks if a file is an image, by its suffix.
+     * @param file Path of the file
+     * @return boolean true if an image reader is registered for the suffix, false otherwise
+     */
+    private boolean isImage(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 && imageSuffixes.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * This method returns the path of the ASCII art of an image, the image path with an html suffix.
+     * @param file Path of the image
+     * @return Path of the ASCII art
+     */
+    private static Path getOutputPath(Path file) {
+        return file.resolveSibling(file.getFileName() + OUTPUT_SUFFIX);
+    }
+
+    /**
+     * This method schedules the render of an image after the debounce time, replacing a render of it
+     * that is scheduled but didn't start yet.
+     * @param file Path of the image
+     */
+    private void schedule(Path file) {
+        if (!isImage(file)) {
+            return;
+        }
+        pendingFiles.compute(file, (path, pending) -> {
+            if (pending != null) {
+                pending.cancel(false);
+            }
+            return scheduler.schedule(() -> submit(path), debounceMillis, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    /**
+     * This method queues the render of an image, unless it is already queued. A queued render reads the
+     * file when it starts, so it covers every change made before that.
+     * @param file Path of the image
+     */
+    private void submit(Path file) {
+        pendingFiles.remove(file);
+        if (!queuedFiles.add(file)) {
+            return;
+        }
+        renderExecutor.execute(() -> {
+            queuedFiles.remove(file);
+            render(file);
+        });
+    }
+
+    /**
+     * This method renders an image to its ASCII art. Renders of the same file never run at the same
+     * time, as they share its AsciiArtAlgorithm.
+     * @param file Path of the image
+     */
+    private void render(Path file) {
+        renders.incrementAndGet();
+        AsciiArtAlgorithm algorithm;
+        synchronized (algorithms) {
+            algorithm = algorithms.get(file);
+        }
+        Image image;
+        try {
+            image = budget.load(file.toString());
+        } catch (IOException | RuntimeException e) {
+            Logger.getGlobal().warning(String.format("Failed to read image \"%s\"", file));
+            return;
+        }
+        if (!AsciiArtAlgorithm.isValidResolution(resolution, image.getWidth())) {
+            Logger.getGlobal().warning(String.format("Image \"%s\" is narrower than the resolution", file));
+            return;
+        }
+        if (algorithm == null) {
+            algorithm = new AsciiArtAlgorithm(image, resolution, matcher);
+            algorithm.setDithering(dithering);
+            algorithm.setContrastMode(contrastMode);
+            algorithm.setSubCellMode(subCellMode);
+            synchronized (algorithms) {
+                AsciiArtAlgorithm existing = algorithms.putIfAbsent(file, algorithm);
+                algorithm = existing != null ? existing : algorithm;
+            }
+        }
+        synchronized (algorithm) {
+            if (subCellMode == SubCellEncoder.Mode.NONE && algorithm.isCurrentCharsMapEmpty()) {
+                Logger.getGlobal().warning(String.format("Did not render \"%s\", charset is empty", file));
+                return;
+            }
+            algorithm.setImage(image);
+            char[][] art = algorithm.run();
+            new HtmlAsciiOutput(getOutputPath(file).toString(), matcher.getFont()).out(art);
+            Logger.getGlobal().fine(String.format("Rendered \"%s\", reused %d sub-images", file,
+                    algorithm.getReusedSubImages()));
+        }
+    }
+
+    /**
+     * This method stops watching the directory. Renders that already started finish, the rest are
+     * dropped.
+     */
+    @Override
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            Logger.getGlobal().warning(String.format("Failed to stop watching \"%s\"", directory));
+        }
+        watchThread.interrupt();
+        scheduler.shutdownNow();
+        renderExecutor.shutdown();
+        renderExecutor.getQueue().clear();
+    }
+}
@@ -0,0 +1,249 @@
+package ascii_art;
+
+import ascii_output.BinaryAsciiArtReader;
+import ascii_output.BinaryAsciiOutput;
+import image_char_matching.CharsetSnapshot;
+import image_char_matching.ContrastNormalizer;
+import image_char_matching.SubCellEncoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * RenderCache keeps rendered ASCII arts in a directory, so they survive restarts of the program. Every
+ * art is stored as a binary ASCII art file named by a hash of the content of the image file, the
+ * resolution, the fingerprint of the charset and the matching mode, so a hit needs neither decoding the
+ * image nor rendering it.
+ * Files are written to a temporary file and moved into place, so a reader never sees a partial file.
+ * When the files take more than the size limit, the least recently used ones are deleted.
+ */
+public class RenderCache {
+    private static final String ENTRY_SUFFIX = ".asc";
+    private static final String TEMP_PREFIX = "render";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final int HASH_BUFFER_SIZE = 1 << 16;
+    private static final String MODE_FORMAT = "%dx%d,dither=%b,contrast=%s,cells=%s";
+
+    private final Path directory;
+    private final long maxBytes;
+    private final HashMap<Path, FileHash> fileHashes = new HashMap<>();
+
+    /**
+     * The content hash of an image file, together with what identifies the version of the file it was
+     * calculated for.
+     */
+    private static class FileHash {
+        private final long size;
+        private final FileTime lastModified;
+        private final String hash;
+
+        private FileHash(long size, FileTime lastModified, String hash) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * Constructor to create an object of RenderCache class.
+     * @param directory String of the directory of the cache, created if it doesn't exist
+     * @param maxBytes long of the size limit of the cached files
+     * @throws IOException if the directory can't be created
+     */
+    public RenderCache(String directory, long maxBytes) throws IOException {
+        this.directory = Files.createDirectories(Paths.get(directory));
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * This method describes the settings of a render that change the result, other than its image file,
+     * resolution and charset, as the mode of createKey.
+     * @param width int of the width of the image once loaded within its budget
+     * @param height int of the height of the image once loaded within its budget
+     * @param dithering boolean true if the matching is dithered
+     * @param contrastMode Mode of normalizing the contrast
+     * @param subCellMode Mode of splitting the cells into sub-pixels
+     * @return String of the mode
+     */
+    public static String describeMode(int width, int height, boolean dithering,
+                                      ContrastNormalizer.Mode contrastMode, SubCellEncoder.Mode subCellMode) {
+        return String.format(MODE_FORMAT, width, height, dithering, contrastMode, subCellMode);
+    }
+
+    /**
+     * This method creates the key of a render.
+     * @param imagePath String of the path of the image file
+     * @param resolution int of the resolution
+     * @param charset CharsetSnapshot the image is matched with
+     * @param mode String describing every other setting that changes the result
+     * @return String of the key
+     * @throws IOException if the image file can't be read
+     */
+    public synchronized String createKey(String imagePath, int resolution, CharsetSnapshot charset,
+                                         String mode) throws IOException {
+        String description = hashFile(Paths.get(imagePath)) + '|' + resolution + '|' +
+                Long.toHexString(charset.getFingerprint()) + '|' + mode;
+        return toHex(newDigest().digest(description.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * This method returns the cached art of a key, and marks it as recently used.
+     * @param key String created by createKey
+     * @return char[][] of the art, or null if it isn't cached
+     */
+    public synchronized char[][] get(String key) {
+        Path entry = directory.resolve(key + ENTRY_SUFFIX);
+        if (!Files.isRegularFile(entry)) {
+            return null;
+        }
+        try (BinaryAsciiArtReader reader = new BinaryAsciiArtReader(entry.toString())) {
+            char[][] art = reader.readAll();
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            return art;
+        } catch (IOException | RuntimeException e) {
+            Logger.getGlobal().warning(String.format("Dropping unreadable cache entry \"%s\"", entry));
+            deleteQuietly(entry);
+            return null;
+        }
+    }
+
+    /**
+     * This method stores the art of a key, and then deletes the least recently used arts while the cache
+     * is over its size limit. Failures are logged, as the cache is only an optimization.
+     * @param key String created by createKey
+     * @param art char[][] of the art
+     */
+    public synchronized void put(String key, char[][] art) {
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(directory, TEMP_PREFIX, TEMP_SUFFIX);
+            new BinaryAsciiOutput(temp.toString()).write(art);
+            Path entry = directory.resolve(key + ENTRY_SUFFIX);
+            try {
+                Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+            }
+            temp = null;
+            evict();
+        } catch (IOException e) {
+            Logger.getGlobal().warning(String.format("Failed to cache render in \"%s\"", directory));
+        } finally {
+            if (temp != null) {
+                deleteQuietly(temp);
+            }
+        }
+    }
+
+    /**
+     * This method deletes the least recently used arts until the cache fits its size limit.
+     * @throws IOException if the directory can't be listed
+     */
+    private void evict() throws IOException {
+        List<Path> entries = new ArrayList<>();
+        long totalBytes = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + ENTRY_SUFFIX)) {
+            for (Path entry : stream) {
+                entries.add(entry);
+                totalBytes += Files.size(entry);
+            }
+        }
+        if (totalBytes <= maxBytes) {
+            return;
+        }
+        HashMap<Path, FileTime> lastUsed = new HashMap<>();
+        for (Path entry : entries) {
+            lastUsed.put(entry, Files.getLastModifiedTime(entry));
+        }
+        entries.sort((first, second) -> lastUsed.get(first).compareTo(lastUsed.get(second)));
+        for (Path entry : entries) {
+            if (totalBytes <= maxBytes) {
+                break;
+            }
+            long size = Files.size(entry);
+            deleteQuietly(entry);
+            totalBytes -= size;
+        }
+    }
+
+    /**
+     * This method returns the hash of the content of a file. The hash is kept for as long as the size
+     * and modification time of the file stay the same, so an unchanged file is read only once.
+     * @param file Path of the file
+     * @return String of the hash in hex
+     * @throws IOException if the file can't be read
+     */
+    private String hashFile(Path file) throws IOException {
+        Path key = file.toAbsolutePath().normalize();
+        long size = Files.size(key);
+        FileTime lastModified = Files.getLastModifiedTime(key);
+        FileHash known = fileHashes.get(key);
+        if (known != null && known.size == size && known.lastModified.equals(lastModified)) {
+            return known.hash;
+        }
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[HASH_BUFFER_SIZE];
+        try (InputStream input = Files.newInputStream(key)) {
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        String hash = toHex(digest.digest());
+        fileHashes.put(key, new FileHash(size, lastModified, hash));
+        return hash;
+    }
+
+    /**
+     * This method creates the digest used for all hashes of the cache.
+     * @return MessageDigest of SHA-256
+     */
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * This method formats bytes as lower case hex.
+     * @param bytes byte[] to format
+     * @return String of two hex digits per byte
+     */
+    private static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(String.format("%02x", b));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * This method deletes a file, ignoring failures.
+     * @param file Path of the file
+     */
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            Logger.getGlobal().warning(String.format("Failed to delete \"%s\"", file));
+        }
+    }
+}
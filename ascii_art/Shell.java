@@ -1,25 +1,94 @@
 package ascii_art;
 
 import ascii_output.AsciiOutput;
+import ascii_output.BinaryAsciiOutput;
 import ascii_output.ConsoleAsciiOutput;
 import ascii_output.HtmlAsciiOutput;
+import ascii_output.RasterAsciiOutput;
+import ascii_output.StreamingAsciiOutput;
+import ascii_output.TrackingPrintStream;
+import distributed.BandCoordinator;
 import image.Image;
+import image.ImageBandReader;
+import image.ImageBudget;
+import image.ImagePrefetcher;
+import image_char_matching.CharConverter;
+import image_char_matching.CharsetSnapshot;
+import image_char_matching.ContrastNormalizer;
+import image_char_matching.SubCellEncoder;
+import image_char_matching.SubImgCharMatcher;
 
+import java.awt.GraphicsEnvironment;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * The Shell class is the main class of the program. It is responsible for the user interface and
  * for the communication between the user and the rest of the program.
+ * Renders run on a single background thread, so the shell keeps reading commands while a render is in
+ * progress. The shell keeps the settings of the next render itself, and only the render thread uses the
+ * AsciiArtAlgorithm, applying the settings captured when the render was requested.
  */
 public class Shell {
 
     private AsciiArtAlgorithm asciiArtAlgorithm;
+    private SubImgCharMatcher subImgCharMatcher;
     private AsciiOutput asciiOutput;
+    private String outputLocation;
+    private long startNanos;
+    private boolean firstRenderLogged = false;
+    private boolean deferImageLoading = false;
+    private boolean progressive = false;
+    private boolean waitForRenders = false;
+    private Future<Image> currentImage;
+    private int imageWidth;
+    private int imageHeight;
+    private ImagePrefetcher imagePrefetcher;
+    private ImageBudget imageBudget;
+    private int resolution;
+    private boolean dithering = false;
+    private ContrastNormalizer.Mode contrastMode = ContrastNormalizer.Mode.NONE;
+    private SubCellEncoder.Mode subCellMode = SubCellEncoder.Mode.NONE;
+    private ExecutorService renderExecutor;
+    private ScheduledExecutorService timeoutScheduler;
+    private Future<?> currentRender;
+    private long renderTimeoutMillis = 0;
+    private String pendingImagePath;
+    private String currentImagePath;
+    private RenderCache renderCache;
+    private DirectoryWatcher directoryWatcher;
+    private BandCoordinator bandCoordinator;
+    private Viewport viewport;
+    private final ViewportRenderer viewportRenderer = new ViewportRenderer();
     private static final String TERMINATION_STRING = "exit";
+    private static final String SCRIPT_COMMENT = "#";
+    private static final String SCRIPT_FILE_ERROR_MESSAGE = "Did not execute due to problem with " +
+            "script file.";
+    private static final String FIRST_RENDER_LOG_MESSAGE = "Time to first render: %.1f ms.";
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
     private static final String DEFAULT_INPUT_IMAGE_PATH = "cat.jpeg";
     private static final String DEFAULT_OUTPUT_IMAGE_PATH = "out.html";
+    private static final String DEFAULT_OUTPUT_BINARY_PATH = "out.asc";
+    private static final String DEFAULT_OUTPUT_PNG_PATH = "out.png";
+    private static final String DEFAULT_OUTPUT_JPEG_PATH = "out.jpg";
+    private static final int MAX_RASTER_CELL_SIZE = 64;
     private static final char SPACE_CHAR = ' ';
-    private static final String DEFAULT_FONT = "Courier New";
     private static final String USER_INPUT = ">>> ";
     private static final String DISPLAY_CHARS = "chars";
     private static final String ADD_CHARS = "add";
@@ -28,18 +97,122 @@ public class Shell {
     private static final String IMAGE = "image";
     private static final String OUTPUT = "output";
     private static final String ASCII_ART = "asciiArt";
+    private static final String STREAM = "stream";
+    private static final String PREFETCH = "prefetch";
+    private static final int PREFETCH_CAPACITY = 4;
+    private static final int PREFETCH_THREADS = 2;
+    private static final String MAX_PIXELS_PROPERTY = "ascii_art.maxPixels";
+    private static final String MAX_BYTES_PROPERTY = "ascii_art.maxBytes";
+    private static final long DEFAULT_MAX_PIXELS = 16_000_000;
+    private static final int DEFAULT_MAX_BYTES_HEAP_DIVISOR = 8;
+    private static final String DOWNSCALE_MESSAGE = "Image downscaled by a factor of %d to %dx%d to fit" +
+            " the memory budget.";
+    private static final String CACHE_DIR_PROPERTY = "ascii_art.cacheDir";
+    private static final String CACHE_MAX_BYTES_PROPERTY = "ascii_art.cacheMaxBytes";
+    private static final long DEFAULT_CACHE_MAX_BYTES = 64L << 20;
+    private static final String CACHE_ERROR_MESSAGE = "Did not execute due to problem with cache directory.";
+    private static final String WATCH = "watch";
+    private static final int WATCH_THREADS = 2;
+    private static final int WATCH_QUEUE_CAPACITY = 16;
+    private static final long WATCH_DEBOUNCE_MILLIS = 300;
+    private static final String WATCH_MESSAGE = "Watching %s.";
+    private static final String WATCH_STOPPED_MESSAGE = "Stopped watching %s.";
+    private static final String WATCH_ERROR_MESSAGE = "Did not watch due to problem with directory.";
+    private static final String NO_WATCH_MESSAGE = "Did not stop watching. No directory is watched.";
+    private static final String WORKERS = "workers";
+    private static final String CHANGE_WORKERS_MESSAGE = "Workers set to %d.";
+    private static final String INCORRECT_WORKERS_FORMAT_MESSAGE = "Did not change workers due to" +
+            " incorrect format.";
+    private static final String WORKERS_START_ERROR_MESSAGE = "Did not change workers due to problem" +
+            " with starting workers.";
+    private static final String WORKERS_ERROR_MESSAGE = "Did not execute due to problem with workers.";
+    private static final String VIEW = "view";
+    private static final String PAN = "pan";
+    private static final String ZOOM = "zoom";
+    private static final String ZOOM_IN = "in";
+    private static final String ZOOM_OUT = "out";
+    private static final String VIEWPORT_LOG_MESSAGE = "Viewport at zoom %d rendered, %d of %d cells" +
+            " computed.";
+    private static final String INCORRECT_PAN_FORMAT_MESSAGE = "Did not pan due to incorrect format.";
+    private static final String PAN_BOUNDARIES_MESSAGE = "Did not pan due to exceeding boundaries.";
+    private static final String INCORRECT_ZOOM_FORMAT_MESSAGE = "Did not zoom due to incorrect format.";
+    private static final String ZOOM_BOUNDARIES_MESSAGE = "Did not zoom due to exceeding boundaries.";
+    private static final String FONT = "font";
+    private static final String CHANGE_FONT_MESSAGE = "Font set to %s.";
+    private static final String UNKNOWN_FONT_MESSAGE = "Did not change font due to unknown font.";
+    private static final String BATCH = "batch";
+    private static final String BATCH_DECODE_THREADS_PROPERTY = "ascii_art.batch.decodeThreads";
+    private static final String BATCH_BRIGHTNESS_THREADS_PROPERTY = "ascii_art.batch.brightnessThreads";
+    private static final String BATCH_MATCH_THREADS_PROPERTY = "ascii_art.batch.matchThreads";
+    private static final String BATCH_WRITE_THREADS_PROPERTY = "ascii_art.batch.writeThreads";
+    private static final String BATCH_QUEUE_CAPACITY_PROPERTY = "ascii_art.batch.queueCapacity";
+    private static final int DEFAULT_BATCH_DECODE_THREADS = 2;
+    private static final int DEFAULT_BATCH_BRIGHTNESS_THREADS = 2;
+    private static final int DEFAULT_BATCH_MATCH_THREADS = 1;
+    private static final int DEFAULT_BATCH_WRITE_THREADS = 1;
+    private static final int DEFAULT_BATCH_QUEUE_CAPACITY = 4;
+    private static final String BATCH_MESSAGE = "Rendered %d of %d images in %.1f ms.";
+    private static final String BATCH_STAGE_MESSAGE = "Stage %s: %d threads, %d images, %.1f images/s when" +
+            " busy, %.0f%% busy, queue depth %.1f average, %d max.";
+    private static final String BATCH_ERROR_MESSAGE = "Did not run batch due to problem with directory.";
+    private static final String BATCH_THREADS_ERROR_MESSAGE = "Did not run batch due to incorrect thread" +
+            " counts.";
+    private static final String BUDGET_ERROR_MESSAGE = "Did not execute due to incorrect memory budget.";
+    private static final String DITHER = "dither";
+    private static final String CONTRAST = "contrast";
+    private static final String PROGRESSIVE = "progressive";
+    private static final String CANCEL = "cancel";
+    private static final String TIMEOUT = "timeout";
+    private static final String CONTRAST_NONE = "none";
+    private static final String CONTRAST_EQUALIZE = "equalize";
+    private static final String CONTRAST_STRETCH = "stretch";
+    private static final String CELLS = "cells";
+    private static final String CELLS_NONE = "none";
+    private static final String CELLS_BRAILLE = "braille";
+    private static final String CELLS_QUADRANT = "quadrant";
+    private static final String ON = "on";
+    private static final String OFF = "off";
     private static final String CONSOLE = "console";
     private static final String HTML = "html";
+    private static final String BINARY = "binary";
+    private static final String PNG = "png";
+    private static final String JPEG = "jpeg";
     private static final String ALL_CHARS = "all";
     private static final String SPACE = "space";
     private static final String DASH = "-";
     private static final String UP_COMMAND = "up";
     private static final String DOWN_COMMAND = "down";
     private static final String CHANGE_RESOLUTION_MESSAGE = "Resolution set to %d.";
+    private static final String CHANGE_DITHERING_MESSAGE = "Dithering set to %s.";
+    private static final String CHANGE_CONTRAST_MESSAGE = "Contrast set to %s.";
+    private static final String CHANGE_CELLS_MESSAGE = "Cells set to %s.";
+    private static final String CHANGE_PROGRESSIVE_MESSAGE = "Progressive rendering set to %s.";
+    private static final String INCORRECT_PROGRESSIVE_FORMAT_MESSAGE = "Did not change progressive " +
+            "rendering due to incorrect format.";
+    private static final String RENDER_TIME_LOG_MESSAGE = "Time to first output: %.1f ms, total render " +
+            "time: %.1f ms.";
+    private static final String CHANGE_TIMEOUT_MESSAGE = "Render timeout set to %d ms.";
+    private static final String INCORRECT_TIMEOUT_FORMAT_MESSAGE = "Did not change render timeout due to" +
+            " incorrect format.";
+    private static final String RENDER_CANCELLED_MESSAGE = "Render cancelled.";
+    private static final String NO_RENDER_MESSAGE = "Did not cancel. No render in progress.";
+    private static final String RENDER_TIMEOUT_MESSAGE = "Did not execute. Render timed out.";
+    private static final String RENDER_ERROR_MESSAGE = "Did not execute due to problem with render.";
+    private static final String RENDER_ERROR_LOG_MESSAGE = "Render failed";
+    private static final int PREVIEW_RESOLUTION_DIVISOR = 4;
+    private static final int PREVIEW_SAMPLES_PER_SIDE = 4;
+    private static final String INCORRECT_CONTRAST_FORMAT_MESSAGE = "Did not change contrast due to" +
+            " incorrect format.";
+    private static final String INCORRECT_CELLS_FORMAT_MESSAGE = "Did not change cells due to" +
+            " incorrect format.";
+    private static final String INCORRECT_DITHERING_FORMAT_MESSAGE = "Did not change dithering due to" +
+            " incorrect format.";
     private static final String ADD_ERROR_MESSAGE = "Did not add due to incorrect format.";
     private static final String REMOVE_ERROR_MESSAGE = "Did not remove due to incorrect format.";
     private static final String IMAGE_FILE_ERROR_MESSAGE = "Did not execute due to problem with image file.";
     private static final String INVALID_COMMAND_MESSAGE = "Did not execute due to incorrect command.";
+    private static final String STREAM_OUTPUT_ERROR_MESSAGE = "Did not execute. Output method does " +
+            "not support streaming.";
     private static final String EMPTY_CHARSET_MESSAGE = "Did not execute. Charset is empty.";
     private static final String INCORRECT_FORMAT_MESSAGE = "Did not change output method due to incorrect" +
             " format.";
@@ -55,55 +228,325 @@ public class Shell {
 
     /**
      * The run method is the main method of the program. It is responsible for the user interface and
-     * for the communication between the user and the rest of the program.
+     * for the communication between the user and the rest of the program. On an interactive console the
+     * output is tracked, so a progressive render can replace its preview in place even when the prompt
+     * or other messages were printed below it.
      */
     public void run() {
+        TrackingPrintStream console = null;
+        if (System.console() != null) {
+            console = new TrackingPrintStream(System.out);
+            System.setOut(console);
+        }
+        if (!initialize(false)) {
+            return;
+        }
+        System.out.print(USER_INPUT);
+        String input = readInput(console);
+        while (!input.equals(TERMINATION_STRING)) {
+            executeCommand(input);
+            System.out.print(USER_INPUT);
+            input = readInput(console);
+        }
+        shutdown();
+    }
+
+    /**
+     * The readInput method reads a line the user typed, and records it in the tracked console, if any,
+     * since the terminal echoed it.
+     *
+     * @param console the tracked console, or null.
+     * @return the line.
+     */
+    private static String readInput(TrackingPrintStream console) {
+        String input = KeyboardInput.readLine();
+        if (console != null) {
+            console.recordInput(input);
+        }
+        return input;
+    }
+
+    /**
+     * The runScript method runs the commands of a script file in order, without prompting, until the
+     * end of the file or an exit command. Blank lines and lines starting with # are skipped.
+     * Image files are only checked when their command is read and are decoded when an ASCII art is
+     * needed, unless they were prefetched, so an image that is replaced before the next asciiArt command
+     * is never decoded. Together with AsciiArtAlgorithm only recomputing what changed since its last
+     * render, a run of image, resolution and charset commands costs a single render. Each render is
+     * finished before the next command is run.
+     *
+     * @param scriptPath the path of the script file.
+     * @throws IOException if the script file can't be read.
+     */
+    public void runScript(String scriptPath) throws IOException {
+        List<String> lines = Files.readAllLines(Paths.get(scriptPath));
+        if (!initialize(true)) {
+            return;
+        }
+        for (String line : lines) {
+            String input = line.trim();
+            if (input.equals(TERMINATION_STRING)) {
+                break;
+            }
+            if (input.isEmpty() || input.startsWith(SCRIPT_COMMENT)) {
+                continue;
+            }
+            executeCommand(input);
+        }
+        shutdown();
+    }
+
+    /**
+     * The initialize method loads the default image and charset and resets the output to the console.
+     *
+     * @param deferImageLoading whether image commands should only check the file and leave decoding
+     *                          until an ASCII art is needed.
+     * @return true if the default image was loaded, false otherwise.
+     */
+    private boolean initialize(boolean deferImageLoading) {
+        startNanos = System.nanoTime();
+        firstRenderLogged = false;
+        this.deferImageLoading = deferImageLoading;
+        waitForRenders = deferImageLoading;
+        progressive = false;
+        dithering = false;
+        contrastMode = ContrastNormalizer.Mode.NONE;
+        subCellMode = SubCellEncoder.Mode.NONE;
+        renderTimeoutMillis = 0;
+        pendingImagePath = null;
+        currentImagePath = DEFAULT_INPUT_IMAGE_PATH;
+        currentRender = null;
+        directoryWatcher = null;
+        bandCoordinator = null;
+        viewport = null;
         try {
-            Image defaultImage = new Image(DEFAULT_INPUT_IMAGE_PATH);
-            asciiArtAlgorithm = new AsciiArtAlgorithm(defaultImage, DEFAULT_RESOLUSION, defaultCharSet);
+            imageBudget = new ImageBudget(Long.getLong(MAX_PIXELS_PROPERTY, DEFAULT_MAX_PIXELS),
+                    Long.getLong(MAX_BYTES_PROPERTY,
+                            Runtime.getRuntime().maxMemory() / DEFAULT_MAX_BYTES_HEAP_DIVISOR));
+        } catch (IllegalArgumentException e) {
+            System.out.println(BUDGET_ERROR_MESSAGE);
+            return false;
+        }
+        String cacheDirectory = System.getProperty(CACHE_DIR_PROPERTY);
+        try {
+            renderCache = cacheDirectory == null ? null : new RenderCache(cacheDirectory,
+                    Long.getLong(CACHE_MAX_BYTES_PROPERTY, DEFAULT_CACHE_MAX_BYTES));
+        } catch (IOException e) {
+            System.out.println(CACHE_ERROR_MESSAGE);
+            return false;
+        }
+        try {
+            Image defaultImage = imageBudget.load(DEFAULT_INPUT_IMAGE_PATH);
+            currentImage = CompletableFuture.completedFuture(defaultImage);
+            imageWidth = defaultImage.getWidth();
+            imageHeight = defaultImage.getHeight();
+            resolution = DEFAULT_RESOLUSION;
+            subImgCharMatcher = new SubImgCharMatcher(defaultCharSet);
+            asciiArtAlgorithm = new AsciiArtAlgorithm(defaultImage, resolution, subImgCharMatcher);
             asciiOutput = new ConsoleAsciiOutput();
+            outputLocation = CONSOLE;
         } catch (IOException e) {
             System.out.println(IMAGE_FILE_ERROR_MESSAGE);
-            return;
+            return false;
         }
-        System.out.print(USER_INPUT);
-        String input = KeyboardInput.readLine();
-        while (!input.equals(TERMINATION_STRING)) {
+        renderExecutor = Executors.newSingleThreadExecutor(Shell::newDaemonThread);
+        timeoutScheduler = Executors.newSingleThreadScheduledExecutor(Shell::newDaemonThread);
+        imagePrefetcher = new ImagePrefetcher(PREFETCH_CAPACITY, PREFETCH_THREADS, imageBudget);
+        return true;
+    }
+
+    /**
+     * The newDaemonThread method creates the threads of the render executors, which must not keep the
+     * program alive.
+     *
+     * @param runnable the task of the thread.
+     * @return the new thread.
+     */
+    private static Thread newDaemonThread(Runnable runnable) {
+        Thread thread = new Thread(runnable);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * The shutdown method waits for the current render to finish and stops the render executors, the
+     * image prefetcher, the directory watcher and the worker processes.
+     */
+    private void shutdown() {
+        awaitRender();
+        if (directoryWatcher != null) {
+            directoryWatcher.close();
+        }
+        if (bandCoordinator != null) {
+            bandCoordinator.close();
+        }
+        renderExecutor.shutdown();
+        timeoutScheduler.shutdownNow();
+        imagePrefetcher.close();
+    }
+
+    /**
+     * The submitRender method cancels the current render, if any, and starts a new one on the render
+     * thread. If a timeout is set, the render is cancelled when it runs out, and the timeout is cancelled
+     * when the render ends first. A render that fails is reported by the render thread.
+     *
+     * @param render the render to run.
+     */
+    private void submitRender(Runnable render) {
+        cancelRender();
+        AtomicBoolean timedOut = new AtomicBoolean(false);
+        AtomicReference<ScheduledFuture<?>> timeout = new AtomicReference<>();
+        Future<?> future = renderExecutor.submit(() -> {
             try {
-                if (input.equals(DISPLAY_CHARS)) {
-                    asciiArtAlgorithm.printCurrentChars();
+                render.run();
+            } catch (CancellationException e) {
+                if (timedOut.get()) {
+                    System.out.println(RENDER_TIMEOUT_MESSAGE);
+                }
+            } catch (RuntimeException e) {
+                reportRenderError(e);
+            } finally {
+                ScheduledFuture<?> pendingTimeout = timeout.get();
+                if (pendingTimeout != null) {
+                    pendingTimeout.cancel(false);
+                }
+            }
+        });
+        currentRender = future;
+        if (renderTimeoutMillis > 0) {
+            timeout.set(timeoutScheduler.schedule(() -> {
+                timedOut.set(true);
+                future.cancel(true);
+            }, renderTimeoutMillis, TimeUnit.MILLISECONDS));
+            if (future.isDone()) {
+                timeout.get().cancel(false);
+            }
+        }
+        if (waitForRenders) {
+            awaitRender();
+        }
+    }
 
-                } else if (input.startsWith(ADD_CHARS) && input.charAt(3) == SPACE_CHAR) {
-                    String charToAdd = input.substring(4);
-                    addChar(charToAdd);
+    /**
+     * The cancelRender method cancels the current render, if it is still running.
+     *
+     * @return true if a render was cancelled, false otherwise.
+     */
+    private boolean cancelRender() {
+        return currentRender != null && currentRender.cancel(true);
+    }
+
+    /**
+     * The awaitRender method waits until the current render, if any, is finished or cancelled.
+     */
+    private void awaitRender() {
+        if (currentRender == null) {
+            return;
+        }
+        try {
+            currentRender.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            reportRenderError(e.getCause());
+        } catch (CancellationException e) {
+            // A cancelled render was reported by the cancel command or by its timeout.
+        }
+    }
+
+    /**
+     * The reportRenderError method prints that a render failed, and logs the reason.
+     *
+     * @param error the reason the render failed.
+     */
+    private static void reportRenderError(Throwable error) {
+        System.out.println(RENDER_ERROR_MESSAGE);
+        Logger.getGlobal().log(Level.WARNING, RENDER_ERROR_LOG_MESSAGE, error);
+    }
 
-                } else if (input.startsWith(REMOVE_CHARS)) {
-                    removeChar(input.substring(REMOVE_CHARS.length()).trim());
+    /**
+     * The executeCommand method runs a single command and prints its error message, if any.
+     *
+     * @param input the command to run.
+     */
+    private void executeCommand(String input) {
+        try {
+            if (input.equals(DISPLAY_CHARS)) {
+                asciiArtAlgorithm.printCurrentChars();
 
-                } else if (input.startsWith(RESOLUTION)) {
+            } else if (input.startsWith(ADD_CHARS) && input.charAt(3) == SPACE_CHAR) {
+                String charToAdd = input.substring(4);
+                addChar(charToAdd);
 
-                    String newResolution = input.substring(RESOLUTION.length()).trim();
-                    changeResolution(newResolution);
-                } else if (input.startsWith(IMAGE)) {
+            } else if (input.startsWith(REMOVE_CHARS)) {
+                removeChar(input.substring(REMOVE_CHARS.length()).trim());
 
-                    setNewImage(input.substring(IMAGE.length()).trim());
-                } else if (input.startsWith(OUTPUT)) {
+            } else if (input.startsWith(RESOLUTION)) {
 
-                    changeOutputLocation(input.substring(OUTPUT.length()).trim());
-                } else if (input.startsWith(ASCII_ART)) {
+                String newResolution = input.substring(RESOLUTION.length()).trim();
+                changeResolution(newResolution);
+            } else if (input.startsWith(IMAGE)) {
 
-                    runAlgorithm();
-                } else {
-                    throw new IllegalArgumentException(INVALID_COMMAND_MESSAGE);
-                }
-            } catch (IllegalArgumentException e) {
-                System.out.println(e.getMessage());
-            } catch (IOException e) {
-                asciiArtAlgorithm.setAChangeOfImageWasMade(false);
-                System.out.println(e.getMessage());
+                setNewImage(input.substring(IMAGE.length()).trim());
+            } else if (input.startsWith(PREFETCH)) {
+
+                prefetchImage(input.substring(PREFETCH.length()).trim());
+            } else if (input.startsWith(OUTPUT)) {
+
+                changeOutputLocation(input.substring(OUTPUT.length()).trim());
+            } else if (input.startsWith(ASCII_ART)) {
+
+                runAlgorithm();
+            } else if (input.startsWith(STREAM)) {
+
+                runStreamingAlgorithm(input.substring(STREAM.length()).trim());
+            } else if (input.startsWith(DITHER)) {
+
+                changeDithering(input.substring(DITHER.length()).trim());
+            } else if (input.startsWith(CONTRAST)) {
+
+                changeContrast(input.substring(CONTRAST.length()).trim());
+            } else if (input.startsWith(CELLS)) {
+
+                changeCells(input.substring(CELLS.length()).trim());
+            } else if (input.startsWith(PROGRESSIVE)) {
+
+                changeProgressive(input.substring(PROGRESSIVE.length()).trim());
+            } else if (input.equals(CANCEL)) {
+
+                cancelCommand();
+            } else if (input.startsWith(TIMEOUT)) {
+
+                changeTimeout(input.substring(TIMEOUT.length()).trim());
+            } else if (input.startsWith(WATCH)) {
+
+                watchDirectory(input.substring(WATCH.length()).trim());
+            } else if (input.startsWith(WORKERS)) {
+
+                changeWorkers(input.substring(WORKERS.length()).trim());
+            } else if (input.startsWith(BATCH)) {
+
+                runBatch(input.substring(BATCH.length()).trim());
+            } else if (input.startsWith(FONT)) {
+
+                changeFont(input.substring(FONT.length()).trim());
+            } else if (input.equals(VIEW)) {
+
+                viewport = null;
+                runViewport(getViewport());
+            } else if (input.startsWith(PAN)) {
+
+                pan(input.substring(PAN.length()).trim());
+            } else if (input.startsWith(ZOOM)) {
+
+                zoom(input.substring(ZOOM.length()).trim());
+            } else {
+                throw new IllegalArgumentException(INVALID_COMMAND_MESSAGE);
             }
-            System.out.print(USER_INPUT);
-            input = KeyboardInput.readLine();
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
         }
     }
 
@@ -111,47 +554,648 @@ public class Shell {
     /**
      * The runAlgorithm method is responsible for running the algorithm and printing the result.
      *
-     * @throws IllegalArgumentException if the charset is empty.
+     * The render waits for the image to finish decoding, if it is still being decoded. If the render
+     * cache holds the art, the image is neither decoded nor rendered. If worker processes are running
+     * and neither dithering nor contrast normalization is on, the art is rendered by the workers.
+     *
+     * @throws IllegalArgumentException if the charset is empty and cells are matched to it.
      */
     private void runAlgorithm() throws IllegalArgumentException {
+        if (subCellMode == SubCellEncoder.Mode.NONE && asciiArtAlgorithm.isCurrentCharsMapEmpty()) {
+            throw new IllegalArgumentException(EMPTY_CHARSET_MESSAGE);
+        } else {
+            String imagePath = currentImagePath;
+            Future<Image> image = pendingImagePath == null ? currentImage : null;
+            int renderResolution = resolution;
+            boolean renderDithering = dithering;
+            ContrastNormalizer.Mode renderContrastMode = contrastMode;
+            SubCellEncoder.Mode renderSubCellMode = subCellMode;
+            boolean renderProgressive = progressive;
+            String renderMode = RenderCache.describeMode(imageWidth, imageHeight, renderDithering,
+                    renderContrastMode, renderSubCellMode);
+            AsciiOutput output = asciiOutput;
+            boolean wholeImageMatching = renderDithering ||
+                    renderContrastMode != ContrastNormalizer.Mode.NONE;
+            BandCoordinator coordinator = wholeImageMatching ? null : bandCoordinator;
+            submitRender(() -> {
+                CharsetSnapshot charset = subImgCharMatcher.getSnapshot();
+                String cacheKey = createCacheKey(imagePath, renderResolution, charset, renderMode);
+                char[][] cachedArt = cacheKey == null ? null : renderCache.get(cacheKey);
+                if (cachedArt != null) {
+                    output.out(cachedArt);
+                    logFirstRender();
+                    return;
+                }
+                Image decodedImage = awaitImage(image != null ? image : imagePrefetcher.load(imagePath));
+                if (decodedImage == null) {
+                    return;
+                }
+                if (coordinator != null) {
+                    char[][] art = renderOnWorkers(coordinator, decodedImage, renderResolution,
+                            renderSubCellMode, charset, output);
+                    if (art != null && cacheKey != null) {
+                        renderCache.put(cacheKey, art);
+                    }
+                    return;
+                }
+                asciiArtAlgorithm.setImage(decodedImage);
+                asciiArtAlgorithm.setResolution(renderResolution);
+                asciiArtAlgorithm.setDithering(renderDithering);
+                asciiArtAlgorithm.setContrastMode(renderContrastMode);
+                asciiArtAlgorithm.setSubCellMode(renderSubCellMode);
+                char[][] art = render(output, renderProgressive);
+                if (cacheKey != null && subImgCharMatcher.getSnapshot() == charset) {
+                    renderCache.put(cacheKey, art);
+                }
+            });
+        }
+    }
+
+    /**
+     * The createCacheKey method creates the key of a render in the render cache. It is run on the render
+     * thread.
+     *
+     * @param imagePath  the path of the image file.
+     * @param resolution the resolution of the render.
+     * @param charset    the charset of the render.
+     * @param mode       the other settings of the render.
+     * @return the key, or null if there is no render cache or the image file can't be hashed.
+     */
+    private String createCacheKey(String imagePath, int resolution, CharsetSnapshot charset, String mode) {
+        if (renderCache == null) {
+            return null;
+        }
+        try {
+            return renderCache.createKey(imagePath, resolution, charset, mode);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The awaitImage method waits for an image to finish decoding. It is run on the render thread.
+     *
+     * @param image the image being decoded.
+     * @return the decoded image, or null if it couldn't be decoded.
+     * @throws CancellationException if the render is cancelled while waiting.
+     */
+    private static Image awaitImage(Future<Image> image) {
+        try {
+            return image.get();
+        } catch (InterruptedException e) {
+            throw new CancellationException();
+        } catch (ExecutionException | CancellationException e) {
+            System.out.println(IMAGE_FILE_ERROR_MESSAGE);
+            return null;
+        }
+    }
+
+    /**
+     * The render method runs the algorithm and outputs the result, first outputting a preview if
+     * progressive rendering is on. It is run on the render thread.
+     *
+     * @param output      the output to write the ASCII art to.
+     * @param progressive whether to output a preview first.
+     * @return the ASCII art.
+     */
+    private char[][] render(AsciiOutput output, boolean progressive) {
+        long renderStartNanos = System.nanoTime();
+        long firstOutputNanos;
+        char[][] art;
+        int previewResolution = asciiArtAlgorithm.getResolution() / PREVIEW_RESOLUTION_DIVISOR;
+        if (progressive && previewResolution > 0 && asciiArtAlgorithm.needsNewBrightnesses()) {
+            output.out(asciiArtAlgorithm.createPreview(previewResolution, PREVIEW_SAMPLES_PER_SIDE));
+            firstOutputNanos = System.nanoTime();
+            art = asciiArtAlgorithm.run();
+            output.replace(art);
+        } else {
+            art = asciiArtAlgorithm.run();
+            output.out(art);
+            firstOutputNanos = System.nanoTime();
+        }
+        long endNanos = System.nanoTime();
+        Logger.getGlobal().fine(String.format(RENDER_TIME_LOG_MESSAGE,
+                (firstOutputNanos - renderStartNanos) / NANOS_PER_MILLI,
+                (endNanos - renderStartNanos) / NANOS_PER_MILLI));
+        logFirstRender();
+        return art;
+    }
+
+    /**
+     * The renderOnWorkers method renders the ASCII art on the worker processes and outputs it. It is run
+     * on the render thread.
+     *
+     * @param coordinator the coordinator of the workers.
+     * @param image       the image to render.
+     * @param resolution  the resolution of the render.
+     * @param cellMode    the sub-cell mode of the render.
+     * @param charset     the charset of the render.
+     * @param output      the output to write the ASCII art to.
+     * @return the ASCII art, or null if the workers failed to render it.
+     */
+    private char[][] renderOnWorkers(BandCoordinator coordinator, Image image, int resolution,
+                                     SubCellEncoder.Mode cellMode, CharsetSnapshot charset,
+                                     AsciiOutput output) {
+        long renderStartNanos = System.nanoTime();
+        char[][] art;
+        try {
+            art = coordinator.render(image, resolution, cellMode, charset);
+        } catch (IOException e) {
+            System.out.println(WORKERS_ERROR_MESSAGE);
+            return null;
+        }
+        output.out(art);
+        double renderMillis = (System.nanoTime() - renderStartNanos) / NANOS_PER_MILLI;
+        Logger.getGlobal().fine(String.format(RENDER_TIME_LOG_MESSAGE, renderMillis, renderMillis));
+        logFirstRender();
+        return art;
+    }
+
+    /**
+     * The logFirstRender method logs, once per session, the time from the start of the session until the
+     * first ASCII art was written, which is dominated by startup costs such as building the charset.
+     */
+    private void logFirstRender() {
+        if (!firstRenderLogged) {
+            firstRenderLogged = true;
+            Logger.getGlobal().fine(String.format(FIRST_RENDER_LOG_MESSAGE,
+                    (System.nanoTime() - startNanos) / NANOS_PER_MILLI));
+        }
+    }
+
+    /**
+     * The runStreamingAlgorithm method renders an image file straight to the output, one row at a time,
+     * without loading it as an Image. The current resolution and charset are used, the current image is
+     * left unchanged. Problems with the image file are reported by the render thread.
+     *
+     * @param imagePath the path of the image file to render.
+     * @throws IllegalArgumentException if the charset is empty or the output can't stream.
+     */
+    private void runStreamingAlgorithm(String imagePath) throws IllegalArgumentException {
         if (asciiArtAlgorithm.isCurrentCharsMapEmpty()) {
             throw new IllegalArgumentException(EMPTY_CHARSET_MESSAGE);
+        }
+        if (!(asciiOutput instanceof StreamingAsciiOutput)) {
+            throw new IllegalArgumentException(STREAM_OUTPUT_ERROR_MESSAGE);
+        }
+        StreamingAsciiArtAlgorithm streamingAlgorithm = new StreamingAsciiArtAlgorithm(imagePath,
+                resolution, subImgCharMatcher);
+        streamingAlgorithm.setDithering(dithering);
+        StreamingAsciiOutput output = (StreamingAsciiOutput) asciiOutput;
+        submitRender(() -> {
+            try {
+                if (!streamingAlgorithm.run(output)) {
+                    System.out.println(EXCEEDING_BOUNDARIES_MESSAGE);
+                }
+            } catch (IOException e) {
+                System.out.println(IMAGE_FILE_ERROR_MESSAGE);
+            }
+        });
+    }
+
+    /**
+     * The changeDithering method turns error diffusion dithering on or off.
+     *
+     * @param ditheringStr on or off.
+     * @throws IllegalArgumentException if the input is not on or off.
+     */
+    private void changeDithering(String ditheringStr) throws IllegalArgumentException {
+        if (ditheringStr.equals(ON)) {
+            dithering = true;
+        } else if (ditheringStr.equals(OFF)) {
+            dithering = false;
         } else {
-            char[][] asciiArt = asciiArtAlgorithm.run();
-            asciiOutput.out(asciiArt);
+            throw new IllegalArgumentException(INCORRECT_DITHERING_FORMAT_MESSAGE);
         }
+        System.out.println(String.format(CHANGE_DITHERING_MESSAGE, ditheringStr));
+    }
+
+    /**
+     * The changeCells method sets whether every cell is matched to the charset or split into sub-pixels
+     * that are encoded as a Braille or quadrant block character.
+     *
+     * @param cells none, braille or quadrant.
+     * @throws IllegalArgumentException if the input is not none, braille or quadrant.
+     */
+    private void changeCells(String cells) throws IllegalArgumentException {
+        if (cells.equals(CELLS_NONE)) {
+            subCellMode = SubCellEncoder.Mode.NONE;
+        } else if (cells.equals(CELLS_BRAILLE)) {
+            subCellMode = SubCellEncoder.Mode.BRAILLE;
+        } else if (cells.equals(CELLS_QUADRANT)) {
+            subCellMode = SubCellEncoder.Mode.QUADRANT;
+        } else {
+            throw new IllegalArgumentException(INCORRECT_CELLS_FORMAT_MESSAGE);
+        }
+        System.out.println(String.format(CHANGE_CELLS_MESSAGE, cells));
+    }
+
+    /**
+     * The changeContrast method sets how the contrast of the image is normalized before matching.
+     *
+     * @param contrast none, equalize or stretch.
+     * @throws IllegalArgumentException if the input is not one of the contrast modes.
+     */
+    private void changeContrast(String contrast) throws IllegalArgumentException {
+        if (contrast.equals(CONTRAST_NONE)) {
+            contrastMode = ContrastNormalizer.Mode.NONE;
+        } else if (contrast.equals(CONTRAST_EQUALIZE)) {
+            contrastMode = ContrastNormalizer.Mode.EQUALIZE;
+        } else if (contrast.equals(CONTRAST_STRETCH)) {
+            contrastMode = ContrastNormalizer.Mode.STRETCH;
+        } else {
+            throw new IllegalArgumentException(INCORRECT_CONTRAST_FORMAT_MESSAGE);
+        }
+        System.out.println(String.format(CHANGE_CONTRAST_MESSAGE, contrast));
+    }
+
+    /**
+     * The changeProgressive method turns progressive rendering on or off. When it is on, an asciiArt
+     * command that has to process the image first outputs a quick low resolution preview and then
+     * replaces it with the full ASCII art.
+     *
+     * @param progressiveStr on or off.
+     * @throws IllegalArgumentException if the input is not on or off.
+     */
+    private void changeProgressive(String progressiveStr) throws IllegalArgumentException {
+        if (progressiveStr.equals(ON)) {
+            progressive = true;
+        } else if (progressiveStr.equals(OFF)) {
+            progressive = false;
+        } else {
+            throw new IllegalArgumentException(INCORRECT_PROGRESSIVE_FORMAT_MESSAGE);
+        }
+        System.out.println(String.format(CHANGE_PROGRESSIVE_MESSAGE, progressiveStr));
+    }
+
+    /**
+     * The cancelCommand method cancels the render in progress.
+     *
+     * @throws IllegalArgumentException if no render is in progress.
+     */
+    private void cancelCommand() throws IllegalArgumentException {
+        if (!cancelRender()) {
+            throw new IllegalArgumentException(NO_RENDER_MESSAGE);
+        }
+        System.out.println(RENDER_CANCELLED_MESSAGE);
+    }
+
+    /**
+     * The changeTimeout method sets how long a render may run before it is cancelled.
+     *
+     * @param timeoutStr the timeout in milliseconds, 0 for no timeout.
+     * @throws IllegalArgumentException if the input is not a number.
+     */
+    private void changeTimeout(String timeoutStr) throws IllegalArgumentException {
+        if (!timeoutStr.matches("[0-9]+")) {
+            throw new IllegalArgumentException(INCORRECT_TIMEOUT_FORMAT_MESSAGE);
+        }
+        try {
+            renderTimeoutMillis = Long.parseLong(timeoutStr);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(INCORRECT_TIMEOUT_FORMAT_MESSAGE);
+        }
+        System.out.println(String.format(CHANGE_TIMEOUT_MESSAGE, renderTimeoutMillis));
+    }
+
+    /**
+     * The watchDirectory method starts keeping an HTML ASCII art next to every image of a directory, with
+     * the current resolution and settings, or stops watching with off. Watching a directory stops
+     * watching the previous one. Renders of the watched images run on their own threads, next to the
+     * renders of the shell, and share its charset.
+     *
+     * @param directory the directory to watch, or off.
+     * @throws IllegalArgumentException if off is given while no directory is watched, or the charset
+     *                                  is empty and cells are matched to it.
+     * @throws IOException              if the directory can't be watched.
+     */
+    private void watchDirectory(String directory) throws IllegalArgumentException, IOException {
+        if (directory.equals(OFF)) {
+            if (directoryWatcher == null) {
+                throw new IllegalArgumentException(NO_WATCH_MESSAGE);
+            }
+            directoryWatcher.close();
+            System.out.println(String.format(WATCH_STOPPED_MESSAGE, directoryWatcher.getDirectory()));
+            directoryWatcher = null;
+            return;
+        }
+        if (subCellMode == SubCellEncoder.Mode.NONE && asciiArtAlgorithm.isCurrentCharsMapEmpty()) {
+            throw new IllegalArgumentException(EMPTY_CHARSET_MESSAGE);
+        }
+        DirectoryWatcher newWatcher;
+        try {
+            newWatcher = new DirectoryWatcher(directory, imageBudget, subImgCharMatcher, resolution,
+                    dithering, contrastMode, subCellMode, WATCH_THREADS, WATCH_QUEUE_CAPACITY,
+                    WATCH_DEBOUNCE_MILLIS);
+        } catch (IOException | RuntimeException e) {
+            throw new IOException(WATCH_ERROR_MESSAGE);
+        }
+        if (directoryWatcher != null) {
+            directoryWatcher.close();
+        }
+        directoryWatcher = newWatcher;
+        System.out.println(String.format(WATCH_MESSAGE, directoryWatcher.getDirectory()));
+    }
+
+    /**
+     * The runBatch method renders every image of a directory to an HTML ASCII art next to it, on the
+     * render thread, through a pipeline of decoding, brightness, matching and writing stages. The thread
+     * counts of the stages and the capacity of their queues are taken from system properties. Arts in
+     * the render cache are written without decoding their images, and new arts are added to it. When the
+     * batch is done, the metrics of every stage are printed.
+     *
+     * @param directory the directory of the images.
+     * @throws IllegalArgumentException if the charset is empty and cells are matched to it, or a thread
+     *                                  count is not positive.
+     * @throws IOException              if the directory can't be listed.
+     */
+    private void runBatch(String directory) throws IllegalArgumentException, IOException {
+        if (subCellMode == SubCellEncoder.Mode.NONE && asciiArtAlgorithm.isCurrentCharsMapEmpty()) {
+            throw new IllegalArgumentException(EMPTY_CHARSET_MESSAGE);
+        }
+        int[] threads = {
+                Integer.getInteger(BATCH_DECODE_THREADS_PROPERTY, DEFAULT_BATCH_DECODE_THREADS),
+                Integer.getInteger(BATCH_BRIGHTNESS_THREADS_PROPERTY, DEFAULT_BATCH_BRIGHTNESS_THREADS),
+                Integer.getInteger(BATCH_MATCH_THREADS_PROPERTY, DEFAULT_BATCH_MATCH_THREADS),
+                Integer.getInteger(BATCH_WRITE_THREADS_PROPERTY, DEFAULT_BATCH_WRITE_THREADS),
+                Integer.getInteger(BATCH_QUEUE_CAPACITY_PROPERTY, DEFAULT_BATCH_QUEUE_CAPACITY),
+        };
+        for (int count : threads) {
+            if (count <= 0) {
+                throw new IllegalArgumentException(BATCH_THREADS_ERROR_MESSAGE);
+            }
+        }
+        List<java.nio.file.Path> images;
+        try {
+            images = BatchPipeline.listImages(Paths.get(directory));
+        } catch (IOException | RuntimeException e) {
+            throw new IOException(BATCH_ERROR_MESSAGE);
+        }
+        BatchPipeline pipeline = new BatchPipeline(imageBudget, renderCache, subImgCharMatcher, resolution,
+                dithering, contrastMode, subCellMode, threads[0], threads[1], threads[2], threads[3],
+                threads[4]);
+        submitRender(() -> {
+            pipeline.run(images);
+            System.out.println(String.format(BATCH_MESSAGE, images.size() - pipeline.getFailedImages(),
+                    images.size(), pipeline.getElapsedNanos() / NANOS_PER_MILLI));
+            for (BatchPipeline.Stage stage : pipeline.getStages()) {
+                System.out.println(String.format(BATCH_STAGE_MESSAGE, stage.getName(), stage.getThreads(),
+                        stage.getProcessedImages(), stage.getBusyThroughput(), stage.getUtilization() * 100,
+                        stage.getAverageQueueDepth(), stage.getMaxQueueDepth()));
+            }
+        });
+    }
+
+    /**
+     * The changeWorkers method starts the given number of worker processes that render ASCII arts in
+     * bands, replacing the running ones, or stops them with 0. Starting the workers takes a while, as
+     * each of them is a new JVM.
+     *
+     * @param workersStr the number of workers.
+     * @throws IllegalArgumentException if the input is not a number or the workers can't be started.
+     */
+    private void changeWorkers(String workersStr) throws IllegalArgumentException {
+        if (!workersStr.matches("[0-9]{1,3}")) {
+            throw new IllegalArgumentException(INCORRECT_WORKERS_FORMAT_MESSAGE);
+        }
+        int workerCount = Integer.parseInt(workersStr);
+        awaitRender();
+        if (bandCoordinator != null) {
+            bandCoordinator.close();
+            bandCoordinator = null;
+        }
+        if (workerCount > 0) {
+            try {
+                bandCoordinator = new BandCoordinator(workerCount);
+            } catch (IOException e) {
+                throw new IllegalArgumentException(WORKERS_START_ERROR_MESSAGE);
+            }
+        }
+        System.out.println(String.format(CHANGE_WORKERS_MESSAGE, workerCount));
+    }
+
+    /**
+     * The changeFont method sets the font the brightness of the characters is taken from, and the font of
+     * the HTML and image outputs. The glyphs of every font are sampled once, so switching back to a font
+     * is quick.
+     *
+     * @param fontName the name of the font, the default font or an installed font family.
+     * @throws IllegalArgumentException if the font is not installed.
+     */
+    private void changeFont(String fontName) throws IllegalArgumentException {
+        if (!fontName.equals(CharConverter.FONT_NAME) && !Arrays.asList(
+                GraphicsEnvironment.getLocalGraphicsEnvironment().getAvailableFontFamilyNames())
+                .contains(fontName)) {
+            throw new IllegalArgumentException(UNKNOWN_FONT_MESSAGE);
+        }
+        subImgCharMatcher.setFont(fontName);
+        changeOutputLocation(outputLocation);
+        System.out.println(String.format(CHANGE_FONT_MESSAGE, fontName));
+    }
+
+    /**
+     * The getViewport method returns the current viewport, or the viewport of the whole image at the
+     * current resolution if there is none.
+     *
+     * @return the current viewport.
+     */
+    private Viewport getViewport() {
+        if (viewport == null) {
+            viewport = Viewport.whole(imageWidth, imageHeight, resolution);
+        }
+        return viewport;
+    }
+
+    /**
+     * The pan method moves the viewport by a number of cells and renders it.
+     *
+     * @param offsets the cells to move right and down, separated by a space, negative to move left or up.
+     * @throws IllegalArgumentException if the offsets are not two numbers, the viewport would no longer
+     *                                  show the image, or the charset is empty.
+     */
+    private void pan(String offsets) throws IllegalArgumentException {
+        if (!offsets.matches("-?[0-9]{1,6} +-?[0-9]{1,6}")) {
+            throw new IllegalArgumentException(INCORRECT_PAN_FORMAT_MESSAGE);
+        }
+        String[] parts = offsets.split(" +");
+        Viewport panned = getViewport().panned(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+        if (!panned.overlaps(imageWidth, imageHeight)) {
+            throw new IllegalArgumentException(PAN_BOUNDARIES_MESSAGE);
+        }
+        runViewport(panned);
+    }
+
+    /**
+     * The zoom method zooms the viewport in or out by a factor of 2 around its center and renders it.
+     *
+     * @param direction in or out.
+     * @throws IllegalArgumentException if the direction is neither in nor out, the viewport can't be
+     *                                  zoomed further, or the charset is empty.
+     */
+    private void zoom(String direction) throws IllegalArgumentException {
+        boolean in;
+        if (direction.equals(ZOOM_IN)) {
+            in = true;
+        } else if (direction.equals(ZOOM_OUT)) {
+            in = false;
+        } else {
+            throw new IllegalArgumentException(INCORRECT_ZOOM_FORMAT_MESSAGE);
+        }
+        if (!getViewport().canZoom(in)) {
+            throw new IllegalArgumentException(ZOOM_BOUNDARIES_MESSAGE);
+        }
+        runViewport(getViewport().zoomed(in));
+    }
+
+    /**
+     * The runViewport method makes a viewport the current one and renders it on the render thread. Only
+     * the cells of the viewport are computed, and after a pan only the cells it newly exposes. Cells are
+     * matched to the charset directly, so dithering, contrast normalization and sub-cells don't apply.
+     *
+     * @param newViewport the viewport to render.
+     * @throws IllegalArgumentException if the charset is empty.
+     */
+    private void runViewport(Viewport newViewport) throws IllegalArgumentException {
+        if (asciiArtAlgorithm.isCurrentCharsMapEmpty()) {
+            throw new IllegalArgumentException(EMPTY_CHARSET_MESSAGE);
+        }
+        viewport = newViewport;
+        String imagePath = currentImagePath;
+        Future<Image> image = pendingImagePath == null ? currentImage : null;
+        AsciiOutput output = asciiOutput;
+        submitRender(() -> {
+            Image decodedImage = awaitImage(image != null ? image : imagePrefetcher.load(imagePath));
+            if (decodedImage == null) {
+                return;
+            }
+            viewportRenderer.setImage(decodedImage);
+            char[][] art = viewportRenderer.render(newViewport, subImgCharMatcher.getSnapshot());
+            output.out(art);
+            Logger.getGlobal().fine(String.format(VIEWPORT_LOG_MESSAGE, newViewport.getZoomLevel(),
+                    viewportRenderer.getComputedCells(), newViewport.getColumns() * newViewport.getRows()));
+            logFirstRender();
+        });
     }
 
     /**
      * The changeOutputLocation method is responsible for changing the output location of the program.
+     * The png and jpeg outputs may be followed by the side of the cell of every char in pixels, which is
+     * 4 by default to keep the images thumbnails.
      *
-     * @param outputLocation the new output location - console/html file.
-     * @throws IllegalArgumentException if the output location is not console or html.
+     * @param outputLocation the new output location - console/html file/binary file/png or jpeg image.
+     * @throws IllegalArgumentException if the output location is not console, html, binary, png or jpeg,
+     *                                  or the cell size is not a number from 1 to 64.
      */
     private void changeOutputLocation(String outputLocation) throws IllegalArgumentException {
-        if (outputLocation.equals(CONSOLE)) {
+        if (outputLocation.matches("(" + PNG + "|" + JPEG + ") +[0-9]{1,2}")) {
+            String[] parts = outputLocation.split(" +");
+            int cellSize = Integer.parseInt(parts[1]);
+            if (cellSize < 1 || cellSize > MAX_RASTER_CELL_SIZE) {
+                throw new IllegalArgumentException(INCORRECT_FORMAT_MESSAGE);
+            }
+            asciiOutput = new RasterAsciiOutput(parts[0].equals(PNG) ? DEFAULT_OUTPUT_PNG_PATH :
+                    DEFAULT_OUTPUT_JPEG_PATH, subImgCharMatcher.getFont(), cellSize);
+        } else if (outputLocation.equals(CONSOLE)) {
             asciiOutput = new ConsoleAsciiOutput();
         } else if (outputLocation.equals(HTML)) {
-            asciiOutput = new HtmlAsciiOutput(DEFAULT_OUTPUT_IMAGE_PATH, DEFAULT_FONT);
+            asciiOutput = new HtmlAsciiOutput(DEFAULT_OUTPUT_IMAGE_PATH, subImgCharMatcher.getFont());
+        } else if (outputLocation.equals(BINARY)) {
+            asciiOutput = new BinaryAsciiOutput(DEFAULT_OUTPUT_BINARY_PATH);
+        } else if (outputLocation.equals(PNG)) {
+            asciiOutput = new RasterAsciiOutput(DEFAULT_OUTPUT_PNG_PATH, subImgCharMatcher.getFont(),
+                    RasterAsciiOutput.DEFAULT_CELL_SIZE);
+        } else if (outputLocation.equals(JPEG)) {
+            asciiOutput = new RasterAsciiOutput(DEFAULT_OUTPUT_JPEG_PATH, subImgCharMatcher.getFont(),
+                    RasterAsciiOutput.DEFAULT_CELL_SIZE);
         } else {
             throw new IllegalArgumentException(INCORRECT_FORMAT_MESSAGE);
         }
+        this.outputLocation = outputLocation;
     }
 
     /**
-     * The setNewImage method is responsible for setting a new image to the program.
+     * The setNewImage method is responsible for setting a new image to the program. Only the header of
+     * the file is read here. The image is decoded on a background thread, right away or, when image
+     * loading is deferred, once an ASCII art is needed. An image that is too large for the memory
+     * budget is downscaled while it is decoded, and the scale factor is printed.
      *
      * @param newImagePath the new image path.
      * @throws IOException if the image file is not found.
      */
     private void setNewImage(String newImagePath) throws IOException {
+        int scaleFactor;
+        try (ImageBandReader reader = new ImageBandReader(newImagePath)) {
+            scaleFactor = imageBudget.getScaleFactor(reader.getWidth(), reader.getHeight());
+            imageWidth = ImageBudget.scaleDimension(reader.getWidth(), scaleFactor);
+            imageHeight = ImageBudget.scaleDimension(reader.getHeight(), scaleFactor);
+        } catch (IOException e) {
+            throw new IOException(IMAGE_FILE_ERROR_MESSAGE);
+        }
+        if (scaleFactor > 1) {
+            System.out.println(String.format(DOWNSCALE_MESSAGE, scaleFactor, imageWidth, imageHeight));
+        }
+        pendingImagePath = newImagePath;
+        currentImagePath = newImagePath;
+        viewport = null;
+        if (!deferImageLoading) {
+            loadPendingImage();
+        }
+    }
+
+    /**
+     * The prefetchImage method starts decoding an image on a background thread, so a later image command
+     * with it doesn't have to wait for the decoding. Only the header of the file is read here, to check
+     * it is an image.
+     *
+     * @param imagePath the path of the image to prefetch.
+     * @throws IOException if the image file is not found.
+     */
+    private void prefetchImage(String imagePath) throws IOException {
         try {
-            Image newImage = new Image(newImagePath);
-            asciiArtAlgorithm.setImage(newImage);
-            asciiArtAlgorithm.setAChangeOfImageWasMade(true);
+            new ImageBandReader(imagePath).close();
         } catch (IOException e) {
             throw new IOException(IMAGE_FILE_ERROR_MESSAGE);
         }
+        imagePrefetcher.prefetch(imagePath);
+    }
+
+    /**
+     * The loadPendingImage method starts decoding the image of the last image command, if it isn't
+     * decoded or decoding yet, and sets it as the current image.
+     */
+    private void loadPendingImage() {
+        if (pendingImagePath == null) {
+            return;
+        }
+        currentImage = imagePrefetcher.load(pendingImagePath);
+        pendingImagePath = null;
+    }
+
+    /**
+     * The getImageWidth method returns the padded width of the current image.
+     *
+     * @return the padded width of the image.
+     */
+    private int getImageWidth() {
+        return Image.calculateNextPowerOf2(imageWidth);
+    }
+
+    /**
+     * The getImageHeight method returns the padded height of the current image.
+     *
+     * @return the padded height of the image.
+     */
+    private int getImageHeight() {
+        return Image.calculateNextPowerOf2(imageHeight);
+    }
+
+    /**
+     * The getOriginalImageWidth method returns the width of the current image before padding.
+     *
+     * @return the original width of the image.
+     */
+    private int getOriginalImageWidth() {
+        return imageWidth;
     }
 
 
@@ -162,37 +1206,7 @@ public class Shell {
      * @throws IllegalArgumentException if the input is not in the correct format.
      */
     private void addChar(String userInput) throws IllegalArgumentException {
-        asciiArtAlgorithm.setAChangeInCharsWasMade(true);
-        if (userInput.equals(ALL_CHARS)) {
-            for (int i = 32; i < 127; ++i) {
-                asciiArtAlgorithm.addChar((char) i);
-            }
-        } else if (userInput.equals(SPACE)) {
-            asciiArtAlgorithm.addChar(SPACE_CHAR);
-        } else if (userInput.contains(DASH) && !userInput.equals(DASH) && userInput.length() == 3) {
-            char start = userInput.charAt(0);
-            char end = userInput.charAt(2);
-            // Determine the direction of the iteration based on the characters' order
-            if (start <= end) {
-                for (char c = start; c <= end; c++) {
-                    asciiArtAlgorithm.addChar(c);
-                }
-            } else {
-                for (char c = start; c >= end; c--) {
-                    asciiArtAlgorithm.addChar(c);
-                }
-            }
-        } else if (userInput.length() == 1) {
-            char c = userInput.charAt(0);
-            if (!asciiArtAlgorithm.containsChar(c)) {
-                asciiArtAlgorithm.addChar(c);
-            } else {
-                asciiArtAlgorithm.setAChangeInCharsWasMade(false);
-            }
-        } else {
-            asciiArtAlgorithm.setAChangeInCharsWasMade(false);
-            throw new IllegalArgumentException(ADD_ERROR_MESSAGE);
-        }
+        asciiArtAlgorithm.addChars(parseCharsetEdit(userInput, ADD_ERROR_MESSAGE));
     }
 
 
@@ -203,80 +1217,132 @@ public class Shell {
      * @throws IllegalArgumentException if the input is not in the correct format.
      */
     private void removeChar(String userInput) throws IllegalArgumentException {
-        asciiArtAlgorithm.setAChangeInCharsWasMade(true);
+        asciiArtAlgorithm.removeChars(parseCharsetEdit(userInput, REMOVE_ERROR_MESSAGE));
+    }
+
+    /**
+     * The parseCharsetEdit method is responsible for turning the argument of an add or remove command
+     * into the characters it refers to, so the whole command is applied as a single charset edit.
+     *
+     * @param userInput    the argument of the command.
+     * @param errorMessage the message to throw if the input is not in the correct format.
+     * @return the characters the command refers to.
+     * @throws IllegalArgumentException if the input is not in the correct format.
+     */
+    private char[] parseCharsetEdit(String userInput, String errorMessage)
+            throws IllegalArgumentException {
         if (userInput.equals(ALL_CHARS)) {
-            for (int i = 32; i < 127; ++i) {
-                asciiArtAlgorithm.removeChar((char) i);
-            }
+            return charRange((char) 32, (char) 126);
         } else if (userInput.equals(SPACE)) {
-            asciiArtAlgorithm.removeChar(SPACE_CHAR);
+            return new char[]{SPACE_CHAR};
         } else if (userInput.contains(DASH) && !userInput.equals(DASH) && userInput.length() == 3) {
-            char start = userInput.charAt(0);
-            char end = userInput.charAt(2);
-            if (start <= end) {
-                for (char c = start; c <= end; c++) {
-                    asciiArtAlgorithm.removeChar(c);
-                }
-            } else {
-                for (char c = start; c >= end; c--) {
-                    asciiArtAlgorithm.removeChar(c);
-                }
-            }
+            return charRange(userInput.charAt(0), userInput.charAt(2));
         } else if (userInput.length() == 1) {
-            char c = userInput.charAt(0);
-            if (asciiArtAlgorithm.containsChar(c)) {
-                asciiArtAlgorithm.removeChar(c);
-            } else {
-                asciiArtAlgorithm.setAChangeInCharsWasMade(false);
-            }
+            return new char[]{userInput.charAt(0)};
         } else {
-            asciiArtAlgorithm.setAChangeInCharsWasMade(false);
-            throw new IllegalArgumentException(REMOVE_ERROR_MESSAGE);
+            throw new IllegalArgumentException(errorMessage);
         }
     }
 
     /**
-     * The changeResolution method is responsible for changing the resolution of the program.
+     * The charRange method returns all the characters between two characters, inclusive.
      *
-     * @param newResolutionStr the new resolution.
+     * @param start the first character of the range.
+     * @param end   the last character of the range.
+     * @return the characters of the range, in either direction.
+     */
+    private static char[] charRange(char start, char end) {
+        // Determine the direction of the iteration based on the characters' order
+        int step = start <= end ? 1 : -1;
+        char[] chars = new char[Math.abs(end - start) + 1];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) (start + i * step);
+        }
+        return chars;
+    }
+
+    /**
+     * The changeResolution method is responsible for changing the resolution of the program. The
+     * resolution is either doubled, halved, or set to any number of characters per row, and has to be
+     * one AsciiArtAlgorithm.isValidResolution accepts for the width of the image.
+     *
+     * @param newResolutionStr the new resolution - up, down or a positive number.
      * @throws IllegalArgumentException if the input resolution can't be applied is not in the
      *                                  correct format.
      */
     private void changeResolution(String newResolutionStr) throws IllegalArgumentException {
-        int imgWidth = asciiArtAlgorithm.getImageWidth();
-        int imgHeight = asciiArtAlgorithm.getImageHeight();
+        int imgWidth = getImageWidth();
+        int imgHeight = getImageHeight();
         int minCharsInRow = Math.max(1, imgWidth / imgHeight);
-        int maxCharsInRow = imgWidth;
-        int currentResolution = asciiArtAlgorithm.getResolution();
+        int currentResolution = resolution;
         if (newResolutionStr.equals(UP_COMMAND)) {
-            if (currentResolution * 2 <= maxCharsInRow) {
-                asciiArtAlgorithm.setResolution(currentResolution * 2);
+            if (AsciiArtAlgorithm.isValidResolution(currentResolution * 2, getOriginalImageWidth())) {
+                resolution = currentResolution * 2;
                 System.out.println(String.format(CHANGE_RESOLUTION_MESSAGE, currentResolution * 2));
-                asciiArtAlgorithm.setAChangeOfResolutionWasMade(true);
             } else {
                 throw new IllegalArgumentException(IMAGE_RESOLUTION_ERROR_MESSAGE);
             }
         } else if (newResolutionStr.equals(DOWN_COMMAND)) {
             if (currentResolution / 2 >= minCharsInRow) {
-                asciiArtAlgorithm.setResolution(currentResolution / 2);
+                resolution = currentResolution / 2;
                 System.out.println(String.format(CHANGE_RESOLUTION_MESSAGE, currentResolution / 2));
-                asciiArtAlgorithm.setAChangeOfResolutionWasMade(true);
             } else {
                 throw new IllegalArgumentException(EXCEEDING_BOUNDARIES_MESSAGE);
             }
+        } else if (isPositiveNumber(newResolutionStr)) {
+            int newResolution = parseResolution(newResolutionStr);
+            if (!AsciiArtAlgorithm.isValidResolution(newResolution, getOriginalImageWidth())) {
+                throw new IllegalArgumentException(EXCEEDING_BOUNDARIES_MESSAGE);
+            }
+            resolution = newResolution;
+            System.out.println(String.format(CHANGE_RESOLUTION_MESSAGE, newResolution));
         } else {
             throw new IllegalArgumentException(INCORRECT_RESOLUTION_FORMAT_MESSAGE);
         }
+        viewport = null;
+    }
+
+    /**
+     * The isPositiveNumber method checks if a string is a positive decimal number.
+     *
+     * @param str the string to check.
+     * @return true if the string holds only digits and is not zero, false otherwise.
+     */
+    private static boolean isPositiveNumber(String str) {
+        return str.matches("[0-9]+") && !str.matches("0+");
+    }
+
+    /**
+     * The parseResolution method parses a positive number of characters per row.
+     *
+     * @param resolutionStr the positive number to parse.
+     * @return the resolution, or Integer.MAX_VALUE if the number is too large to parse.
+     */
+    private static int parseResolution(String resolutionStr) {
+        try {
+            return Integer.parseInt(resolutionStr);
+        } catch (NumberFormatException e) {
+            return Integer.MAX_VALUE;
+        }
     }
 
 
     /**
-     * The main method of the program.
+     * The main method of the program. With no arguments the shell is interactive, otherwise the first
+     * argument is a script file whose commands are run instead.
      *
      * @param args the command line arguments.
      */
     public static void main(String[] args) {
         Shell shell = new Shell();
-        shell.run();
+        if (args.length == 0) {
+            shell.run();
+            return;
+        }
+        try {
+            shell.runScript(args[0]);
+        } catch (IOException e) {
+            System.out.println(SCRIPT_FILE_ERROR_MESSAGE);
+        }
     }
 }
@@ -0,0 +1,110 @@
+package ascii_art;
+
+import ascii_output.StreamingAsciiOutput;
+import image.Image;
+import image.ImageBandReader;
+import image.ImageBudget;
+import image_char_matching.CharsetSnapshot;
+import image_char_matching.ErrorDiffusionDitherer;
+import image_char_matching.SubImgCharMatcher;
+
+import java.io.IOException;
+
+/**
+ * StreamingAsciiArtAlgorithm class creates the ASCII art of an image file that may be too large to hold
+ * in memory. The image is decoded at full resolution one band of rows of sub-images at a time, and the
+ * rows of chars of a band are written to the output before the band is dropped and the next one is
+ * decoded, so memory depends on the image width times the height of a band rather than on the whole
+ * image. A band holds as many rows of sub-images as fit a fixed number of bytes, and at least one, which
+ * keeps the number of passes the decoder makes over the file low. The image is not padded; sub-images
+ * are laid out like a non power of 2 resolution in AsciiArtAlgorithm.
+ */
+public class StreamingAsciiArtAlgorithm {
+    private static final long MAX_BAND_BYTES = 64L << 20;
+
+    private final String filename;
+    private final int resolution;
+    private final SubImgCharMatcher subImgCharMatcher;
+    private boolean dithering = false;
+
+    /**
+     * Constructor to create an object of StreamingAsciiArtAlgorithm class.
+     * @param filename String of the image file name
+     * @param resolution int of the number of chars in every row
+     * @param subImgCharMatcher SubImgCharMatcher holding the charset
+     */
+    public StreamingAsciiArtAlgorithm(String filename, int resolution,
+                                      SubImgCharMatcher subImgCharMatcher) {
+        this.filename = filename;
+        this.resolution = resolution;
+        this.subImgCharMatcher = subImgCharMatcher;
+    }
+
+    /**
+     * This method sets whether the sub-images are matched with Floyd-Steinberg error diffusion. The
+     * error is carried from band to band, so the result is the same as in AsciiArtAlgorithm.
+     * @param dithering true to diffuse the error, false to match every sub-image on its own
+     */
+    public void setDithering(boolean dithering) {
+        this.dithering = dithering;
+    }
+
+    /**
+     * This method creates the ASCII art and writes it to the output row by row.
+     * @param asciiOutput StreamingAsciiOutput to write the rows to
+     * @return boolean true if the art was written, false if the resolution is larger than the image
+     *         width, in which case nothing is written
+     * @throws IOException if the image file can't be read
+     * @throws java.util.concurrent.CancellationException if the thread is interrupted, after the rows
+     *                                                    written so far are ended
+     */
+    public boolean run(StreamingAsciiOutput asciiOutput) throws IOException {
+        CharsetSnapshot charset = subImgCharMatcher.getSnapshot();
+        try (ImageBandReader reader = new ImageBandReader(filename)) {
+            int width = reader.getWidth();
+            int height = reader.getHeight();
+            if (resolution > width) {
+                return false;
+            }
+            double subImageWidth = (double) width / resolution;
+            int rows = Math.max(1, (int) Math.round(height / subImageWidth));
+            double subImageHeight = (double) height / rows;
+            long bytesPerRow = (long) width * ((long) Math.ceil(subImageHeight) + 1) *
+                    ImageBudget.BYTES_PER_PIXEL;
+            int rowsPerBand = (int) Math.max(1, Math.min(rows, MAX_BAND_BYTES / bytesPerRow));
+            char[] row = new char[resolution];
+            double[] rowBrightnesses = new double[resolution];
+            ErrorDiffusionDitherer ditherer = dithering ? new ErrorDiffusionDitherer(resolution) : null;
+            asciiOutput.begin(resolution);
+            try {
+                for (int firstRow = 0; firstRow < rows; firstRow += rowsPerBand) {
+                    AsciiArtAlgorithm.checkInterrupted();
+                    int lastRow = Math.min(rows, firstRow + rowsPerBand);
+                    int bandTop = (int) Math.floor(firstRow * subImageHeight);
+                    int bandBottom = Math.min(height, (int) Math.ceil(lastRow * subImageHeight));
+                    Image band = reader.readBand(bandTop, bandBottom - bandTop);
+                    for (int i = firstRow; i < lastRow; i++) {
+                        double top = i * subImageHeight;
+                        double bottom = Math.min(height, (i + 1) * subImageHeight);
+                        for (int j = 0; j < resolution; j++) {
+                            rowBrightnesses[j] = band.calculateAverageBrightnessOfRegion(
+                                    j * subImageWidth, top - bandTop,
+                                    (j + 1) * subImageWidth, bottom - bandTop);
+                        }
+                        if (ditherer != null) {
+                            ditherer.ditherRow(rowBrightnesses, 0, charset, row);
+                        } else {
+                            for (int j = 0; j < resolution; j++) {
+                                row[j] = charset.getCharByImageBrightness(rowBrightnesses[j]);
+                            }
+                        }
+                        asciiOutput.outRow(row);
+                    }
+                }
+            } finally {
+                asciiOutput.end();
+            }
+        }
+        return true;
+    }
+}
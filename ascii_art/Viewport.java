@@ -0,0 +1,154 @@
+package ascii_art;
+
+/**
+ * Viewport is the window of an image that is rendered, as a grid of cells of a fixed number of columns
+ * and rows. At zoom level 0 the grid covers the whole image, like a render of the whole image at the
+ * same resolution, and every level up halves the side of the cells around the center of the window.
+ * The window lies on a lattice of whole cells, so moving it by a number of cells keeps the cells it
+ * still covers exactly where they were. A viewport never changes, moving or zooming it creates a new
+ * one.
+ */
+public final class Viewport {
+    /**
+     * The smallest side of a cell, in pixels, so that zooming in stops at about one pixel per cell.
+     */
+    public static final double MIN_CELL_SIZE = 1.0;
+
+    private final int columns;
+    private final int rows;
+    private final double wholeCellSize;
+    private final int zoomLevel;
+    private final int originColumn;
+    private final int originRow;
+
+    private Viewport(int columns, int rows, double wholeCellSize, int zoomLevel, int originColumn,
+                     int originRow) {
+        this.columns = columns;
+        this.rows = rows;
+        this.wholeCellSize = wholeCellSize;
+        this.zoomLevel = zoomLevel;
+        this.originColumn = originColumn;
+        this.originRow = originRow;
+    }
+
+    /**
+     * This method creates the viewport of a whole image.
+     * @param imageWidth int of the width of the image
+     * @param imageHeight int of the height of the image
+     * @param columns int of the number of cells in every row
+     * @return Viewport covering the image
+     */
+    public static Viewport whole(int imageWidth, int imageHeight, int columns) {
+        double cellSize = (double) imageWidth / columns;
+        int rows = Math.max(1, (int) Math.round(imageHeight / cellSize));
+        return new Viewport(columns, rows, cellSize, 0, 0, 0);
+    }
+
+    /**
+     * This method returns the viewport moved by a number of cells.
+     * @param columnsRight int of the cells to move right, negative to move left
+     * @param rowsDown int of the cells to move down, negative to move up
+     * @return Viewport moved
+     */
+    public Viewport panned(int columnsRight, int rowsDown) {
+        return new Viewport(columns, rows, wholeCellSize, zoomLevel, originColumn + columnsRight,
+                originRow + rowsDown);
+    }
+
+    /**
+     * This method returns the viewport zoomed in or out by a factor of 2, keeping the cell at its center
+     * as close to the center as the lattice of the new level allows.
+     * @param in boolean true to zoom in, false to zoom out
+     * @return Viewport zoomed
+     */
+    public Viewport zoomed(boolean in) {
+        int newLevel = in ? zoomLevel + 1 : zoomLevel - 1;
+        double newCellSize = wholeCellSize / (1L << newLevel);
+        double centerX = (originColumn + columns / 2.0) * getCellSize();
+        double centerY = (originRow + rows / 2.0) * getCellSize();
+        return new Viewport(columns, rows, wholeCellSize, newLevel,
+                (int) Math.round(centerX / newCellSize - columns / 2.0),
+                (int) Math.round(centerY / newCellSize - rows / 2.0));
+    }
+
+    /**
+     * This method checks if the viewport can be zoomed in or out once more. It can't be zoomed out of
+     * level 0, or in beyond cells of MIN_CELL_SIZE.
+     * @param in boolean true to zoom in, false to zoom out
+     * @return boolean true if the zoom is possible, false otherwise
+     */
+    public boolean canZoom(boolean in) {
+        return in ? getCellSize() / 2 >= MIN_CELL_SIZE : zoomLevel > 0;
+    }
+
+    /**
+     * This method checks if any cell of the viewport shows a part of the image.
+     * @param imageWidth int of the width of the image
+     * @param imageHeight int of the height of the image
+     * @return boolean true if the viewport overlaps the image, false otherwise
+     */
+    public boolean overlaps(int imageWidth, int imageHeight) {
+        double cellSize = getCellSize();
+        return (originColumn + columns) * cellSize > 0 && originColumn * cellSize < imageWidth &&
+                (originRow + rows) * cellSize > 0 && originRow * cellSize < imageHeight;
+    }
+
+    /**
+     * This method returns the number of cells in every row.
+     * @return int of the number of columns
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * This method returns the number of rows of cells.
+     * @return int of the number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * This method returns the zoom level, 0 for the whole image.
+     * @return int of the zoom level
+     */
+    public int getZoomLevel() {
+        return zoomLevel;
+    }
+
+    /**
+     * This method returns the side of a cell.
+     * @return double of the side of a cell, in pixels
+     */
+    public double getCellSize() {
+        return wholeCellSize / (1L << zoomLevel);
+    }
+
+    /**
+     * This method returns the column of the lattice of the zoom level where the viewport starts.
+     * @return int of the first column
+     */
+    public int getOriginColumn() {
+        return originColumn;
+    }
+
+    /**
+     * This method returns the row of the lattice of the zoom level where the viewport starts.
+     * @return int of the first row
+     */
+    public int getOriginRow() {
+        return originRow;
+    }
+
+    /**
+     * This method checks if another viewport has cells on the same lattice, of the same size, so the
+     * cells they share are the same.
+     * @param other Viewport to compare with
+     * @return boolean true if the cells of both viewports are on the same lattice
+     */
+    public boolean sharesLattice(Viewport other) {
+        return other != null && columns == other.columns && rows == other.rows &&
+                wholeCellSize == other.wholeCellSize && zoomLevel == other.zoomLevel;
+    }
+}
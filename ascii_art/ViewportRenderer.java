@@ -0,0 +1,90 @@
+package ascii_art;
+
+import image.Image;
+import image.IntegralImage;
+import image_char_matching.CharsetSnapshot;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * ViewportRenderer renders the window of an image a Viewport shows. The brightness of every cell is
+ * read from the integral image of the image, so only the cells inside the window are computed, each in
+ * constant time. The brightnesses of the last render are kept, and after moving the window by some
+ * cells only the cells it newly exposes are computed.
+ * Cells are matched to the charset directly, without contrast normalization or dithering.
+ */
+public class ViewportRenderer {
+    private Image image;
+    private Viewport renderedViewport;
+    private double[] brightnesses = new double[0];
+    private double[] previousBrightnesses = new double[0];
+    private char[][] art;
+    private int computedCells;
+
+    /**
+     * This method sets the image to render. Setting another image forgets the kept brightnesses.
+     * @param newImage Image to render
+     */
+    public void setImage(Image newImage) {
+        if (newImage != image) {
+            image = newImage;
+            renderedViewport = null;
+        }
+    }
+
+    /**
+     * This method renders a viewport of the image. The returned array is reused by later renders of a
+     * viewport of the same size, so it must be used or copied before the next render.
+     * @param viewport Viewport to render
+     * @param charset CharsetSnapshot to match the cells with
+     * @return char[][] of the ASCII art of the viewport
+     * @throws CancellationException if the thread is interrupted
+     */
+    public char[][] render(Viewport viewport, CharsetSnapshot charset) {
+        IntegralImage integralImage = image.getIntegralImage();
+        int columns = viewport.getColumns();
+        int rows = viewport.getRows();
+        Viewport previous = viewport.sharesLattice(renderedViewport) ? renderedViewport : null;
+        // The brightnesses are about to change, so a cancelled render must not leave them looking like
+        // the ones of the last viewport.
+        renderedViewport = null;
+        double[] kept = brightnesses;
+        brightnesses = previousBrightnesses.length == columns * rows ? previousBrightnesses :
+                new double[columns * rows];
+        previousBrightnesses = kept;
+        double cellSize = viewport.getCellSize();
+        computedCells = 0;
+        for (int i = 0; i < rows; i++) {
+            AsciiArtAlgorithm.checkInterrupted();
+            int row = viewport.getOriginRow() + i;
+            int previousRow = previous == null ? -1 : row - previous.getOriginRow();
+            boolean keptRow = previousRow >= 0 && previousRow < rows;
+            for (int j = 0; j < columns; j++) {
+                int column = viewport.getOriginColumn() + j;
+                int previousColumn = previous == null ? -1 : column - previous.getOriginColumn();
+                if (keptRow && previousColumn >= 0 && previousColumn < columns) {
+                    brightnesses[i * columns + j] = kept[previousRow * columns + previousColumn];
+                } else {
+                    brightnesses[i * columns + j] = integralImage.calculateAverageBrightnessOfRegion(
+                            column * cellSize, row * cellSize, (column + 1) * cellSize, (row + 1) * cellSize);
+                    computedCells++;
+                }
+            }
+        }
+        if (art == null || art.length != rows || art[0].length != columns) {
+            art = new char[rows][columns];
+        }
+        charset.matchAll(brightnesses, art);
+        renderedViewport = viewport;
+        return art;
+    }
+
+    /**
+     * This method returns the number of cells whose brightness the last render computed, rather than
+     * kept from the render before it.
+     * @return int of the number of computed cells
+     */
+    public int getComputedCells() {
+        return computedCells;
+    }
+}
@@ -10,4 +10,12 @@ public interface AsciiOutput {
      * Output the specified 2D array of chars
      */
     void out(char[][] chars);
+
+    /**
+     * Output the specified 2D array of chars in place of the previous output, such as when a preview
+     * is refined. Outputs that overwrite their destination anyway simply output it again.
+     */
+    default void replace(char[][] chars) {
+        out(chars);
+    }
 }
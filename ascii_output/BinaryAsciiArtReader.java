@@ -0,0 +1,144 @@
+package ascii_output;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a file written by {@link BinaryAsciiOutput}. The file is memory-mapped and only its header is
+ * decoded when it is opened, so any row or cell can be read directly without decoding the rest.
+ */
+public class BinaryAsciiArtReader implements Closeable {
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int rows;
+    private final int columns;
+    private final char[] charset;
+    private final int bytesPerIndex;
+    private final int gridOffset;
+
+    /**
+     * Opens and maps a binary ASCII art file.
+     * @param filename the file to read
+     * @throws IOException if the file can't be read or is not a binary ASCII art file
+     */
+    public BinaryAsciiArtReader(String filename) throws IOException {
+        channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < BinaryAsciiOutput.FIXED_HEADER_SIZE ||
+                    buffer.getInt(0) != BinaryAsciiOutput.MAGIC) {
+                throw new IOException("Not a binary ASCII art file.");
+            }
+            if (buffer.get(4) != BinaryAsciiOutput.FORMAT_VERSION) {
+                throw new IOException("Unsupported binary ASCII art version.");
+            }
+            rows = buffer.getInt(5);
+            columns = buffer.getInt(9);
+            if (rows < 1 || columns < 1) {
+                throw new IOException("Invalid size of binary ASCII art.");
+            }
+            int charsetSize = buffer.getShort(13) & 0xFFFF;
+            bytesPerIndex = charsetSize <= BinaryAsciiOutput.MAX_BYTE_INDEXED_CHARSET ? 1 : 2;
+            gridOffset = BinaryAsciiOutput.FIXED_HEADER_SIZE + 2 * charsetSize;
+            long expectedSize = gridOffset + (long) rows * columns * bytesPerIndex;
+            if (buffer.capacity() < expectedSize) {
+                throw new IOException("Truncated binary ASCII art file.");
+            }
+            charset = new char[charsetSize];
+            for (int i = 0; i < charsetSize; i++) {
+                charset[i] = buffer.getChar(BinaryAsciiOutput.FIXED_HEADER_SIZE + 2 * i);
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of rows of the art.
+     * @return int of the rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of chars in every row of the art.
+     * @return int of the columns
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Returns the distinct chars of the art.
+     * @return char[] of the charset, in ascending order
+     */
+    public char[] getCharset() {
+        return charset.clone();
+    }
+
+    /**
+     * Returns a single char of the art.
+     * @param row the row of the cell
+     * @param column the column of the cell
+     * @return char of the cell
+     */
+    public char getChar(int row, int column) {
+        checkCell(row, column);
+        int cell = row * columns + column;
+        int index = bytesPerIndex == 1 ? buffer.get(gridOffset + cell) & 0xFF :
+                buffer.getShort(gridOffset + 2 * cell) & 0xFFFF;
+        return charset[index];
+    }
+
+    /**
+     * Returns a single row of the art.
+     * @param row the row to read
+     * @return char[] of the row
+     */
+    public char[] readRow(int row) {
+        char[] chars = new char[columns];
+        for (int column = 0; column < columns; column++) {
+            chars[column] = getChar(row, column);
+        }
+        return chars;
+    }
+
+    /**
+     * Returns the whole art.
+     * @return char[][] of the art
+     */
+    public char[][] readAll() {
+        char[][] chars = new char[rows][];
+        for (int row = 0; row < rows; row++) {
+            chars[row] = readRow(row);
+        }
+        return chars;
+    }
+
+    /**
+     * Checks that a cell is inside the art.
+     * @param row the row of the cell
+     * @param column the column of the cell
+     * @throws IndexOutOfBoundsException if the cell is outside the art
+     */
+    private void checkCell(int row, int column) {
+        if (row < 0 || row >= rows || column < 0 || column >= columns) {
+            throw new IndexOutOfBoundsException("Cell (" + row + ", " + column + ") is outside the art.");
+        }
+    }
+
+    /**
+     * Closes the file. The mapping is released once the reader is no longer referenced.
+     * @throws IOException if the file can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
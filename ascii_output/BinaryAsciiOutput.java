@@ -0,0 +1,108 @@
+package ascii_output;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+
+/**
+ * Output a 2D array of chars to a compact binary file, which can be read back by
+ * {@link BinaryAsciiArtReader} without decoding the whole file.
+ * <p>
+ * The file holds, in big-endian order: the magic number, a format version byte, the number of rows and
+ * columns, the charset (its size followed by its chars) and a dense grid of charset indices - one byte
+ * per cell when the charset has up to 256 chars, two bytes otherwise.
+ */
+public class BinaryAsciiOutput implements AsciiOutput {
+    /**
+     * The first four bytes of every binary ASCII art file.
+     */
+    public static final int MAGIC = 0x41534342; // "ASCB"
+    /**
+     * The version of the format written by this class.
+     */
+    public static final byte FORMAT_VERSION = 2;
+    /**
+     * The number of bytes before the charset: magic, version, rows, columns and charset size.
+     */
+    static final int FIXED_HEADER_SIZE = 4 + 1 + 4 + 4 + 2;
+    /**
+     * The largest charset whose indices fit in a single byte.
+     */
+    static final int MAX_BYTE_INDEXED_CHARSET = 256;
+
+    private final String filename;
+
+    /**
+     * Create an output to a binary file in the format described above, written on every out.
+     * @param filename the name of the file to write, replaced if it already exists
+     */
+    public BinaryAsciiOutput(String filename) {
+        this.filename = filename;
+    }
+
+    @Override
+    public void out(char[][] chars) {
+        try {
+            write(chars);
+        } catch (IOException e) {
+            Logger.getGlobal().severe(String.format("Failed to write to \"%s\"", filename));
+        }
+    }
+
+    /**
+     * Write the specified 2D array of chars, reporting failures to the caller.
+     * @param chars the chars of the art
+     * @throws IOException if the file can't be written
+     */
+    public void write(char[][] chars) throws IOException {
+        char[] charset = collectCharset(chars);
+        int[] indexOf = new int[Character.MAX_VALUE + 1];
+        for (int i = 0; i < charset.length; i++) {
+            indexOf[charset[i]] = i;
+        }
+        try (DataOutputStream writer = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(filename)))) {
+            writer.writeInt(MAGIC);
+            writer.writeByte(FORMAT_VERSION);
+            writer.writeInt(chars.length);
+            writer.writeInt(chars[0].length);
+            writer.writeShort(charset.length);
+            for (char c : charset) {
+                writer.writeChar(c);
+            }
+            boolean byteIndexed = charset.length <= MAX_BYTE_INDEXED_CHARSET;
+            for (char[] row : chars) {
+                for (char c : row) {
+                    if (byteIndexed) {
+                        writer.writeByte(indexOf[c]);
+                    } else {
+                        writer.writeShort(indexOf[c]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Collect the distinct chars of the art, in ascending order.
+     * @param chars the chars of the art
+     * @return the charset of the art
+     */
+    private static char[] collectCharset(char[][] chars) {
+        TreeSet<Character> distinctChars = new TreeSet<>();
+        for (char[] row : chars) {
+            for (char c : row) {
+                distinctChars.add(c);
+            }
+        }
+        char[] charset = new char[distinctChars.size()];
+        int i = 0;
+        for (char c : distinctChars) {
+            charset[i++] = c;
+        }
+        return charset;
+    }
+}
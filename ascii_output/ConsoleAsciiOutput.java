@@ -1,16 +1,172 @@
 package ascii_output;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+
 /**
  * Output a 2D array of chars to the console.
  * @author Dan Nirel
- */public class ConsoleAsciiOutput implements AsciiOutput{
+ */public class ConsoleAsciiOutput implements StreamingAsciiOutput {
+    private static final String MOVE_UP_AND_CLEAR = "\r\033[%dA\033[J";
+    private static final String CLEAR_LINE = "\r\033[K";
+    private static final String TERMINAL_DEVICE = "/dev/tty";
+    private static final String[] TERMINAL_SIZE_COMMAND = {"stty", "size"};
+    private static final int CHAR_WIDTH = 2;
+
+    private int frameColumns = 0;
+    private int frameRows = 0;
+    private byte[] unfinishedLine = new byte[0];
+
+    /**
+     * Output the specified 2D array of chars in place of the previous frame. The frame is only replaced
+     * in place on an interactive console whose output is a TrackingPrintStream and whose size is known.
+     * The cursor is moved up over the physical lines of the frame, every char of which takes two
+     * columns, and over everything printed or typed below it, such as the prompt of the shell, which is
+     * printed again below the new frame. Otherwise the new frame is printed below the previous one.
+     * @param chars the ASCII art
+     */
+    @Override
+    public void replace(char[][] chars) {
+        TrackingPrintStream console = getTrackingConsole();
+        int[] terminalSize = console == null ? null : readTerminalSize();
+        if (terminalSize == null || frameRows == 0) {
+            out(chars);
+            return;
+        }
+        synchronized (console) {
+            byte[] printedBelow = console.getSinceMark();
+            int lines = frameRows * countPhysicalLines(frameColumns * CHAR_WIDTH, terminalSize[1]) +
+                    countLineBreaks(printedBelow, terminalSize[1]);
+            if (lines >= terminalSize[0]) {
+                // The start of the frame has scrolled off the screen, where the cursor can't go.
+                out(chars);
+                return;
+            }
+            console.print(String.format(MOVE_UP_AND_CLEAR, lines));
+            out(chars);
+            console.write(printedBelow, 0, printedBelow.length);
+            console.flush();
+        }
+    }
+
     @Override
     public void out(char[][] chars) {
-        for (int y = 0; y < chars.length ; y++) {
-            for (int x = 0; x < chars[y].length; x++) {
-                System.out.print(chars[y][x] + " ");
+        // The frame is printed as a whole, so other threads can't print between its rows.
+        PrintStream console = System.out;
+        synchronized (console) {
+            begin(chars[0].length);
+            for (int y = 0; y < chars.length ; y++) {
+                outRow(chars[y]);
+            }
+            end();
+        }
+    }
+
+    /**
+     * Start the output of a new ASCII art. On a tracked console, an unfinished line such as a prompt is
+     * cleared, and printed again below the art when it ends.
+     * @param columns the number of chars in every row
+     */
+    @Override
+    public void begin(int columns) {
+        frameColumns = columns;
+        frameRows = 0;
+        TrackingPrintStream console = getTrackingConsole();
+        if (console != null) {
+            unfinishedLine = console.getUnfinishedLine();
+            if (unfinishedLine.length > 0) {
+                console.print(CLEAR_LINE);
+            }
+            console.mark();
+        }
+    }
+
+    @Override
+    public void outRow(char[] row) {
+        StringBuilder line = new StringBuilder(row.length * CHAR_WIDTH);
+        for (int x = 0; x < row.length; x++) {
+            line.append(row[x]).append(' ');
+        }
+        System.out.println(line);
+        frameRows++;
+    }
+
+    @Override
+    public void end() {
+        TrackingPrintStream console = getTrackingConsole();
+        if (console != null) {
+            console.mark();
+            console.write(unfinishedLine, 0, unfinishedLine.length);
+            console.flush();
+        }
+    }
+
+    private static TrackingPrintStream getTrackingConsole() {
+        PrintStream console = System.out;
+        if (System.console() == null || !(console instanceof TrackingPrintStream)) {
+            return null;
+        }
+        return (TrackingPrintStream) console;
+    }
+
+    /**
+     * This method reads the size of the terminal from the terminal device.
+     * @return int[] of the number of rows and columns, or null if the size can't be read
+     */
+    private static int[] readTerminalSize() {
+        try {
+            Process process = new ProcessBuilder(TERMINAL_SIZE_COMMAND)
+                    .redirectInput(new File(TERMINAL_DEVICE)).start();
+            String size;
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream()))) {
+                size = reader.readLine();
+            }
+            if (process.waitFor() != 0 || size == null) {
+                return null;
+            }
+            String[] parts = size.trim().split(" +");
+            int[] terminalSize = {Integer.parseInt(parts[0]), Integer.parseInt(parts[1])};
+            return terminalSize[0] > 0 && terminalSize[1] > 0 ? terminalSize : null;
+        } catch (IOException | NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private static int countPhysicalLines(int length, int terminalColumns) {
+        return Math.max(1, (length + terminalColumns - 1) / terminalColumns);
+    }
+
+    /**
+     * This method counts the lines the cursor moved down while printing text from the start of a line,
+     * at line breaks and where long lines wrap.
+     * @param text byte[] of the printed text
+     * @param terminalColumns int of the width of the terminal
+     * @return int of the number of lines
+     */
+    private static int countLineBreaks(byte[] text, int terminalColumns) {
+        int lines = 0;
+        int column = 0;
+        for (byte b : text) {
+            if (b == '\n') {
+                lines++;
+                column = 0;
+            } else if (b == '\r') {
+                column = 0;
+            } else if ((b & 0xc0) != 0x80) {
+                if (column == terminalColumns) {
+                    lines++;
+                    column = 0;
+                }
+                column++;
             }
-            System.out.println();
         }
+        return lines;
     }
 }
@@ -0,0 +1,84 @@
+package ascii_output;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pre-rendered bitmaps of the glyphs of a font in square cells of a given size, black on white, kept for
+ * the life of the program. Every glyph is drawn with antialiasing once, the first time it is needed,
+ * and from then on a cell of it is copied row by row into the raster of an image.
+ */
+final class GlyphAtlas {
+    private static final ConcurrentHashMap<String, GlyphAtlas> ATLASES = new ConcurrentHashMap<>();
+
+    private final Font font;
+    private final int cellSize;
+    private final int baseline;
+    private final ConcurrentHashMap<Character, int[]> glyphs = new ConcurrentHashMap<>();
+
+    private GlyphAtlas(String fontName, int cellSize) {
+        this.cellSize = cellSize;
+        Graphics2D g = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics();
+        FontMetrics metrics = g.getFontMetrics(new Font(fontName, Font.PLAIN, cellSize));
+        // Scale the font so a line of it, ascent and descent, is as tall as a cell.
+        float size = (float) cellSize * cellSize / (metrics.getAscent() + metrics.getDescent());
+        font = new Font(fontName, Font.PLAIN, cellSize).deriveFont(size);
+        baseline = g.getFontMetrics(font).getAscent();
+        g.dispose();
+    }
+
+    /**
+     * Returns the atlas of a font and cell size, creating it if it doesn't exist yet.
+     * @param fontName the name of the font
+     * @param cellSize the side of a cell, in pixels
+     * @return the atlas
+     */
+    static GlyphAtlas of(String fontName, int cellSize) {
+        return ATLASES.computeIfAbsent(fontName + '|' + cellSize, key -> new GlyphAtlas(fontName, cellSize));
+    }
+
+    /**
+     * Returns the bitmap of a glyph, drawing it if it isn't in the atlas yet.
+     * @param c the char of the glyph
+     * @return the RGB pixels of the cell, row by row, which must not be changed
+     */
+    int[] getGlyph(char c) {
+        int[] glyph = glyphs.get(c);
+        return glyph != null ? glyph : glyphs.computeIfAbsent(c, this::drawGlyph);
+    }
+
+    /**
+     * Returns the side of a cell.
+     * @return the side of a cell, in pixels
+     */
+    int getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * Draws a glyph centered in its cell.
+     * @param c the char of the glyph
+     * @return the RGB pixels of the cell, row by row
+     */
+    private int[] drawGlyph(char c) {
+        BufferedImage cell = new BufferedImage(cellSize, cellSize, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = cell.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, cellSize, cellSize);
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+        g.setColor(Color.BLACK);
+        g.setFont(font);
+        String glyph = Character.toString(c);
+        float x = (cellSize - (float) g.getFontMetrics().getStringBounds(glyph, g).getWidth()) / 2;
+        g.drawString(glyph, x, baseline);
+        g.dispose();
+        return ((DataBufferInt) cell.getRaster().getDataBuffer()).getData();
+    }
+}
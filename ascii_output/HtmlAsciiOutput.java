@@ -7,14 +7,19 @@ import java.util.logging.Logger;
 
 /**
  * Output a 2D array of chars to an HTML file viewable in a web browser.
+ * Characters outside ASCII, such as Braille and block elements, are written as character references,
+ * so the file is read correctly whatever encoding the browser assumes.
  * @author Dan Nirel
  */
-public class HtmlAsciiOutput implements AsciiOutput {
+public class HtmlAsciiOutput implements StreamingAsciiOutput {
     private static final double BASE_LINE_SPACING = 0.8;
     private static final double BASE_FONT_SIZE = 150.0;
+    private static final char MAX_ASCII_CHAR = '\u007f';
+    private static final String CHAR_REFERENCE = "&#x%X;";
 
     private final String fontName;
     private final String filename;
+    private BufferedWriter writer;
 
     public HtmlAsciiOutput(String filename, String fontName) {
         this.fontName = fontName;
@@ -23,41 +28,111 @@ public class HtmlAsciiOutput implements AsciiOutput {
 
     @Override
     public void out(char[][] chars) {
-        try(BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
-            writer.write(String.format(
-                "<!DOCTYPE html>\n"+
-                "<html>\n"+
-                "<body style=\""+
-                    "\tCOLOR:#000000;"+
-                    "\tTEXT-ALIGN:center;"+
-                    "\tFONT-SIZE:1px;\">\n"+
-                "<p style=\""+
-                    "\twhite-space:pre;"+
-                    "\tFONT-FAMILY:%s;"+
-                    "\tFONT-SIZE:%frem;"+
-                    "\tLETTER-SPACING:0.15em;"+
-                    "\tLINE-HEIGHT:%fem;\">\n",
-                    fontName, BASE_FONT_SIZE/chars[0].length, BASE_LINE_SPACING));
-
-            for(int y = 0 ; y < chars.length ; y++) {
-                for (int x = 0; x < chars[y].length ; x++) {
-                    String htmlRep;
-                    switch(chars[y][x]) {
-                        case '<': htmlRep = "&lt;";  break;
-                        case '>': htmlRep = "&gt;";  break;
-                        case '&': htmlRep = "&amp;"; break;
-                        default:  htmlRep = String.valueOf(chars[y][x]);
-                    }
-                    writer.write(htmlRep);
-                }
-                writer.newLine();
+        try {
+            write(chars);
+        } catch (IOException e) {
+            Logger.getGlobal().severe(String.format("Failed to write to \"%s\"", filename));
+        }
+    }
+
+    /**
+     * Write the specified 2D array of chars, reporting failures to the caller.
+     * @param chars the chars of the art
+     * @throws IOException if the file can't be written
+     */
+    public void write(char[][] chars) throws IOException {
+        try (BufferedWriter fileWriter = new BufferedWriter(new FileWriter(filename))) {
+            writeHeader(fileWriter, chars[0].length);
+            for (int y = 0 ; y < chars.length ; y++) {
+                writeRow(fileWriter, chars[y]);
             }
-            writer.write(
-                "</p>\n"+
-                "</body>\n"+
-                "</html>\n");
+            writeFooter(fileWriter);
+        }
+    }
+
+    @Override
+    public void begin(int columns) {
+        try {
+            writer = new BufferedWriter(new FileWriter(filename));
+            writeHeader(writer, columns);
         } catch(IOException e) {
-            Logger.getGlobal().severe(String.format("Failed to write to \"%s\"", filename));
+            fail();
+        }
+    }
+
+    @Override
+    public void outRow(char[] row) {
+        if (writer == null) return;
+        try {
+            writeRow(writer, row);
+        } catch(IOException e) {
+            fail();
+        }
+    }
+
+    @Override
+    public void end() {
+        if (writer == null) return;
+        try {
+            writeFooter(writer);
+            writer.close();
+            writer = null;
+        } catch(IOException e) {
+            fail();
+        }
+    }
+
+    private void writeHeader(BufferedWriter fileWriter, int columns) throws IOException {
+        fileWriter.write(String.format(
+            "<!DOCTYPE html>\n"+
+            "<html>\n"+
+            "<body style=\""+
+                "\tCOLOR:#000000;"+
+                "\tTEXT-ALIGN:center;"+
+                "\tFONT-SIZE:1px;\">\n"+
+            "<p style=\""+
+                "\twhite-space:pre;"+
+                "\tFONT-FAMILY:%s;"+
+                "\tFONT-SIZE:%frem;"+
+                "\tLETTER-SPACING:0.15em;"+
+                "\tLINE-HEIGHT:%fem;\">\n",
+                fontName, BASE_FONT_SIZE/columns, BASE_LINE_SPACING));
+    }
+
+    private static void writeRow(BufferedWriter fileWriter, char[] row) throws IOException {
+        for (int x = 0; x < row.length ; x++) {
+            String htmlRep;
+            switch(row[x]) {
+                case '<': htmlRep = "&lt;";  break;
+                case '>': htmlRep = "&gt;";  break;
+                case '&': htmlRep = "&amp;"; break;
+                default:  htmlRep = row[x] > MAX_ASCII_CHAR ?
+                        String.format(CHAR_REFERENCE, (int) row[x]) : String.valueOf(row[x]);
+            }
+            fileWriter.write(htmlRep);
+        }
+        fileWriter.newLine();
+    }
+
+    private static void writeFooter(BufferedWriter fileWriter) throws IOException {
+        fileWriter.write(
+            "</p>\n"+
+            "</body>\n"+
+            "</html>\n");
+    }
+
+    /**
+     * Log a failed write and drop the rest of the current art.
+     */
+    private void fail() {
+        Logger.getGlobal().severe(String.format("Failed to write to \"%s\"", filename));
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException ignored) {
+                // The failure was already logged.
+            }
+            writer = null;
         }
     }
 }
@@ -0,0 +1,91 @@
+package ascii_output;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+/**
+ * Output a 2D array of chars to a PNG or JPEG image, black on white, every char in a square cell.
+ * The glyphs are drawn once into a {@link GlyphAtlas} and then copied into the int raster of the image,
+ * a row of a cell at a time, with the rows of the art filled in parallel.
+ */
+public class RasterAsciiOutput implements AsciiOutput {
+    /**
+     * The side of a cell when none is given, in pixels.
+     */
+    public static final int DEFAULT_CELL_SIZE = 4;
+    private static final String PNG = "png";
+    private static final String JPEG = "jpeg";
+
+    private final String filename;
+    private final String formatName;
+    private final GlyphAtlas atlas;
+
+    /**
+     * Create an output to an image file, whose format is taken from the extension of its name.
+     * @param filename the name of the file, ending with .png, .jpg or .jpeg
+     * @param fontName the name of the font of the glyphs
+     * @param cellSize the side of the cell of every char, in pixels
+     * @throws IllegalArgumentException if the extension is not of a supported format
+     */
+    public RasterAsciiOutput(String filename, String fontName, int cellSize) {
+        String name = filename.toLowerCase(Locale.ROOT);
+        if (name.endsWith(".png")) {
+            formatName = PNG;
+        } else if (name.endsWith(".jpg") || name.endsWith(".jpeg")) {
+            formatName = JPEG;
+        } else {
+            throw new IllegalArgumentException("Unsupported image format: " + filename);
+        }
+        this.filename = filename;
+        atlas = GlyphAtlas.of(fontName, cellSize);
+    }
+
+    @Override
+    public void out(char[][] chars) {
+        try {
+            write(chars);
+        } catch (IOException e) {
+            Logger.getGlobal().severe(String.format("Failed to write to \"%s\"", filename));
+        }
+    }
+
+    /**
+     * Write the specified 2D array of chars as an image, reporting failures to the caller.
+     * @param chars the chars of the art
+     * @throws IOException if the file can't be written
+     */
+    public void write(char[][] chars) throws IOException {
+        if (!ImageIO.write(render(chars), formatName, new File(filename))) {
+            throw new IOException("No writer for " + formatName);
+        }
+    }
+
+    /**
+     * Render the specified 2D array of chars to an image.
+     * @param chars the chars of the art
+     * @return the image of the art
+     */
+    public BufferedImage render(char[][] chars) {
+        int cellSize = atlas.getCellSize();
+        int width = chars[0].length * cellSize;
+        BufferedImage image = new BufferedImage(width, chars.length * cellSize, BufferedImage.TYPE_INT_RGB);
+        int[] raster = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        IntStream.range(0, chars.length).parallel().forEach(row -> {
+            int rowStart = row * cellSize * width;
+            for (int column = 0; column < chars[row].length; column++) {
+                int[] glyph = atlas.getGlyph(chars[row][column]);
+                int cellStart = rowStart + column * cellSize;
+                for (int y = 0; y < cellSize; y++) {
+                    System.arraycopy(glyph, y * cellSize, raster, cellStart + y * width, cellSize);
+                }
+            }
+        });
+        return image;
+    }
+}
@@ -0,0 +1,24 @@
+package ascii_output;
+
+/**
+ * An AsciiOutput that can also receive the ASCII art one row at a time, so that art which does not fit
+ * in memory can be written while it is being rendered.
+ */
+public interface StreamingAsciiOutput extends AsciiOutput {
+    /**
+     * Start the output of a new ASCII art.
+     * @param columns the number of chars in every row
+     */
+    void begin(int columns);
+
+    /**
+     * Output the next row of the ASCII art. The array may be reused by the caller once this returns.
+     * @param row the chars of the row
+     */
+    void outRow(char[] row);
+
+    /**
+     * Finish the output of the ASCII art.
+     */
+    void end();
+}
@@ -0,0 +1,91 @@
+package ascii_output;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+/**
+ * A PrintStream over the console that keeps the unfinished line its output ends with and everything
+ * printed since the last mark, together with the lines the user typed, so that ConsoleAsciiOutput can
+ * move the cursor back over a frame and whatever was printed below it, and print that again below the
+ * frame replacing it. Escape sequences are kept but don't count as text of the line. Text the user is
+ * still typing is echoed by the terminal alone and can't be seen here.
+ */
+public class TrackingPrintStream extends PrintStream {
+    private static final int ESCAPE = 0x1b;
+    private static final int FIRST_FINAL_BYTE = 0x40;
+    private static final int LAST_FINAL_BYTE = 0x7e;
+
+    private final ByteArrayOutputStream sinceMark = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream unfinishedLine = new ByteArrayOutputStream();
+    private boolean inEscape = false;
+
+    /**
+     * Constructor to create an object of TrackingPrintStream class.
+     * @param console PrintStream of the console to print to
+     */
+    public TrackingPrintStream(PrintStream console) {
+        super(console, true);
+    }
+
+    @Override
+    public synchronized void write(int b) {
+        super.write(b);
+        track(b);
+    }
+
+    @Override
+    public synchronized void write(byte[] buf, int off, int len) {
+        super.write(buf, off, len);
+        for (int i = off; i < off + len; i++) {
+            track(buf[i]);
+        }
+    }
+
+    private void track(int b) {
+        sinceMark.write(b);
+        b &= 0xff;
+        if (inEscape) {
+            // A control sequence starts with ESC [ and ends with its first byte in the final range.
+            inEscape = b == '[' || b < FIRST_FINAL_BYTE || b > LAST_FINAL_BYTE;
+        } else if (b == ESCAPE) {
+            inEscape = true;
+        } else if (b == '\n' || b == '\r') {
+            unfinishedLine.reset();
+        } else {
+            unfinishedLine.write(b);
+        }
+    }
+
+    /**
+     * This method records a line the user typed, which the terminal echoed without it being printed.
+     * @param line String of the line, without its line break
+     */
+    public synchronized void recordInput(String line) {
+        byte[] bytes = (line + System.lineSeparator()).getBytes();
+        sinceMark.write(bytes, 0, bytes.length);
+        unfinishedLine.reset();
+    }
+
+    /**
+     * This method returns the text of the last line printed if it is unfinished, such as a prompt.
+     * @return byte[] of the text since the last line break, empty if the cursor is at the start of a line
+     */
+    public synchronized byte[] getUnfinishedLine() {
+        return unfinishedLine.toByteArray();
+    }
+
+    /**
+     * This method forgets everything printed so far, so getSinceMark returns what is printed from now on.
+     */
+    public synchronized void mark() {
+        sinceMark.reset();
+    }
+
+    /**
+     * This method returns everything printed since the last mark, including the lines the user typed.
+     * @return byte[] of the printed bytes
+     */
+    public synchronized byte[] getSinceMark() {
+        return sinceMark.toByteArray();
+    }
+}
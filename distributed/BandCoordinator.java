@@ -0,0 +1,355 @@
+package distributed;
+
+import image.Image;
+import image_char_matching.CharsetSnapshot;
+import image_char_matching.SubCellEncoder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * BandCoordinator renders ASCII arts on worker processes. It starts a number of BandWorker JVMs on this
+ * machine and connects to each of them over a loopback socket. A render divides the grid of sub-images
+ * into horizontal bands, several per worker, and every worker takes the next band as soon as it is
+ * done with the last one, so faster workers take more bands.
+ * The request of a band, with a copy of its pixels, is built when a worker takes the band, so only the
+ * bands being rendered are held in memory at once.
+ * A band whose worker dies, fails to render it or doesn't answer within a timeout is sent again to
+ * another worker, up to a fixed number of attempts. A worker that doesn't answer is stopped like a dead
+ * one. A dead worker is not replaced, and a render fails once no worker is left.
+ * The grid is the one AsciiArtAlgorithm uses, so the art is the same as rendering without workers.
+ * Contrast normalization and dithering depend on the whole image, so they aren't done by workers.
+ */
+public class BandCoordinator implements Closeable {
+    private static final int BANDS_PER_WORKER = 4;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long LIVENESS_CHECK_MILLIS = 100;
+    private static final int DEFAULT_BAND_TIMEOUT_MILLIS = 30_000;
+
+    private final List<WorkerConnection> workers = new ArrayList<>();
+    private final LinkedBlockingQueue<BandTask> bands = new LinkedBlockingQueue<>();
+    private final AtomicInteger liveWorkers = new AtomicInteger();
+    private final int bandTimeoutMillis;
+    private volatile boolean closed = false;
+
+    /**
+     * A render in progress, with the grid its bands divide, which collects the rows of its bands.
+     */
+    private static class Render {
+        private final Image source;
+        private final int columns;
+        private final int squareSize;
+        private final double subImageWidth;
+        private final double subImageHeight;
+        private final SubCellEncoder.Mode cellMode;
+        private final CharsetSnapshot charset;
+        private final char[][] art;
+        private final CountDownLatch remainingBands;
+        private volatile IOException failure;
+        private volatile boolean abandoned;
+
+        private Render(Image source, int columns, int squareSize, double subImageWidth,
+                       double subImageHeight, SubCellEncoder.Mode cellMode, CharsetSnapshot charset,
+                       int cellRows, int bandCount) {
+            this.source = source;
+            this.columns = columns;
+            this.squareSize = squareSize;
+            this.subImageWidth = subImageWidth;
+            this.subImageHeight = subImageHeight;
+            this.cellMode = cellMode;
+            this.charset = charset;
+            art = new char[cellRows][];
+            remainingBands = new CountDownLatch(bandCount);
+        }
+
+        /**
+         * This method fails the render, waking the thread waiting for it.
+         * @param e IOException of the failure
+         */
+        private void fail(IOException e) {
+            failure = e;
+            abandoned = true;
+            while (remainingBands.getCount() > 0) {
+                remainingBands.countDown();
+            }
+        }
+    }
+
+    /**
+     * A band of a render, together with the number of times it was sent to a worker.
+     */
+    private static class BandTask {
+        private final Render render;
+        private final int bandId;
+        private final int firstCellRow;
+        private final int cellRows;
+        private int attempts;
+
+        private BandTask(Render render, int bandId, int firstCellRow, int cellRows) {
+            this.render = render;
+            this.bandId = bandId;
+            this.firstCellRow = firstCellRow;
+            this.cellRows = cellRows;
+        }
+
+        /**
+         * This method creates the request of the band, copying the pixel rows it covers.
+         * @return BandRequest of the band
+         */
+        private BandRequest createRequest() {
+            int firstRow = firstCellRow * render.cellMode.getRows();
+            int rows = cellRows * render.cellMode.getRows();
+            return render.squareSize > 0 ?
+                    BandRequest.ofSquares(bandId, render.source, firstRow, rows, render.columns,
+                            render.squareSize, render.cellMode, render.charset) :
+                    BandRequest.ofRegions(bandId, render.source, firstRow, rows, render.columns,
+                            render.subImageWidth, render.subImageHeight, render.cellMode, render.charset);
+        }
+    }
+
+    /**
+     * The process of a worker and the connection to it, served by a thread of its own.
+     */
+    private class WorkerConnection {
+        private final Process process;
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final Thread thread;
+
+        private WorkerConnection(List<String> command) throws IOException {
+            process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            try {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(),
+                        StandardCharsets.US_ASCII));
+                String port = reader.readLine();
+                if (port == null) {
+                    throw new IOException("Worker exited before listening");
+                }
+                socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(port.trim()));
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(bandTimeoutMillis);
+                in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            } catch (IOException | NumberFormatException e) {
+                process.destroyForcibly();
+                throw new IOException("Failed to start worker", e);
+            }
+            thread = new Thread(this::serve);
+            thread.setDaemon(true);
+        }
+
+        /**
+         * This method sends bands to the worker until it dies or the coordinator is closed.
+         */
+        private void serve() {
+            try {
+                while (true) {
+                    BandTask task = bands.take();
+                    if (task.render.abandoned) {
+                        continue;
+                    }
+                    char[][] rows;
+                    try {
+                        BandRequest request = task.createRequest();
+                        request.writeTo(out);
+                        rows = BandRequest.readAnswer(in, request.getBandId());
+                    } catch (SocketTimeoutException e) {
+                        Logger.getGlobal().warning("Worker timed out, sending its band to another worker");
+                        close();
+                        retry(task, e);
+                        return;
+                    } catch (IOException e) {
+                        Logger.getGlobal().warning("Worker died, sending its band to another worker");
+                        close();
+                        retry(task, e);
+                        return;
+                    }
+                    if (rows == null) {
+                        retry(task, new IOException("Worker failed to render band"));
+                        continue;
+                    }
+                    System.arraycopy(rows, 0, task.render.art, task.firstCellRow, rows.length);
+                    task.render.remainingBands.countDown();
+                }
+            } catch (InterruptedException e) {
+                // The coordinator was closed.
+            }
+        }
+
+        /**
+         * This method closes the connection and stops the process of the worker.
+         */
+        private void close() {
+            if (!closed && liveWorkers.decrementAndGet() == 0) {
+                failAll(new IOException("No live workers"));
+            }
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // The worker is stopped anyway.
+            }
+            process.destroyForcibly();
+        }
+    }
+
+    /**
+     * Constructor to create an object of BandCoordinator class, starting the worker processes with the
+     * Java runtime and class path of this process. A worker that takes more than 30 seconds to answer a
+     * band is stopped.
+     * @param workerCount int of the number of worker processes
+     * @throws IOException if a worker can't be started
+     */
+    public BandCoordinator(int workerCount) throws IOException {
+        this(workerCount, DEFAULT_BAND_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Constructor to create an object of BandCoordinator class, starting the worker processes with the
+     * Java runtime and class path of this process.
+     * @param workerCount int of the number of worker processes
+     * @param bandTimeoutMillis int of the time a worker may take to answer a band before it is stopped
+     * @throws IOException if a worker can't be started
+     */
+    public BandCoordinator(int workerCount, int bandTimeoutMillis) throws IOException {
+        this.bandTimeoutMillis = bandTimeoutMillis;
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(BandWorker.class.getName());
+        try {
+            for (int i = 0; i < workerCount; i++) {
+                workers.add(new WorkerConnection(command));
+                liveWorkers.incrementAndGet();
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        for (WorkerConnection worker : workers) {
+            worker.thread.start();
+        }
+    }
+
+    /**
+     * This method returns the number of workers that didn't die.
+     * @return int of the number of live workers
+     */
+    public int getLiveWorkers() {
+        return liveWorkers.get();
+    }
+
+    /**
+     * This method renders an ASCII art on the workers.
+     * @param image Image to render
+     * @param resolution int of the number of characters in every row
+     * @param cellMode Mode of splitting the cells into sub-pixels
+     * @param charset CharsetSnapshot to match the cells with, unused by sub-cell modes
+     * @return char[][] of the ASCII art
+     * @throws IOException if a band failed on every attempt or no worker is left
+     * @throws CancellationException if the thread is interrupted while waiting for the workers
+     */
+    public char[][] render(Image image, int resolution, SubCellEncoder.Mode cellMode,
+                           CharsetSnapshot charset) throws IOException {
+        boolean paddedGrid = Integer.bitCount(resolution) == 1 && resolution <= image.getPaddedWidth();
+        Image source = paddedGrid ? image.getPaddedImage() : image;
+        int columns = resolution * cellMode.getColumns();
+        int cellRows;
+        int squareSize = 0;
+        double subImageWidth = 0;
+        double subImageHeight = 0;
+        if (paddedGrid && cellMode == SubCellEncoder.Mode.NONE) {
+            squareSize = source.getWidth() / resolution;
+            cellRows = source.getHeight() / squareSize;
+        } else {
+            double cellWidth = (double) source.getWidth() / resolution;
+            cellRows = Math.max(1, (int) Math.round(source.getHeight() / cellWidth));
+            subImageWidth = (double) source.getWidth() / columns;
+            subImageHeight = (double) source.getHeight() / (cellRows * cellMode.getRows());
+        }
+        int bandCount = Math.min(cellRows, Math.max(1, liveWorkers.get() * BANDS_PER_WORKER));
+        int cellRowsPerBand = (cellRows + bandCount - 1) / bandCount;
+        bandCount = (cellRows + cellRowsPerBand - 1) / cellRowsPerBand;
+        Render render = new Render(source, columns, squareSize, subImageWidth, subImageHeight, cellMode,
+                charset, cellRows, bandCount);
+        for (int band = 0; band < bandCount; band++) {
+            int firstCellRow = band * cellRowsPerBand;
+            bands.add(new BandTask(render, band, firstCellRow,
+                    Math.min(cellRowsPerBand, cellRows - firstCellRow)));
+        }
+        try {
+            while (!render.remainingBands.await(LIVENESS_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (liveWorkers.get() == 0) {
+                    render.fail(new IOException("No live workers"));
+                }
+            }
+        } catch (InterruptedException e) {
+            render.abandoned = true;
+            throw new CancellationException("Render cancelled.");
+        }
+        if (render.failure != null) {
+            throw render.failure;
+        }
+        return render.art;
+    }
+
+    /**
+     * This method sends a band that failed to another worker, or fails its render if the band had all
+     * of its attempts.
+     * @param task BandTask of the band
+     * @param cause IOException of the last failure
+     */
+    private void retry(BandTask task, IOException cause) {
+        task.attempts++;
+        if (task.attempts >= MAX_ATTEMPTS) {
+            task.render.fail(new IOException("Band failed " + MAX_ATTEMPTS + " times", cause));
+        } else {
+            bands.add(task);
+        }
+    }
+
+    /**
+     * This method fails the renders of all waiting bands.
+     * @param cause IOException of the failure
+     */
+    private void failAll(IOException cause) {
+        BandTask task;
+        while ((task = bands.poll()) != null) {
+            task.render.fail(cause);
+        }
+    }
+
+    /**
+     * This method stops all the workers. Renders in progress fail.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        liveWorkers.set(0);
+        for (WorkerConnection worker : workers) {
+            worker.thread.interrupt();
+            worker.close();
+        }
+        failAll(new IOException("Coordinator closed"));
+    }
+}
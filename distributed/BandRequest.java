@@ -0,0 +1,349 @@
+package distributed;
+
+import image.Image;
+import image_char_matching.CharsetSnapshot;
+import image_char_matching.SubCellEncoder;
+
+import java.awt.*;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.logging.Logger;
+
+/**
+ * BandRequest is the work a coordinator sends to a worker: the pixels of a horizontal band of an image
+ * and everything needed to turn the rows of the grid that fall in the band into characters.
+ * <p>
+ * A request is sent as big-endian fields: an int magic and a byte version, the int band id, the grid
+ * as the int first row, row count and column count of sub-images, the int side of square sub-images
+ * or 0 followed by the double width and height of region sub-images, the byte cell mode, the charset
+ * as an int size followed by a char and a double raw brightness per character, and the band as the
+ * int top row, width and height followed by 3 bytes of red, green and blue per pixel, row by row.
+ * <p>
+ * The worker answers with the int band id, a byte status, and on success the int number of rows and
+ * columns of characters followed by a char per character, row by row, or on failure a UTF message.
+ */
+final class BandRequest {
+    /**
+     * The first bytes of every request.
+     */
+    static final int MAGIC = 0x41534342;
+    /**
+     * The version of the protocol.
+     */
+    static final byte VERSION = 1;
+    /**
+     * The status of an answer with characters.
+     */
+    static final byte STATUS_OK = 0;
+    /**
+     * The status of an answer with an error message.
+     */
+    static final byte STATUS_ERROR = 1;
+    private static final int BYTES_PER_PIXEL = 3;
+
+    private final int bandId;
+    private final int firstRow;
+    private final int rows;
+    private final int columns;
+    private final int squareSize;
+    private final double subImageWidth;
+    private final double subImageHeight;
+    private final SubCellEncoder.Mode cellMode;
+    private final char[] chars;
+    private final double[] charBrightnesses;
+    private final int bandTop;
+    private final int width;
+    private final int bandHeight;
+    private final byte[] pixels;
+
+    /**
+     * Constructor to create an object of BandRequest class.
+     * @param bandId int identifying the band in its render
+     * @param firstRow int of the first row of sub-images of the band in the whole grid
+     * @param rows int of the number of rows of sub-images of the band
+     * @param columns int of the number of sub-images in every row
+     * @param squareSize int of the side of square sub-images, or 0 for region sub-images
+     * @param subImageWidth double of the width of region sub-images
+     * @param subImageHeight double of the height of region sub-images
+     * @param cellMode Mode of splitting cells into the sub-images
+     * @param chars char[] of the charset
+     * @param charBrightnesses double[] of the raw brightness of each character
+     * @param bandTop int of the first pixel row of the band in the image
+     * @param width int of the width of the image
+     * @param bandHeight int of the number of pixel rows of the band
+     * @param pixels byte[] of the red, green and blue of every pixel of the band
+     */
+    private BandRequest(int bandId, int firstRow, int rows, int columns, int squareSize,
+                        double subImageWidth, double subImageHeight, SubCellEncoder.Mode cellMode,
+                        char[] chars, double[] charBrightnesses, int bandTop, int width, int bandHeight,
+                        byte[] pixels) {
+        this.bandId = bandId;
+        this.firstRow = firstRow;
+        this.rows = rows;
+        this.columns = columns;
+        this.squareSize = squareSize;
+        this.subImageWidth = subImageWidth;
+        this.subImageHeight = subImageHeight;
+        this.cellMode = cellMode;
+        this.chars = chars;
+        this.charBrightnesses = charBrightnesses;
+        this.bandTop = bandTop;
+        this.width = width;
+        this.bandHeight = bandHeight;
+        this.pixels = pixels;
+    }
+
+    /**
+     * This method creates the request of a band of a grid of square sub-images, copying the pixel rows
+     * the band covers.
+     * @param bandId int identifying the band in its render
+     * @param source Image the grid divides
+     * @param firstRow int of the first row of sub-images of the band
+     * @param rows int of the number of rows of sub-images of the band
+     * @param columns int of the number of sub-images in every row
+     * @param squareSize int of the side of the sub-images
+     * @param cellMode Mode of splitting cells into the sub-images
+     * @param charset CharsetSnapshot to match the sub-images with
+     * @return BandRequest of the band
+     */
+    static BandRequest ofSquares(int bandId, Image source, int firstRow, int rows, int columns,
+                                 int squareSize, SubCellEncoder.Mode cellMode, CharsetSnapshot charset) {
+        int bandTop = firstRow * squareSize;
+        return create(bandId, source, firstRow, rows, columns, squareSize, 0, 0, cellMode, charset,
+                bandTop, rows * squareSize);
+    }
+
+    /**
+     * This method creates the request of a band of a grid of region sub-images, whose edges may fall
+     * inside pixels, copying every pixel row the band touches.
+     * @param bandId int identifying the band in its render
+     * @param source Image the grid divides
+     * @param firstRow int of the first row of sub-images of the band
+     * @param rows int of the number of rows of sub-images of the band
+     * @param columns int of the number of sub-images in every row
+     * @param subImageWidth double of the width of the sub-images
+     * @param subImageHeight double of the height of the sub-images
+     * @param cellMode Mode of splitting cells into the sub-images
+     * @param charset CharsetSnapshot to match the sub-images with
+     * @return BandRequest of the band
+     */
+    static BandRequest ofRegions(int bandId, Image source, int firstRow, int rows, int columns,
+                                 double subImageWidth, double subImageHeight, SubCellEncoder.Mode cellMode,
+                                 CharsetSnapshot charset) {
+        int bandTop = (int) Math.floor(firstRow * subImageHeight);
+        int bandBottom = Math.min(source.getHeight(),
+                (int) Math.ceil((firstRow + rows) * subImageHeight));
+        return create(bandId, source, firstRow, rows, columns, 0, subImageWidth, subImageHeight, cellMode,
+                charset, bandTop, bandBottom - bandTop);
+    }
+
+    /**
+     * This method creates the request of a band, copying its pixel rows and, unless the cells are
+     * encoded without a charset, the characters of the charset with their raw brightnesses.
+     * @return BandRequest of the band
+     */
+    private static BandRequest create(int bandId, Image source, int firstRow, int rows, int columns,
+                                      int squareSize, double subImageWidth, double subImageHeight,
+                                      SubCellEncoder.Mode cellMode, CharsetSnapshot charset, int bandTop,
+                                      int bandHeight) {
+        char[] chars = new char[0];
+        double[] charBrightnesses = new double[0];
+        if (cellMode == SubCellEncoder.Mode.NONE) {
+            chars = new char[charset.getChars().size()];
+            charBrightnesses = new double[chars.length];
+            int index = 0;
+            for (char c : charset.getChars()) {
+                chars[index] = c;
+                charBrightnesses[index] = charset.getRawBrightness(c);
+                index++;
+            }
+        }
+        int width = source.getWidth();
+        byte[] pixels = new byte[width * bandHeight * BYTES_PER_PIXEL];
+        int offset = 0;
+        for (int y = bandTop; y < bandTop + bandHeight; y++) {
+            for (int x = 0; x < width; x++) {
+                Color color = source.getPixel(y, x);
+                pixels[offset++] = (byte) color.getRed();
+                pixels[offset++] = (byte) color.getGreen();
+                pixels[offset++] = (byte) color.getBlue();
+            }
+        }
+        return new BandRequest(bandId, firstRow, rows, columns, squareSize, subImageWidth, subImageHeight,
+                cellMode, chars, charBrightnesses, bandTop, width, bandHeight, pixels);
+    }
+
+    /**
+     * This method returns the id of the band.
+     * @return int of the band id
+     */
+    int getBandId() {
+        return bandId;
+    }
+
+    /**
+     * This method writes the request.
+     * @param out DataOutputStream to write to
+     * @throws IOException if the request can't be written
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeInt(bandId);
+        out.writeInt(firstRow);
+        out.writeInt(rows);
+        out.writeInt(columns);
+        out.writeInt(squareSize);
+        if (squareSize == 0) {
+            out.writeDouble(subImageWidth);
+            out.writeDouble(subImageHeight);
+        }
+        out.writeByte(cellMode.ordinal());
+        out.writeInt(chars.length);
+        for (int i = 0; i < chars.length; i++) {
+            out.writeChar(chars[i]);
+            out.writeDouble(charBrightnesses[i]);
+        }
+        out.writeInt(bandTop);
+        out.writeInt(width);
+        out.writeInt(bandHeight);
+        out.write(pixels);
+        out.flush();
+    }
+
+    /**
+     * This method reads a request.
+     * @param in DataInputStream to read from
+     * @return BandRequest that was read
+     * @throws IOException if the request can't be read or isn't a request of this version
+     */
+    static BandRequest readFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+            throw new IOException("Not a band request of version " + VERSION);
+        }
+        int bandId = in.readInt();
+        int firstRow = in.readInt();
+        int rows = in.readInt();
+        int columns = in.readInt();
+        int squareSize = in.readInt();
+        double subImageWidth = 0;
+        double subImageHeight = 0;
+        if (squareSize == 0) {
+            subImageWidth = in.readDouble();
+            subImageHeight = in.readDouble();
+        }
+        SubCellEncoder.Mode cellMode = SubCellEncoder.Mode.values()[in.readByte()];
+        char[] chars = new char[in.readInt()];
+        double[] charBrightnesses = new double[chars.length];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = in.readChar();
+            charBrightnesses[i] = in.readDouble();
+        }
+        int bandTop = in.readInt();
+        int width = in.readInt();
+        int bandHeight = in.readInt();
+        byte[] pixels = new byte[width * bandHeight * BYTES_PER_PIXEL];
+        in.readFully(pixels);
+        return new BandRequest(bandId, firstRow, rows, columns, squareSize, subImageWidth, subImageHeight,
+                cellMode, chars, charBrightnesses, bandTop, width, bandHeight, pixels);
+    }
+
+    /**
+     * This method writes the answer with the characters of a band.
+     * @param out DataOutputStream to write to
+     * @param bandId int of the id of the band
+     * @param art char[][] of the characters of the band
+     * @throws IOException if the answer can't be written
+     */
+    static void writeAnswer(DataOutputStream out, int bandId, char[][] art) throws IOException {
+        out.writeInt(bandId);
+        out.writeByte(STATUS_OK);
+        out.writeInt(art.length);
+        out.writeInt(art.length == 0 ? 0 : art[0].length);
+        for (char[] row : art) {
+            for (char c : row) {
+                out.writeChar(c);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * This method writes the answer of a band that couldn't be rendered.
+     * @param out DataOutputStream to write to
+     * @param bandId int of the id of the band
+     * @param message String describing the failure
+     * @throws IOException if the answer can't be written
+     */
+    static void writeError(DataOutputStream out, int bandId, String message) throws IOException {
+        out.writeInt(bandId);
+        out.writeByte(STATUS_ERROR);
+        out.writeUTF(message);
+        out.flush();
+    }
+
+    /**
+     * This method reads the answer to a request.
+     * @param in DataInputStream to read from
+     * @param bandId int of the id of the band that was requested
+     * @return char[][] of the characters of the band, or null if the worker couldn't render it
+     * @throws IOException if the answer can't be read or belongs to another band
+     */
+    static char[][] readAnswer(DataInputStream in, int bandId) throws IOException {
+        if (in.readInt() != bandId) {
+            throw new IOException("Answer of another band");
+        }
+        if (in.readByte() != STATUS_OK) {
+            Logger.getGlobal().warning(String.format("Worker failed to render band %d: %s", bandId,
+                    in.readUTF()));
+            return null;
+        }
+        char[][] art = new char[in.readInt()][in.readInt()];
+        for (char[] row : art) {
+            for (int x = 0; x < row.length; x++) {
+                row[x] = in.readChar();
+            }
+        }
+        return art;
+    }
+
+    /**
+     * This method renders the band, giving the same characters as rendering the whole image would for
+     * its rows. Region edges are moved to the band by a whole number of pixels, which leaves the part
+     * of every pixel inside a region unchanged.
+     * @return char[][] of the characters of the rows of cells of the band
+     */
+    char[][] render() {
+        Color[][] pixelArray = new Color[bandHeight][width];
+        int offset = 0;
+        for (int y = 0; y < bandHeight; y++) {
+            for (int x = 0; x < width; x++) {
+                pixelArray[y][x] = new Color(pixels[offset] & 0xff, pixels[offset + 1] & 0xff,
+                        pixels[offset + 2] & 0xff);
+                offset += BYTES_PER_PIXEL;
+            }
+        }
+        Image band = new Image(pixelArray, width, bandHeight);
+        double[] brightnesses = new double[rows * columns];
+        for (int i = 0; i < rows; i++) {
+            int row = firstRow + i;
+            for (int j = 0; j < columns; j++) {
+                if (squareSize > 0) {
+                    brightnesses[i * columns + j] = band.calculateAverageBrightnessOfSquare(
+                            j * squareSize, row * squareSize - bandTop, squareSize);
+                } else {
+                    brightnesses[i * columns + j] = band.calculateAverageBrightnessOfRegion(
+                            j * subImageWidth, row * subImageHeight - bandTop,
+                            (j + 1) * subImageWidth, (row + 1) * subImageHeight - bandTop);
+                }
+            }
+        }
+        char[][] art = new char[rows / cellMode.getRows()][columns / cellMode.getColumns()];
+        if (cellMode != SubCellEncoder.Mode.NONE) {
+            return SubCellEncoder.encode(brightnesses, art[0].length, cellMode, art);
+        }
+        CharsetSnapshot.of(chars, charBrightnesses).matchAll(brightnesses, art);
+        return art;
+    }
+}
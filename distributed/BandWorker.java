@@ -0,0 +1,60 @@
+package distributed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * BandWorker is the main class of a worker process of a BandCoordinator. It listens on a free port of
+ * the loopback address, prints the port as the first line of its output, and renders the bands sent
+ * over the single connection it accepts, in order, until the connection is closed.
+ * <p>
+ * Usage: {@code java distributed.BandWorker}
+ */
+public final class BandWorker {
+    private BandWorker() {
+    }
+
+    /**
+     * The main method of a worker process.
+     * @param args the command line arguments, unused
+     * @throws IOException if the connection fails other than by being closed
+     */
+    public static void main(String[] args) throws IOException {
+        Socket socket;
+        try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            System.out.println(serverSocket.getLocalPort());
+            System.out.flush();
+            socket = serverSocket.accept();
+        }
+        socket.setTcpNoDelay(true);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(socket.getOutputStream()))) {
+            while (true) {
+                BandRequest request;
+                try {
+                    request = BandRequest.readFrom(in);
+                } catch (EOFException e) {
+                    return;
+                }
+                char[][] art;
+                try {
+                    art = request.render();
+                } catch (RuntimeException e) {
+                    BandRequest.writeError(out, request.getBandId(), String.valueOf(e));
+                    continue;
+                }
+                BandRequest.writeAnswer(out, request.getBandId(), art);
+            }
+        } finally {
+            socket.close();
+        }
+    }
+}
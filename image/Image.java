@@ -14,10 +14,15 @@ import java.util.ArrayList;
  * @author Dan Nirel
  */
 public class Image {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
 
     private final Color[][] pixelArray;
     private final int width;
     private final int height;
+    private volatile Image paddedImage;
+    private volatile IntegralImage integralImage;
+    private volatile long[] rowHashes;
 
     /**
      * Constructor to create an object of Image class from a file.
@@ -26,7 +31,15 @@ public class Image {
      * @throws IOException if the file is not found or cannot be read
      */
     public Image(String filename) throws IOException {
-        BufferedImage im = ImageIO.read(new File(filename));
+        this(ImageIO.read(new File(filename)));
+    }
+
+    /**
+     * Constructor to create an object of Image class from a decoded image.
+     *
+     * @param im BufferedImage to copy the pixels of
+     */
+    public Image(BufferedImage im) {
         width = im.getWidth();
         height = im.getHeight();
 
@@ -132,6 +145,52 @@ public class Image {
         return new Image(paddedImage, newWidth, newHeight);
     }
 
+    /**
+     * This method returns the image padded to the next power of 2 dimensions. The padded image is
+     * built on the first call and kept, so it can be built ahead of time on another thread.
+     * @return Image object of the padded image
+     */
+    public Image getPaddedImage() {
+        Image result = paddedImage;
+        if (result == null) {
+            result = padImageToPowerOf2Dimensions();
+            paddedImage = result;
+        }
+        return result;
+    }
+
+    /**
+     * This method returns the integral image of the image, for averaging rectangles of any size in
+     * constant time. It is built on the first call and kept.
+     * @return IntegralImage of the image
+     */
+    public IntegralImage getIntegralImage() {
+        IntegralImage result = integralImage;
+        if (result == null) {
+            result = new IntegralImage(this);
+            integralImage = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the width the image would have after padding it to power of 2 dimensions, without
+     * building the padded image.
+     * @return int of the padded width
+     */
+    public int getPaddedWidth() {
+        return calculateNextPowerOf2(width);
+    }
+
+    /**
+     * Returns the height the image would have after padding it to power of 2 dimensions, without
+     * building the padded image.
+     * @return int of the padded height
+     */
+    public int getPaddedHeight() {
+        return calculateNextPowerOf2(height);
+    }
+
     /**
      * This method checks if the given dimension is a power of 2.
      * @param dimension int of the dimension
@@ -147,7 +206,7 @@ public class Image {
      * @param dimension int of the dimension
      * @return int of the next power of 2
      */
-    private static int calculateNextPowerOf2(int dimension) {
+    public static int calculateNextPowerOf2(int dimension) {
         if (isPowerOf2(dimension)) {
             return dimension; // No padding needed
         }
@@ -198,4 +257,138 @@ public class Image {
         }
         return (totalBrightness / pixelCount) / 255.0;
     }
+
+    /**
+     * This method calculates the average brightness of a square of whole pixels of the image, without
+     * copying it to a sub-image. The pixels are summed in the same order as in
+     * calculateAverageBrightnessOfImage of the square as a sub-image, so the results are equal.
+     * @param left int of the left column of the square
+     * @param top  int of the top row of the square
+     * @param size int of the side of the square
+     * @return double of the average brightness
+     */
+    public double calculateAverageBrightnessOfSquare(int left, int top, int size) {
+        double totalBrightness = 0;
+        for (int y = top; y < top + size; y++) {
+            for (int x = left; x < left + size; x++) {
+                Color colorPixel = pixelArray[y][x];
+                double greyPixel = colorPixel.getRed() * 0.2126 + colorPixel.getGreen() * 0.7152 +
+                        colorPixel.getBlue() * 0.0722;
+                totalBrightness += greyPixel;
+            }
+        }
+        return (totalBrightness / (size * size)) / 255.0;
+    }
+
+    /**
+     * This method calculates the average brightness of a rectangular region of the image. The edges of
+     * the region may fall inside pixels, in which case each pixel is weighted by the part of it that
+     * lies inside the region.
+     * @param left   double of the left edge, in pixels
+     * @param top    double of the top edge, in pixels
+     * @param right  double of the right edge, in pixels
+     * @param bottom double of the bottom edge, in pixels
+     * @return double of the average brightness
+     */
+    public double calculateAverageBrightnessOfRegion(double left, double top, double right,
+                                                     double bottom) {
+        double totalBrightness = 0;
+        double totalWeight = 0;
+        int firstRow = (int) Math.floor(top);
+        int lastRow = Math.min(height, (int) Math.ceil(bottom));
+        int firstCol = (int) Math.floor(left);
+        int lastCol = Math.min(width, (int) Math.ceil(right));
+        for (int y = firstRow; y < lastRow; y++) {
+            double rowWeight = Math.min(bottom, y + 1) - Math.max(top, y);
+            double rowBrightness = 0;
+            double rowCoverage = 0;
+            for (int x = firstCol; x < lastCol; x++) {
+                double colWeight = Math.min(right, x + 1) - Math.max(left, x);
+                Color colorPixel = pixelArray[y][x];
+                double greyPixel = colorPixel.getRed() * 0.2126 + colorPixel.getGreen() * 0.7152 +
+                        colorPixel.getBlue() * 0.0722;
+                rowBrightness += greyPixel * colWeight;
+                rowCoverage += colWeight;
+            }
+            totalBrightness += rowBrightness * rowWeight;
+            totalWeight += rowCoverage * rowWeight;
+        }
+        return (totalBrightness / totalWeight) / 255.0;
+    }
+
+    /**
+     * This method returns a 64 bit FNV-1a hash of the colors of every row of the image. The hashes are
+     * computed on the first call and kept, so comparing two images by rows costs a pass over each image
+     * once, however many regions are compared.
+     * @return long[] of the hash of every row
+     */
+    public long[] getRowHashes() {
+        long[] result = rowHashes;
+        if (result == null) {
+            result = new long[height];
+            for (int y = 0; y < height; y++) {
+                long hash = FNV_OFFSET_BASIS;
+                for (Color pixel : pixelArray[y]) {
+                    hash = (hash ^ pixel.getRGB()) * FNV_PRIME;
+                }
+                result[y] = hash;
+            }
+            rowHashes = result;
+        }
+        return result;
+    }
+
+    /**
+     * This method checks if the rows a horizontal band of the image spans are unchanged in another image
+     * of the same size, by comparing the hashes of the rows. The band covers every row that
+     * calculateAverageBrightnessOfRegion would weigh for a region between its edges, so every region
+     * inside an unchanged band has an unchanged brightness, barring a collision of the 64 bit hashes.
+     * @param other  Image of the same size to compare with
+     * @param top    double of the top edge, in pixels
+     * @param bottom double of the bottom edge, in pixels
+     * @return boolean true if every row of the band has the same hash in both images
+     */
+    public boolean rowsEqual(Image other, double top, double bottom) {
+        long[] hashes = getRowHashes();
+        long[] otherHashes = other.getRowHashes();
+        int lastRow = Math.min(height, (int) Math.ceil(bottom));
+        for (int y = (int) Math.floor(top); y < lastRow; y++) {
+            if (hashes[y] != otherHashes[y]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * This method estimates the average brightness of a rectangular region of the image from a grid of
+     * samples, so its cost does not depend on the size of the region. Samples outside the image count
+     * as white, like the padding of padImageToPowerOf2Dimensions.
+     * @param left           double of the left edge, in pixels
+     * @param top            double of the top edge, in pixels
+     * @param right          double of the right edge, in pixels
+     * @param bottom         double of the bottom edge, in pixels
+     * @param samplesPerSide int of the number of samples along each side of the region
+     * @return double of the estimated average brightness
+     */
+    public double estimateAverageBrightnessOfRegion(double left, double top, double right,
+                                                    double bottom, int samplesPerSide) {
+        double totalBrightness = 0;
+        double sampleWidth = (right - left) / samplesPerSide;
+        double sampleHeight = (bottom - top) / samplesPerSide;
+        for (int i = 0; i < samplesPerSide; i++) {
+            int y = (int) Math.floor(top + (i + 0.5) * sampleHeight);
+            for (int j = 0; j < samplesPerSide; j++) {
+                int x = (int) Math.floor(left + (j + 0.5) * sampleWidth);
+                if (y < 0 || y >= height || x < 0 || x >= width) {
+                    totalBrightness += 255.0;
+                    continue;
+                }
+                Color colorPixel = pixelArray[y][x];
+                totalBrightness += colorPixel.getRed() * 0.2126 + colorPixel.getGreen() * 0.7152 +
+                        colorPixel.getBlue() * 0.0722;
+            }
+        }
+        return (totalBrightness / (samplesPerSide * samplesPerSide)) / 255.0;
+    }
 }
@@ -0,0 +1,110 @@
+package image;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * ImageBandReader reads the dimensions of an image file from its header without decoding any pixels,
+ * and decodes its pixels either a band of full-width rows at a time or in a single subsampled pass.
+ */
+public class ImageBandReader implements Closeable {
+    private final ImageInputStream input;
+    private final ImageReader reader;
+    private final int width;
+    private final int height;
+
+    /**
+     * Constructor to create an object of ImageBandReader class.
+     *
+     * @param filename String of the file name
+     * @throws IOException if the file is not found or is not a readable image
+     */
+    public ImageBandReader(String filename) throws IOException {
+        File file = new File(filename);
+        if (!file.isFile()) {
+            throw new IOException("Can't read input file!");
+        }
+        input = ImageIO.createImageInputStream(file);
+        if (input == null) {
+            throw new IOException("Can't create an ImageInputStream!");
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            input.close();
+            throw new IOException("No reader for the image format!");
+        }
+        reader = readers.next();
+        reader.setInput(input, false, true);
+        try {
+            width = reader.getWidth(0);
+            height = reader.getHeight(0);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the width of the image.
+     * @return int of the width
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the image.
+     * @return int of the height
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * This method decodes a band of full-width rows of the image, through the source region of the
+     * reader, so only the pixels of the band are kept. Decoders of formats like JPEG and PNG can't start
+     * in the middle of an image, and decode the rows above the band again for every band.
+     * @param top        int of the first row of the band
+     * @param bandHeight int of the number of rows in the band
+     * @return Image object holding only the rows of the band
+     * @throws IOException if the image can't be decoded
+     */
+    public Image readBand(int top, int bandHeight) throws IOException {
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceRegion(new Rectangle(0, top, width, bandHeight));
+        return new Image(reader.read(0, param));
+    }
+
+    /**
+     * This method decodes the whole image in a single pass, keeping every period-th pixel of every
+     * period-th row. Decoders of formats like JPEG and PNG can't start in the middle of an image, so one
+     * pass over the file is much faster than reading it band by band, and the subsampling bounds the
+     * memory of the decoded pixels.
+     * @param period int of the subsampling period, 1 to keep every pixel
+     * @return BufferedImage of the kept pixels, the dimensions divided by the period and rounded up
+     * @throws IOException if the image can't be decoded
+     */
+    public BufferedImage readSubsampled(int period) throws IOException {
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceSubsampling(period, period, 0, 0);
+        return reader.read(0, param);
+    }
+
+    /**
+     * Releases the reader and closes the file.
+     * @throws IOException if the file can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        reader.dispose();
+        input.close();
+    }
+}
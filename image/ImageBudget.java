@@ -0,0 +1,170 @@
+package image;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * ImageBudget limits the memory a single loaded image may take. The size of an image is checked against
+ * the budget from the file header, before any pixel is decoded, and an image that doesn't fit is
+ * downscaled by a whole factor. It is decoded in a single pass, subsampled by the smallest divisor of the
+ * factor whose raster fits the bytes of the budget, and the rest of the factor is taken with a box
+ * filter, so the full size image is never held in memory as Color objects.
+ * The memory of an image is estimated as a Color object per pixel plus a reference per pixel of its
+ * padded version, which shares the Color objects of the image.
+ */
+public final class ImageBudget {
+    /**
+     * The estimated bytes of a pixel of an image, a Color object and the reference to it.
+     */
+    public static final long BYTES_PER_PIXEL = 40;
+    /**
+     * The estimated bytes of a pixel of a padded image, which only holds a reference.
+     */
+    public static final long BYTES_PER_PADDED_PIXEL = 8;
+    /**
+     * The estimated bytes of a pixel of a decoded raster, before it is converted to an image.
+     */
+    public static final long BYTES_PER_RASTER_PIXEL = 4;
+
+    private final long maxPixels;
+    private final long maxBytes;
+
+    /**
+     * Constructor to create an object of ImageBudget class.
+     *
+     * @param maxPixels long of the maximal number of pixels of an image
+     * @param maxBytes  long of the maximal estimated bytes of an image and its padded version
+     */
+    public ImageBudget(long maxPixels, long maxBytes) {
+        if (maxPixels < 1 || maxBytes < BYTES_PER_PIXEL + BYTES_PER_PADDED_PIXEL) {
+            throw new IllegalArgumentException("Budget is too small for a single pixel.");
+        }
+        this.maxPixels = maxPixels;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * This method returns the smallest factor an image has to be downscaled by to fit the budget.
+     *
+     * @param width  int of the width of the image
+     * @param height int of the height of the image
+     * @return int of the scale factor, 1 if the image fits as it is
+     */
+    public int getScaleFactor(int width, int height) {
+        int factor = 1;
+        while (!fits(scaleDimension(width, factor), scaleDimension(height, factor))) {
+            factor++;
+        }
+        return factor;
+    }
+
+    /**
+     * This method checks if an image of the given size fits the budget.
+     *
+     * @param width  int of the width of the image
+     * @param height int of the height of the image
+     * @return boolean true if the image fits, false otherwise
+     */
+    private boolean fits(int width, int height) {
+        long pixels = (long) width * height;
+        long paddedPixels = (long) Image.calculateNextPowerOf2(width) * Image.calculateNextPowerOf2(height);
+        return pixels <= maxPixels &&
+                pixels * BYTES_PER_PIXEL + paddedPixels * BYTES_PER_PADDED_PIXEL <= maxBytes;
+    }
+
+    /**
+     * This method returns a dimension of an image after downscaling it. Every block of factor by factor
+     * pixels becomes one pixel, and a partial block at the edge becomes a pixel as well.
+     *
+     * @param dimension int of the width or height of the image
+     * @param factor    int of the scale factor
+     * @return int of the downscaled dimension
+     */
+    public static int scaleDimension(int dimension, int factor) {
+        return (dimension + factor - 1) / factor;
+    }
+
+    /**
+     * This method loads an image from a file, downscaled to fit the budget if it doesn't.
+     *
+     * @param filename String of the file name
+     * @return Image object of the loaded image
+     * @throws IOException if the file is not found or cannot be read
+     */
+    public Image load(String filename) throws IOException {
+        try (ImageBandReader reader = new ImageBandReader(filename)) {
+            int factor = getScaleFactor(reader.getWidth(), reader.getHeight());
+            if (factor > 1) {
+                return downscale(reader, factor);
+            }
+        }
+        return new Image(filename);
+    }
+
+    /**
+     * This method returns the smallest subsampling period an image can be decoded with before it is box
+     * filtered, a divisor of the scale factor whose raster fits the bytes of the budget.
+     *
+     * @param width  int of the width of the image
+     * @param height int of the height of the image
+     * @param factor int of the scale factor
+     * @return int of the subsampling period
+     */
+    private int getSubsamplingPeriod(int width, int height, int factor) {
+        for (int period = 1; period < factor; period++) {
+            long pixels = (long) scaleDimension(width, period) * scaleDimension(height, period);
+            if (factor % period == 0 && pixels * BYTES_PER_RASTER_PIXEL <= maxBytes) {
+                return period;
+            }
+        }
+        return factor;
+    }
+
+    /**
+     * This method decodes an image in a single subsampled pass and averages the color of every block of
+     * the rest of the factor by the rest of the factor of the decoded pixels.
+     *
+     * @param reader ImageBandReader of the image
+     * @param factor int of the scale factor
+     * @return Image object of the downscaled image
+     * @throws IOException if the image can't be decoded
+     */
+    private Image downscale(ImageBandReader reader, int factor) throws IOException {
+        int period = getSubsamplingPeriod(reader.getWidth(), reader.getHeight(), factor);
+        BufferedImage sampled = reader.readSubsampled(period);
+        int blockSize = factor / period;
+        int width = sampled.getWidth();
+        int height = sampled.getHeight();
+        int scaledWidth = scaleDimension(width, blockSize);
+        int scaledHeight = scaleDimension(height, blockSize);
+        Color[][] pixelArray = new Color[scaledHeight][scaledWidth];
+        int[] rowPixels = new int[width];
+        long[] red = new long[scaledWidth];
+        long[] green = new long[scaledWidth];
+        long[] blue = new long[scaledWidth];
+        for (int blockTop = 0; blockTop < height; blockTop += blockSize) {
+            int blockHeight = Math.min(blockSize, height - blockTop);
+            Arrays.fill(red, 0);
+            Arrays.fill(green, 0);
+            Arrays.fill(blue, 0);
+            for (int y = blockTop; y < blockTop + blockHeight; y++) {
+                sampled.getRGB(0, y, width, 1, rowPixels, 0, width);
+                for (int x = 0; x < width; x++) {
+                    int rgb = rowPixels[x];
+                    red[x / blockSize] += (rgb >> 16) & 0xff;
+                    green[x / blockSize] += (rgb >> 8) & 0xff;
+                    blue[x / blockSize] += rgb & 0xff;
+                }
+            }
+            Color[] scaledRow = pixelArray[blockTop / blockSize];
+            for (int x = 0; x < scaledWidth; x++) {
+                long count = (long) blockHeight * (Math.min(width, (x + 1) * blockSize) - x * blockSize);
+                scaledRow[x] = new Color((int) (red[x] / count), (int) (green[x] / count),
+                        (int) (blue[x] / count));
+            }
+        }
+        return new Image(pixelArray, scaledWidth, scaledHeight);
+    }
+}
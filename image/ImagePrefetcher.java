@@ -0,0 +1,140 @@
+package image;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ImagePrefetcher decodes images on background threads. It keeps the most recently requested images, up
+ * to a fixed number, so an image that was prefetched or loaded before is ready without decoding it
+ * again. Images are kept by their path together with the size and modification time of their file, so
+ * a file that changed on disk is decoded again. Images that were decoded with an error are not kept.
+ * Every image is loaded within an ImageBudget, so the memory taken by the kept images is bounded as
+ * well.
+ */
+public class ImagePrefetcher implements Closeable {
+    private final int capacity;
+    private final ImageBudget budget;
+    private final ExecutorService executor;
+    private final LinkedHashMap<String, Future<Image>> images;
+
+    /**
+     * Constructor to create an object of ImagePrefetcher class.
+     *
+     * @param capacity int of the number of images to keep
+     * @param threads  int of the number of images decoded at the same time
+     * @param budget   ImageBudget every image is loaded within
+     */
+    public ImagePrefetcher(int capacity, int threads, ImageBudget budget) {
+        this.capacity = capacity;
+        this.budget = budget;
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        });
+        images = new LinkedHashMap<>(capacity, 0.75f, true);
+    }
+
+    /**
+     * This method returns the image of a file, decoding it in the background unless it is already kept.
+     * The returned future fails with the IOException of the decoding if the file can't be read.
+     *
+     * @param filename String of the file name
+     * @return Future of the decoded image
+     */
+    public synchronized Future<Image> load(String filename) {
+        String key = createKey(filename);
+        Future<Image> image = images.get(key);
+        if (image != null && !hasFailed(image)) {
+            return image;
+        }
+        image = executor.submit(() -> budget.load(filename));
+        images.put(key, image);
+        evict();
+        return image;
+    }
+
+    /**
+     * This method creates the key an image is kept by, from its path and the size and modification time
+     * of its file.
+     *
+     * @param filename String of the file name
+     * @return String of the key, the file name alone if the file can't be read
+     */
+    private static String createKey(String filename) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(Paths.get(filename),
+                    BasicFileAttributes.class);
+            return filename + '|' + attributes.size() + '|' +
+                    attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+        } catch (IOException | InvalidPathException e) {
+            return filename;
+        }
+    }
+
+    /**
+     * This method starts decoding the image of a file, so a later load of it doesn't have to wait.
+     *
+     * @param filename String of the file name
+     */
+    public void prefetch(String filename) {
+        load(filename);
+    }
+
+    /**
+     * This method forgets the least recently requested images until no more than the capacity are kept.
+     * Images that are still decoding finish, so whoever is waiting for them gets them.
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, Future<Image>>> iterator = images.entrySet().iterator();
+        while (images.size() > capacity && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * This method checks if the decoding of an image failed.
+     *
+     * @param image Future of the image
+     * @return boolean true if the decoding is done and failed, false otherwise
+     */
+    private static boolean hasFailed(Future<Image> image) {
+        if (!image.isDone()) {
+            return false;
+        }
+        if (image.isCancelled()) {
+            return true;
+        }
+        try {
+            image.get();
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            return true;
+        }
+    }
+
+    /**
+     * This method stops the decoding threads. Images that are still decoding are dropped.
+     */
+    @Override
+    public synchronized void close() {
+        executor.shutdownNow();
+        images.clear();
+    }
+}
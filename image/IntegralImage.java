@@ -0,0 +1,88 @@
+package image;
+
+import java.awt.*;
+
+/**
+ * IntegralImage holds the summed grey values of an image: for every pixel corner, the sum of the grey
+ * values of all the pixels above and to the left of it. The average brightness of any rectangle then
+ * takes four lookups, whatever its size, so a view of a huge image at any zoom costs the same per cell.
+ * Pixels are constant squares, so the sum up to a point inside a pixel is the bilinear interpolation of
+ * the sums at its corners, and rectangles with edges inside pixels are weighted exactly.
+ */
+public class IntegralImage {
+    private static final double WHITE = 255.0;
+
+    private final int width;
+    private final int height;
+    private final double[] sums;
+
+    /**
+     * Constructor to create an object of IntegralImage class.
+     * @param image Image to sum
+     */
+    public IntegralImage(Image image) {
+        width = image.getWidth();
+        height = image.getHeight();
+        sums = new double[(width + 1) * (height + 1)];
+        for (int y = 0; y < height; y++) {
+            double rowSum = 0;
+            int above = y * (width + 1);
+            int below = above + width + 1;
+            for (int x = 0; x < width; x++) {
+                Color colorPixel = image.getPixel(y, x);
+                rowSum += colorPixel.getRed() * 0.2126 + colorPixel.getGreen() * 0.7152 +
+                        colorPixel.getBlue() * 0.0722;
+                sums[below + x + 1] = sums[above + x + 1] + rowSum;
+            }
+        }
+    }
+
+    /**
+     * This method calculates the average brightness of a rectangle of the image. The rectangle may
+     * reach outside the image, where it counts as white, like the padding of padded images.
+     * @param left   double of the left edge, in pixels
+     * @param top    double of the top edge, in pixels
+     * @param right  double of the right edge, in pixels
+     * @param bottom double of the bottom edge, in pixels
+     * @return double of the average brightness
+     */
+    public double calculateAverageBrightnessOfRegion(double left, double top, double right, double bottom) {
+        double area = (right - left) * (bottom - top);
+        double insideLeft = clamp(left, width);
+        double insideTop = clamp(top, height);
+        double insideRight = clamp(right, width);
+        double insideBottom = clamp(bottom, height);
+        double insideArea = (insideRight - insideLeft) * (insideBottom - insideTop);
+        double insideSum = sumTo(insideRight, insideBottom) - sumTo(insideLeft, insideBottom) -
+                sumTo(insideRight, insideTop) + sumTo(insideLeft, insideTop);
+        return (insideSum + (area - insideArea) * WHITE) / area / WHITE;
+    }
+
+    /**
+     * This method limits a coordinate to the image.
+     * @param value double of the coordinate
+     * @param max int of the size of the image along the coordinate
+     * @return double of the coordinate inside [0, max]
+     */
+    private static double clamp(double value, int max) {
+        return Math.max(0, Math.min(max, value));
+    }
+
+    /**
+     * This method returns the sum of the grey values above and to the left of a point inside the image.
+     * @param x double of the x coordinate, in pixels
+     * @param y double of the y coordinate, in pixels
+     * @return double of the sum
+     */
+    private double sumTo(double x, double y) {
+        int column = Math.min((int) x, width - 1);
+        int row = Math.min((int) y, height - 1);
+        double fractionX = x - column;
+        double fractionY = y - row;
+        int topLeft = row * (width + 1) + column;
+        int bottomLeft = topLeft + width + 1;
+        double topSum = sums[topLeft] + (sums[topLeft + 1] - sums[topLeft]) * fractionX;
+        double bottomSum = sums[bottomLeft] + (sums[bottomLeft + 1] - sums[bottomLeft]) * fractionX;
+        return topSum + (bottomSum - topSum) * fractionY;
+    }
+}
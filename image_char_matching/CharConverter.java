@@ -2,6 +2,7 @@ package image_char_matching;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
 
 
 /**
@@ -16,13 +17,26 @@ import java.awt.image.BufferedImage;
 public class CharConverter {
     private static final double X_OFFSET_FACTOR = 0.2;
     private static final double Y_OFFSET_FACTOR = 0.75;
-    private static final String FONT_NAME = "Courier New";
+
+    /**
+     * The font characters are rendered in by convertToBoolArray.
+     */
+    public static final String FONT_NAME = "Courier New";
 
     /**
      * The default pixel resolution of the image.
      */
     public static final int DEFAULT_PIXEL_RESOLUTION = 16;
 
+    /**
+     * Returns the family FONT_NAME resolves to on this machine. AWT falls back to the Dialog family when
+     * the font is not installed.
+     * @return String of the font family
+     */
+    public static String getFontFamily() {
+        return new Font(FONT_NAME, Font.PLAIN, DEFAULT_PIXEL_RESOLUTION).getFamily();
+    }
+
 
     /**
      * Renders a given character, according to how it looks in the font specified in the
@@ -40,6 +54,29 @@ public class CharConverter {
         return matrix;
     }
 
+    /**
+     * Renders a character in a font with antialiasing to a square of coverage values, row by row, 0 where
+     * the glyph leaves a pixel empty and 255 where it covers the pixel whole. The glyph is placed like in
+     * convertToBoolArray, so rendering at a higher resolution samples the same shape more finely.
+     * @param c char of the character
+     * @param fontName String of the font name
+     * @param pixelsPerRow int of the number of pixels per row
+     * @return byte[] of the coverage of every pixel, read as unsigned
+     */
+    public static byte[] convertToCoverage(char c, String fontName, int pixelsPerRow) {
+        BufferedImage img = new BufferedImage(pixelsPerRow, pixelsPerRow, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = img.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+        g.setColor(Color.WHITE);
+        g.setFont(new Font(fontName, Font.PLAIN, pixelsPerRow));
+        int xOffset = (int)Math.round(pixelsPerRow *X_OFFSET_FACTOR);
+        int yOffset = (int)Math.round(pixelsPerRow *Y_OFFSET_FACTOR);
+        g.drawString(Character.toString(c), xOffset, yOffset);
+        g.dispose();
+        return ((DataBufferByte) img.getRaster().getDataBuffer()).getData();
+    }
+
     /**
      * Builds a BufferedImage of a given character, according to how it looks in the font specified in the
      * constructor, to a square black&white image (2D array of booleans), whose dimension in pixels is
@@ -0,0 +1,365 @@
+package image_char_matching;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+
+/**
+ * CharsetSnapshot is an immutable, compiled version of a charset. It holds the raw brightness of every
+ * character together with a sorted array of normalized brightness thresholds, so any number of threads
+ * can match brightness values against it without locking. Edits never change a snapshot, they create a
+ * new one with a higher version number.
+ */
+public final class CharsetSnapshot {
+    /**
+     * The empty charset, version 0.
+     */
+    static final CharsetSnapshot EMPTY = new CharsetSnapshot(0, new TreeMap<>());
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    /**
+     * Grids with at least this many brightnesses are matched by several threads, a row at a time.
+     */
+    private static final int PARALLEL_MATCH_THRESHOLD = 1 << 16;
+
+    private final long version;
+    private final TreeMap<Character, Double> rawBrightnessMap;
+    private final double[] normalizedBrightnesses;
+    private final char[] matchingChars;
+    private final long fingerprint;
+
+    /**
+     * Constructor to create an object of CharsetSnapshot class. The given map is owned by the snapshot
+     * and must not be changed afterwards.
+     * @param version long of the version of this snapshot
+     * @param rawBrightnessMap TreeMap from each character to its raw brightness
+     */
+    private CharsetSnapshot(long version, TreeMap<Character, Double> rawBrightnessMap) {
+        this.version = version;
+        this.rawBrightnessMap = rawBrightnessMap;
+        int size = rawBrightnessMap.size();
+        double minBrightness = Double.MAX_VALUE;
+        double maxBrightness = -Double.MAX_VALUE;
+        for (double brightness : rawBrightnessMap.values()) {
+            minBrightness = Math.min(minBrightness, brightness);
+            maxBrightness = Math.max(maxBrightness, brightness);
+        }
+
+        // Characters are visited in ascending order, so the first one to claim a threshold is the
+        // smallest character with that normalized brightness.
+        char[] chars = new char[size];
+        double[] normalized = new double[size];
+        int index = 0;
+        for (Map.Entry<Character, Double> entry : rawBrightnessMap.entrySet()) {
+            chars[index] = entry.getKey();
+            normalized[index] = normalizeBrightness(entry.getValue(), minBrightness, maxBrightness);
+            index++;
+        }
+        fingerprint = calculateFingerprint(rawBrightnessMap);
+        double[] sorted = normalized.clone();
+        Arrays.sort(sorted);
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            if (distinct == 0 || Double.compare(sorted[distinct - 1], sorted[i]) != 0) {
+                sorted[distinct++] = sorted[i];
+            }
+        }
+        normalizedBrightnesses = Arrays.copyOf(sorted, distinct);
+        matchingChars = new char[distinct];
+        boolean[] claimed = new boolean[distinct];
+        for (int i = 0; i < size; i++) {
+            int threshold = Arrays.binarySearch(normalizedBrightnesses, normalized[i]);
+            if (!claimed[threshold]) {
+                claimed[threshold] = true;
+                matchingChars[threshold] = chars[i];
+            }
+        }
+    }
+
+    /**
+     * This method creates a snapshot of characters whose raw brightnesses are already known, such as a
+     * charset received from another process. The snapshot matches exactly like the one the brightnesses
+     * were taken from, whatever fonts are available here.
+     * @param chars char[] of the characters
+     * @param brightnesses double[] of the raw brightness of each character
+     * @return CharsetSnapshot of the characters
+     */
+    public static CharsetSnapshot of(char[] chars, double[] brightnesses) {
+        return EMPTY.withChars(chars, brightnesses);
+    }
+
+    /**
+     * This method calculates a 64 bit FNV-1a hash of the characters and their raw brightnesses.
+     * @param rawBrightnessMap TreeMap from each character to its raw brightness
+     * @return long of the hash
+     */
+    private static long calculateFingerprint(TreeMap<Character, Double> rawBrightnessMap) {
+        long hash = FNV_OFFSET_BASIS;
+        for (Map.Entry<Character, Double> entry : rawBrightnessMap.entrySet()) {
+            hash = (hash ^ entry.getKey()) * FNV_PRIME;
+            hash = (hash ^ Double.doubleToLongBits(entry.getValue())) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * This method normalizes the brightness value.
+     * @param brightness double of the brightness value
+     * @param minBrightness double of the minimal brightness in the charset
+     * @param maxBrightness double of the maximal brightness in the charset
+     * @return double of the normalized brightness value
+     */
+    private static double normalizeBrightness(double brightness, double minBrightness,
+                                              double maxBrightness) {
+        if (maxBrightness == minBrightness) return 1.0;
+        return (brightness - minBrightness) / (maxBrightness - minBrightness);
+    }
+
+    /**
+     * This method returns a new snapshot containing the given characters as well.
+     * @param chars char[] of the characters to add
+     * @param brightnesses double[] of the raw brightness of each character to add
+     * @return CharsetSnapshot with the characters added, or this snapshot if nothing changed
+     */
+    CharsetSnapshot withChars(char[] chars, double[] brightnesses) {
+        TreeMap<Character, Double> newMap = null;
+        for (int i = 0; i < chars.length; i++) {
+            if (rawBrightnessMap.containsKey(chars[i])) continue;
+            if (newMap == null) newMap = new TreeMap<>(rawBrightnessMap);
+            newMap.put(chars[i], brightnesses[i]);
+        }
+        return newMap == null ? this : new CharsetSnapshot(version + 1, newMap);
+    }
+
+    /**
+     * This method returns a new snapshot without the given characters.
+     * @param chars char[] of the characters to remove
+     * @return CharsetSnapshot with the characters removed, or this snapshot if nothing changed
+     */
+    CharsetSnapshot withoutChars(char[] chars) {
+        TreeMap<Character, Double> newMap = null;
+        for (char c : chars) {
+            if (!rawBrightnessMap.containsKey(c)) continue;
+            if (newMap == null) newMap = new TreeMap<>(rawBrightnessMap);
+            newMap.remove(c);
+        }
+        return newMap == null ? this : new CharsetSnapshot(version + 1, newMap);
+    }
+
+    /**
+     * This method returns a new snapshot of the same characters with other brightnesses, such as the
+     * brightnesses of the characters in another font.
+     * @param brightnesses double[] of the raw brightness of each character, in ascending character order
+     * @return CharsetSnapshot with the brightnesses replaced
+     */
+    CharsetSnapshot withBrightnesses(double[] brightnesses) {
+        TreeMap<Character, Double> newMap = new TreeMap<>();
+        int index = 0;
+        for (char c : rawBrightnessMap.keySet()) {
+            newMap.put(c, brightnesses[index++]);
+        }
+        return new CharsetSnapshot(version + 1, newMap);
+    }
+
+    /**
+     * This method returns the character that best matches the given brightness.
+     * @param brightness double of the brightness value
+     * @return char of the character that best matches the brightness
+     * @throws IllegalStateException if the charset is empty
+     */
+    public char getCharByImageBrightness(double brightness) {
+        return matchingChars[getMatchIndex(brightness)];
+    }
+
+    /**
+     * This method returns the index of the threshold that best matches the given brightness. Together
+     * with getCharAt and getBrightnessAt it lets a caller know both the matched character and its
+     * normalized brightness from a single search.
+     * @param brightness double of the brightness value
+     * @return int of the index of the best matching threshold
+     * @throws IllegalStateException if the charset is empty
+     */
+    public int getMatchIndex(double brightness) {
+        if (matchingChars.length == 0) {
+            throw new IllegalStateException("Charset is empty.");
+        }
+        int index = Arrays.binarySearch(normalizedBrightnesses, brightness);
+        if (index >= 0) {
+            return index;
+        }
+        int higher = -index - 1;
+        int lower = higher - 1;
+        if (lower < 0) {
+            return higher;
+        }
+        if (higher == matchingChars.length) {
+            return lower;
+        }
+        double lowerDiff = Math.abs(brightness - normalizedBrightnesses[lower]);
+        double higherDiff = Math.abs(brightness - normalizedBrightnesses[higher]);
+        return lowerDiff < higherDiff ? lower : higher;
+    }
+
+    /**
+     * This method matches a whole grid of brightnesses in one call, giving the same characters as
+     * getCharByImageBrightness would for each of them. Neighbouring sub-images tend to have similar
+     * brightnesses, so every row sweeps the sorted thresholds from the previous match instead of
+     * searching all of them for every sub-image, and large grids are matched by several threads.
+     * @param brightnesses double[] of the brightnesses, row by row
+     * @param chars char[][] of the size of the grid, to write the matched characters to
+     * @throws IllegalStateException if the charset is empty
+     */
+    public void matchAll(double[] brightnesses, char[][] chars) {
+        if (matchingChars.length == 0) {
+            throw new IllegalStateException("Charset is empty.");
+        }
+        if (chars.length == 0) {
+            return;
+        }
+        int columns = chars[0].length;
+        if ((long) chars.length * columns < PARALLEL_MATCH_THRESHOLD) {
+            for (int i = 0; i < chars.length; i++) {
+                matchRow(brightnesses, i * columns, chars[i]);
+            }
+        } else {
+            IntStream.range(0, chars.length).parallel()
+                    .forEach(i -> matchRow(brightnesses, i * columns, chars[i]));
+        }
+    }
+
+    /**
+     * This method matches a row of brightnesses, starting the search of every brightness from the
+     * thresholds around the last match.
+     * @param brightnesses double[] of the brightnesses
+     * @param offset int of the index of the first brightness of the row
+     * @param row char[] to write the matched characters to
+     */
+    private void matchRow(double[] brightnesses, int offset, char[] row) {
+        int thresholds = normalizedBrightnesses.length;
+        // The number of thresholds below the brightness, which is where a binary search would insert it.
+        int higher = 0;
+        for (int j = 0; j < row.length; j++) {
+            double brightness = brightnesses[offset + j];
+            if (Double.isNaN(brightness)) {
+                row[j] = getCharByImageBrightness(brightness);
+                continue;
+            }
+            if (higher > 0 && normalizedBrightnesses[higher - 1] >= brightness ||
+                    higher < thresholds && normalizedBrightnesses[higher] < brightness) {
+                higher = findHigher(brightness, higher);
+            }
+            int matchIndex;
+            if (higher < thresholds && normalizedBrightnesses[higher] == brightness) {
+                matchIndex = higher;
+            } else if (higher == 0) {
+                matchIndex = 0;
+            } else if (higher == thresholds) {
+                matchIndex = thresholds - 1;
+            } else {
+                double lowerDiff = Math.abs(brightness - normalizedBrightnesses[higher - 1]);
+                double higherDiff = Math.abs(brightness - normalizedBrightnesses[higher]);
+                matchIndex = lowerDiff < higherDiff ? higher - 1 : higher;
+            }
+            row[j] = matchingChars[matchIndex];
+        }
+    }
+
+    /**
+     * This method finds the number of thresholds below a brightness that isn't between the thresholds
+     * around the last match. The thresholds next to the last match are tried first, as a brightness
+     * usually moves by little between neighbouring sub-images, and the rest are binary searched.
+     * @param brightness double of the brightness value
+     * @param lastHigher int of the number of thresholds below the last matched brightness
+     * @return int of the number of thresholds below the brightness
+     */
+    private int findHigher(double brightness, int lastHigher) {
+        int thresholds = normalizedBrightnesses.length;
+        if (lastHigher > 0 && normalizedBrightnesses[lastHigher - 1] >= brightness) {
+            if (lastHigher == 1 || normalizedBrightnesses[lastHigher - 2] < brightness) {
+                return lastHigher - 1;
+            }
+        } else if (lastHigher + 1 == thresholds || normalizedBrightnesses[lastHigher + 1] >= brightness) {
+            return lastHigher + 1;
+        }
+        int index = Arrays.binarySearch(normalizedBrightnesses, brightness);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * This method returns the character matched by a threshold.
+     * @param matchIndex int of the index returned by getMatchIndex
+     * @return char of the character
+     */
+    public char getCharAt(int matchIndex) {
+        return matchingChars[matchIndex];
+    }
+
+    /**
+     * This method returns the normalized brightness of a threshold.
+     * @param matchIndex int of the index returned by getMatchIndex
+     * @return double of the normalized brightness
+     */
+    public double getBrightnessAt(int matchIndex) {
+        return normalizedBrightnesses[matchIndex];
+    }
+
+    /**
+     * This method returns the version of this snapshot. Every edit of a charset increases it.
+     * @return long of the version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * This method returns a fingerprint of the characters and their brightnesses. Unlike the version, it
+     * is the same for equal charsets, even across runs of the program, so it can identify a charset in
+     * persistent data.
+     * @return long of the fingerprint
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * This method checks if the snapshot contains a character.
+     * @param c the char to check
+     * @return boolean true if the char is in the snapshot, false otherwise
+     */
+    public boolean contains(char c) {
+        return rawBrightnessMap.containsKey(c);
+    }
+
+    /**
+     * This method returns the raw brightness of a character, before normalizing it with the rest of the
+     * charset.
+     * @param c the char to look up
+     * @return double of the raw brightness
+     * @throws IllegalArgumentException if the char is not in the snapshot
+     */
+    public double getRawBrightness(char c) {
+        Double brightness = rawBrightnessMap.get(c);
+        if (brightness == null) {
+            throw new IllegalArgumentException("Character is not in the charset.");
+        }
+        return brightness;
+    }
+
+    /**
+     * This method checks if the snapshot is empty.
+     * @return boolean true if there are no characters in the snapshot, false otherwise
+     */
+    public boolean isEmpty() {
+        return rawBrightnessMap.isEmpty();
+    }
+
+    /**
+     * This method returns the characters of the snapshot.
+     * @return TreeSet of Character, a copy of the characters in the snapshot
+     */
+    public TreeSet<Character> getChars() {
+        return new TreeSet<>(rawBrightnessMap.keySet());
+    }
+}
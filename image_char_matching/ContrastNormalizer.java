@@ -0,0 +1,148 @@
+package image_char_matching;
+
+/**
+ * ContrastNormalizer spreads the brightnesses of an image's sub-images over the whole range from 0 to
+ * 1, so that low-contrast images use more of the charset. It builds a fixed-size histogram of the
+ * brightnesses in a single pass and turns it into a lookup table, either by histogram equalization or
+ * by stretching a percentile range to the full range. Applying the table is independent of the charset,
+ * so it only has to be built again when the brightnesses change.
+ */
+public final class ContrastNormalizer {
+    /**
+     * The ways brightness can be normalized.
+     */
+    public enum Mode {
+        /**
+         * Brightness is left unchanged.
+         */
+        NONE,
+        /**
+         * Every brightness is mapped to the fraction of sub-images darker than it.
+         */
+        EQUALIZE,
+        /**
+         * The range between the low and high percentiles is stretched to the full range.
+         */
+        STRETCH
+    }
+
+    private static final int BUCKETS = 256;
+    private static final double STRETCH_PERCENTILE = 0.01;
+
+    private final double[] knots;
+
+    /**
+     * Constructor to create an object of ContrastNormalizer class.
+     * @param knots double[] of the normalized value at every bucket edge, or null for no change
+     */
+    private ContrastNormalizer(double[] knots) {
+        this.knots = knots;
+    }
+
+    /**
+     * This method builds the lookup table for a set of brightnesses.
+     * @param brightnesses double[] of the brightnesses, each between 0 and 1
+     * @param mode Mode of the normalization
+     * @return ContrastNormalizer for the brightnesses
+     */
+    public static ContrastNormalizer fromBrightnesses(double[] brightnesses, Mode mode) {
+        if (mode == Mode.NONE || brightnesses.length == 0) {
+            return new ContrastNormalizer(null);
+        }
+        int[] histogram = new int[BUCKETS];
+        for (double brightness : brightnesses) {
+            histogram[bucketOf(brightness)]++;
+        }
+        return new ContrastNormalizer(mode == Mode.EQUALIZE ?
+                equalizationKnots(histogram, brightnesses.length) :
+                stretchKnots(histogram, brightnesses.length));
+    }
+
+    /**
+     * This method returns the bucket of a brightness.
+     * @param brightness double of the brightness
+     * @return int of the bucket
+     */
+    private static int bucketOf(double brightness) {
+        return Math.max(0, Math.min(BUCKETS - 1, (int) (brightness * BUCKETS)));
+    }
+
+    /**
+     * This method builds the table of histogram equalization: every bucket edge is mapped to the
+     * fraction of brightnesses below it.
+     * @param histogram int[] of the number of brightnesses in every bucket
+     * @param total int of the number of brightnesses
+     * @return double[] of the normalized value at every bucket edge
+     */
+    private static double[] equalizationKnots(int[] histogram, int total) {
+        double[] knots = new double[BUCKETS + 1];
+        int below = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            knots[bucket] = (double) below / total;
+            below += histogram[bucket];
+        }
+        knots[BUCKETS] = 1.0;
+        return knots;
+    }
+
+    /**
+     * This method builds the table of a percentile stretch: the buckets holding the low and high
+     * percentiles are mapped to 0 and 1, and everything between them linearly.
+     * @param histogram int[] of the number of brightnesses in every bucket
+     * @param total int of the number of brightnesses
+     * @return double[] of the normalized value at every bucket edge, or null if there is no range
+     */
+    private static double[] stretchKnots(int[] histogram, int total) {
+        double lowCount = total * STRETCH_PERCENTILE;
+        double highCount = total * (1 - STRETCH_PERCENTILE);
+        int lowBucket = -1;
+        int highBucket = BUCKETS - 1;
+        int below = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            below += histogram[bucket];
+            if (lowBucket < 0 && below > lowCount) {
+                lowBucket = bucket;
+            }
+            if (below >= highCount) {
+                highBucket = bucket;
+                break;
+            }
+        }
+        double low = (double) Math.max(0, lowBucket) / BUCKETS;
+        double high = (double) (highBucket + 1) / BUCKETS;
+        if (high <= low) {
+            return null;
+        }
+        double[] knots = new double[BUCKETS + 1];
+        for (int edge = 0; edge <= BUCKETS; edge++) {
+            double value = ((double) edge / BUCKETS - low) / (high - low);
+            knots[edge] = Math.max(0, Math.min(1, value));
+        }
+        return knots;
+    }
+
+    /**
+     * This method normalizes a single brightness.
+     * @param brightness double of the brightness, between 0 and 1
+     * @return double of the normalized brightness
+     */
+    public double apply(double brightness) {
+        if (knots == null) {
+            return brightness;
+        }
+        int bucket = bucketOf(brightness);
+        double fraction = Math.max(0, Math.min(1, brightness * BUCKETS - bucket));
+        return knots[bucket] + fraction * (knots[bucket + 1] - knots[bucket]);
+    }
+
+    /**
+     * This method normalizes an array of brightnesses.
+     * @param brightnesses double[] of the brightnesses
+     * @param normalized double[] to write the normalized brightnesses to, may be the same array
+     */
+    public void apply(double[] brightnesses, double[] normalized) {
+        for (int i = 0; i < brightnesses.length; i++) {
+            normalized[i] = apply(brightnesses[i]);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package image_char_matching;
+
+import java.util.Arrays;
+
+/**
+ * ErrorDiffusionDitherer matches rows of sub-image brightnesses to characters with Floyd-Steinberg
+ * error diffusion. The difference between a sub-image's brightness and the brightness of the character
+ * chosen for it is carried over to the sub-images to its right and below, which avoids banding when the
+ * charset is small.
+ * <p>
+ * Rows must be given in order from top to bottom, but each row may come from a different band of the
+ * image, so the ditherer works with renderers that produce the image in bands or compute brightnesses in
+ * parallel and match the rows afterwards. Only the error of the current and next rows is kept.
+ */
+public class ErrorDiffusionDitherer {
+    private static final double RIGHT_WEIGHT = 7.0 / 16;
+    private static final double BELOW_LEFT_WEIGHT = 3.0 / 16;
+    private static final double BELOW_WEIGHT = 5.0 / 16;
+    private static final double BELOW_RIGHT_WEIGHT = 1.0 / 16;
+
+    private final int columns;
+    private double[] currentRowError;
+    private double[] nextRowError;
+
+    /**
+     * Constructor to create an object of ErrorDiffusionDitherer class.
+     * @param columns int of the number of sub-images in every row
+     */
+    public ErrorDiffusionDitherer(int columns) {
+        this.columns = columns;
+        currentRowError = new double[columns];
+        nextRowError = new double[columns];
+    }
+
+    /**
+     * This method returns the number of sub-images in every row.
+     * @return int of the number of columns
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * This method forgets the carried error, so the next row is matched as the first row of an image.
+     */
+    public void reset() {
+        Arrays.fill(currentRowError, 0);
+        Arrays.fill(nextRowError, 0);
+    }
+
+    /**
+     * This method matches the next row of brightnesses to characters.
+     * @param brightnesses double[] holding the brightnesses of the row
+     * @param offset int of the index of the first brightness of the row
+     * @param charset CharsetSnapshot to match the row with
+     * @param row char[] to write the matched characters to
+     */
+    public void ditherRow(double[] brightnesses, int offset, CharsetSnapshot charset, char[] row) {
+        for (int j = 0; j < columns; j++) {
+            double brightness = brightnesses[offset + j] + currentRowError[j];
+            int matchIndex = charset.getMatchIndex(brightness);
+            row[j] = charset.getCharAt(matchIndex);
+            double error = brightness - charset.getBrightnessAt(matchIndex);
+            if (j + 1 < columns) {
+                currentRowError[j + 1] += error * RIGHT_WEIGHT;
+                nextRowError[j + 1] += error * BELOW_RIGHT_WEIGHT;
+            }
+            if (j > 0) {
+                nextRowError[j - 1] += error * BELOW_LEFT_WEIGHT;
+            }
+            nextRowError[j] += error * BELOW_WEIGHT;
+        }
+        double[] finishedRowError = currentRowError;
+        currentRowError = nextRowError;
+        nextRowError = finishedRowError;
+        Arrays.fill(nextRowError, 0);
+    }
+}
@@ -0,0 +1,119 @@
+package image_char_matching;
+
+/**
+ * A prebuilt table of the brightness of the printable ASCII characters, as rendered by
+ * {@link CharConverter} in its font at its default pixel resolution. Looking a character up here avoids
+ * loading fonts and drawing the glyph, which is a large part of the startup time of short runs.
+ * Characters outside the table are still rendered through CharConverter.
+ * <p>
+ * The table is keyed on the font name and pixel resolution it was generated for, and is only used while
+ * CharConverter renders with the same ones. Checking the font family the name resolves to would load
+ * the fonts the table saves, so it is only checked once a character outside the table has to be
+ * rendered anyway. If the family differs from the one the table was generated in, the table is no
+ * longer used.
+ * The table is generated by running this class on a machine where the font is installed, and has to be
+ * regenerated whenever CharConverter changes how characters are rendered.
+ */
+public class GlyphBrightnessTable {
+    private static final char FIRST_CHAR = ' ';
+    private static final char LAST_CHAR = '~';
+    private static final int CHARS_PER_LINE = 10;
+
+    /**
+     * The name of the font the table was generated for.
+     */
+    public static final String FONT_NAME = "Courier New";
+    /**
+     * The pixel resolution the glyphs of the table were rendered at.
+     */
+    public static final int PIXEL_RESOLUTION = 16;
+    /**
+     * The family FONT_NAME resolved to when the table was generated. The machine the table was
+     * generated on didn't have Courier New installed, so it is the Dialog family AWT falls back to.
+     */
+    public static final String FONT_FAMILY = "Dialog";
+    private static final int PIXELS_PER_GLYPH = PIXEL_RESOLUTION * PIXEL_RESOLUTION;
+
+    private static volatile boolean fontFamilyMismatch = false;
+
+    /**
+     * The number of white pixels of every character from FIRST_CHAR to LAST_CHAR.
+     */
+    private static final short[] WHITE_PIXELS = {
+            256, 246, 248, 212, 220, 218, 223, 252, 238, 238,
+            236, 239, 252, 252, 254, 242, 228, 234, 232, 228,
+            228, 229, 226, 237, 220, 226, 252, 250, 235, 236,
+            235, 238, 198, 229, 213, 232, 220, 223, 233, 223,
+            224, 244, 240, 231, 238, 213, 220, 226, 229, 223,
+            223, 224, 236, 228, 233, 222, 232, 239, 226, 238,
+            242, 238, 246, 248, 252, 226, 227, 239, 227, 232,
+            239, 223, 231, 245, 241, 234, 244, 227, 234, 234,
+            227, 227, 243, 232, 239, 234, 238, 226, 234, 233,
+            235, 238, 240, 238, 246,
+    };
+
+    /**
+     * This method checks if the table holds the brightness of a character as CharConverter renders it.
+     * @param c char of the character
+     * @return boolean true if the character is in the table, false otherwise
+     */
+    public static boolean contains(char c) {
+        return FONT_NAME.equals(CharConverter.FONT_NAME) &&
+                PIXEL_RESOLUTION == CharConverter.DEFAULT_PIXEL_RESOLUTION && !fontFamilyMismatch &&
+                c >= FIRST_CHAR && c <= LAST_CHAR;
+    }
+
+    /**
+     * This method checks the font family CharConverter's font resolves to on this machine, and stops
+     * using the table if it isn't the one the table was generated in. It loads the fonts, so it is only
+     * called when a character outside the table is about to be rendered.
+     */
+    public static void checkFontFamily() {
+        if (!fontFamilyMismatch && !CharConverter.getFontFamily().equals(FONT_FAMILY)) {
+            fontFamilyMismatch = true;
+        }
+    }
+
+    /**
+     * This method returns the brightness of a character in the table.
+     * @param c char of the character, which must be in the table
+     * @return double of the brightness value
+     */
+    public static double getBrightness(char c) {
+        return (double) WHITE_PIXELS[c - FIRST_CHAR] / PIXELS_PER_GLYPH;
+    }
+
+    /**
+     * Renders every character of the table through CharConverter and prints the key of the table, the
+     * FONT_FAMILY value and the WHITE_PIXELS array initializer to paste into this class.
+     * @param args unused
+     */
+    public static void main(String[] args) {
+        String family = CharConverter.getFontFamily();
+        if (!family.equals(CharConverter.FONT_NAME)) {
+            System.err.println(CharConverter.FONT_NAME + " is not installed, the glyphs are rendered in " +
+                    family + ".");
+        }
+        System.out.println("FONT_NAME = \"" + CharConverter.FONT_NAME + "\";");
+        System.out.println("PIXEL_RESOLUTION = " + CharConverter.DEFAULT_PIXEL_RESOLUTION + ";");
+        System.out.println("FONT_FAMILY = \"" + family + "\";");
+        StringBuilder table = new StringBuilder();
+        for (char c = FIRST_CHAR; c <= LAST_CHAR; c++) {
+            int whitePixels = 0;
+            for (boolean[] row : CharConverter.convertToBoolArray(c)) {
+                for (boolean pixel : row) {
+                    if (pixel) {
+                        whitePixels++;
+                    }
+                }
+            }
+            boolean firstInLine = (c - FIRST_CHAR) % CHARS_PER_LINE == 0;
+            boolean lastInLine = (c - FIRST_CHAR) % CHARS_PER_LINE == CHARS_PER_LINE - 1;
+            table.append(firstInLine ? "            " : " ").append(whitePixels).append(',');
+            if (lastInLine || c == LAST_CHAR) {
+                table.append('\n');
+            }
+        }
+        System.out.print(table);
+    }
+}
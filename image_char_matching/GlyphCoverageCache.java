@@ -0,0 +1,71 @@
+package image_char_matching;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * GlyphCoverageCache keeps the glyphs of every font it was asked about, rendered once by
+ * {@link CharConverter#convertToCoverage} at SAMPLING_RESOLUTION with antialiasing. Every glyph is kept
+ * as one byte of coverage per pixel together with its brightness, so switching back to a font, or
+ * adding a character already rendered in it, is a lookup rather than a render.
+ * Fonts that aren't installed are rendered in the fallback font of the 2D graphics stack.
+ */
+public class GlyphCoverageCache {
+    /**
+     * The side of the square every glyph is rendered to, in pixels.
+     */
+    public static final int SAMPLING_RESOLUTION = 64;
+    private static final int FULL_COVERAGE = 255;
+
+    private static final ConcurrentHashMap<String, ConcurrentHashMap<Character, Glyph>> FONTS =
+            new ConcurrentHashMap<>();
+
+    /**
+     * A rendered glyph.
+     */
+    private static class Glyph {
+        private final byte[] coverage;
+        private final double brightness;
+
+        private Glyph(byte[] coverage) {
+            this.coverage = coverage;
+            long coveredSum = 0;
+            for (byte value : coverage) {
+                coveredSum += value & 0xff;
+            }
+            brightness = 1 - (double) coveredSum / ((long) FULL_COVERAGE * coverage.length);
+        }
+    }
+
+    /**
+     * This method returns the glyph of a character in a font, rendering it if it isn't cached yet.
+     * @param fontName String of the font name
+     * @param c char of the character
+     * @return Glyph of the character
+     */
+    private static Glyph getGlyph(String fontName, char c) {
+        return FONTS.computeIfAbsent(fontName, name -> new ConcurrentHashMap<>()).computeIfAbsent(c,
+                key -> new Glyph(CharConverter.convertToCoverage(key, fontName, SAMPLING_RESOLUTION)));
+    }
+
+    /**
+     * This method returns the brightness of a character in a font: the part of its square the glyph
+     * leaves empty, from 0 for a square it covers whole to 1 for an empty one.
+     * @param fontName String of the font name
+     * @param c char of the character
+     * @return double of the brightness value
+     */
+    public static double getBrightness(String fontName, char c) {
+        return getGlyph(fontName, c).brightness;
+    }
+
+    /**
+     * This method returns the coverage of every pixel of a character in a font, row by row, as rendered
+     * at SAMPLING_RESOLUTION.
+     * @param fontName String of the font name
+     * @param c char of the character
+     * @return byte[] of the coverage values, read as unsigned, which must not be changed
+     */
+    public static byte[] getCoverage(String fontName, char c) {
+        return getGlyph(fontName, c).coverage;
+    }
+}
@@ -0,0 +1,125 @@
+package image_char_matching;
+
+/**
+ * SubCellEncoder maps every cell of an ASCII art to a single character from a grid of sub-pixel
+ * brightnesses, instead of matching the brightness of the whole cell to a charset. Each sub-pixel of a
+ * cell is thresholded, and the resulting bits select the code point directly: a Braille pattern for
+ * 2x4 sub-pixels, or a quadrant block element for 2x2 sub-pixels. Dark sub-pixels are inked, like the
+ * dense characters of a charset.
+ */
+public final class SubCellEncoder {
+    /**
+     * The ways of splitting a cell into sub-pixels.
+     */
+    public enum Mode {
+        /**
+         * One sample per cell, matched to the charset.
+         */
+        NONE(1, 1),
+        /**
+         * Braille patterns, 2 columns by 4 rows of dots per cell.
+         */
+        BRAILLE(2, 4),
+        /**
+         * Quadrant block elements, 2 columns by 2 rows of quadrants per cell.
+         */
+        QUADRANT(2, 2);
+
+        private final int columns;
+        private final int rows;
+
+        Mode(int columns, int rows) {
+            this.columns = columns;
+            this.rows = rows;
+        }
+
+        /**
+         * This method returns the number of sub-pixels in every row of a cell.
+         * @return int of the number of columns
+         */
+        public int getColumns() {
+            return columns;
+        }
+
+        /**
+         * This method returns the number of sub-pixels in every column of a cell.
+         * @return int of the number of rows
+         */
+        public int getRows() {
+            return rows;
+        }
+    }
+
+    /**
+     * Sub-pixels darker than this normalized brightness are inked.
+     */
+    public static final double INK_THRESHOLD = 0.5;
+    private static final char BRAILLE_BASE = '\u2800';
+    /**
+     * The bit of every Braille dot, by row and column. Dots 1-3 and 4-6 fill the first three rows of the
+     * left and right columns, and dots 7 and 8 were added below them.
+     */
+    private static final int[][] BRAILLE_DOT_BITS = {
+            {0x01, 0x08},
+            {0x02, 0x10},
+            {0x04, 0x20},
+            {0x40, 0x80},
+    };
+    /**
+     * The quadrant block element of every combination of upper left (1), upper right (2), lower left (4)
+     * and lower right (8) quadrants.
+     */
+    private static final char[] QUADRANT_CHARS = {
+            ' ', '\u2598', '\u259D', '\u2580', '\u2596', '\u258C', '\u259E', '\u259B',
+            '\u2597', '\u259A', '\u2590', '\u259C', '\u2584', '\u2599', '\u259F', '\u2588',
+    };
+
+    private SubCellEncoder() {
+    }
+
+    /**
+     * This method encodes a grid of sub-pixel brightnesses into a grid of characters.
+     * @param brightnesses double[] of the normalized brightness of every sub-pixel, row by row
+     * @param cellColumns int of the number of cells in every row
+     * @param mode Mode of splitting the cells, other than NONE
+     * @return char[][] of the character of every cell
+     */
+    public static char[][] encode(double[] brightnesses, int cellColumns, Mode mode) {
+        int cellRows = brightnesses.length / (cellColumns * mode.getColumns() * mode.getRows());
+        return encode(brightnesses, cellColumns, mode, new char[cellRows][cellColumns]);
+    }
+
+    /**
+     * This method encodes a grid of sub-pixel brightnesses into a given grid of characters, so the grid
+     * can be reused.
+     * @param brightnesses double[] of the normalized brightness of every sub-pixel, row by row
+     * @param cellColumns int of the number of cells in every row
+     * @param mode Mode of splitting the cells, other than NONE
+     * @param chars char[][] with a row for every row of cells, to write the characters to
+     * @return char[][] the given grid of characters
+     */
+    public static char[][] encode(double[] brightnesses, int cellColumns, Mode mode, char[][] chars) {
+        if (mode == Mode.NONE) {
+            throw new IllegalArgumentException("Cells without sub-pixels are matched to a charset.");
+        }
+        int subColumns = cellColumns * mode.getColumns();
+        int cellRows = chars.length;
+        for (int i = 0; i < cellRows; i++) {
+            for (int j = 0; j < cellColumns; j++) {
+                int bits = 0;
+                int bit = 1;
+                for (int y = 0; y < mode.getRows(); y++) {
+                    int rowOffset = (i * mode.getRows() + y) * subColumns + j * mode.getColumns();
+                    for (int x = 0; x < mode.getColumns(); x++) {
+                        if (brightnesses[rowOffset + x] < INK_THRESHOLD) {
+                            bits |= mode == Mode.BRAILLE ? BRAILLE_DOT_BITS[y][x] : bit;
+                        }
+                        bit <<= 1;
+                    }
+                }
+                chars[i][j] = mode == Mode.BRAILLE ? (char) (BRAILLE_BASE + bits) : QUADRANT_CHARS[bits];
+            }
+        }
+        return chars;
+    }
+}
@@ -1,16 +1,20 @@
 package image_char_matching;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * SubImgCharMatcher class is responsible for matching characters to the brightness of a sub-image.
+ * The charset is kept as an immutable {@link CharsetSnapshot}. Edits build a new snapshot and publish it
+ * atomically, so one matcher can be shared by renders on other threads, each of which reads a single
+ * consistent version through {@link #getSnapshot()}.
+ * Brightnesses are those of the default font, {@link CharConverter#FONT_NAME}, until another font is set,
+ * whose glyphs are then sampled through {@link GlyphCoverageCache}.
  */
 public class SubImgCharMatcher {
-    private final TreeMap<Double, TreeSet<Character>> normalizedBrightnessToCharsMap = new TreeMap<>();
-    private final HashMap<Character, Double> rawBrightnessMap = new HashMap<>();
-    private double minBrightness = Double.MAX_VALUE;
-    private double maxBrightness = Double.MIN_VALUE;
-    private boolean minMaxChanged = false;
+    private final AtomicReference<CharsetSnapshot> currentSnapshot =
+            new AtomicReference<>(CharsetSnapshot.EMPTY);
+    private String fontName = CharConverter.FONT_NAME;
 
 
     /**
@@ -18,147 +22,135 @@ public class SubImgCharMatcher {
      * @param charset char[] of the characters to match
      */
     public SubImgCharMatcher(char[] charset) {
-        initBrightnessValues(charset);
+        addChars(charset);
     }
 
     /**
-     * This method initializes the brightness values of the characters.
-     * @param charset char[] of the characters to calculate brightness for
+     * This method returns the current version of the charset. The returned snapshot never changes, so
+     * a render should read it once and use it for all of its sub-images.
+     * @return CharsetSnapshot of the current charset
      */
-    private void initBrightnessValues(char[] charset) {
-        for (char c : charset) {
-            double brightness = calculateBrightness(c);
-
-            addCharacterToBrightnessMap(c, brightness);
-        }
-        normalizeAllBrightnessValues();
+    public CharsetSnapshot getSnapshot() {
+        return currentSnapshot.get();
     }
 
     /**
-     * This method adds a character to the regular brightness map.
-     * @param c char of the character
+     * This method returns the character that best matches the given brightness.
      * @param brightness double of the brightness value
+     * @return char of the character that best matches the brightness
      */
-    private void addCharacterToBrightnessMap(char c, double brightness) {
-        rawBrightnessMap.put(c, brightness);
-        updateMinAndMaxBrightness(brightness, true);
+    public char getCharByImageBrightness(double brightness) {
+        return currentSnapshot.get().getCharByImageBrightness(brightness);
     }
 
     /**
-     * This method updates the min and max brightness values.
-     * @param brightness double of the brightness value
-     * @param adding boolean, true if adding, false if removing
+     * This method matches a whole grid of brightnesses to characters in one call, against a single
+     * version of the charset.
+     * @param brightnesses double[] of the brightnesses, row by row
+     * @param chars char[][] of the size of the grid, to write the matched characters to
      */
-    private void updateMinAndMaxBrightness(double brightness, boolean adding) {
-        if (adding) {
-            if (brightness < minBrightness) {
-                minBrightness = brightness;
-                minMaxChanged = true;
-            }
-            if (brightness > maxBrightness) {
-                maxBrightness = brightness;
-                minMaxChanged = true;
-            }
-        } else {
-            if (brightness == minBrightness || brightness == maxBrightness) {
-                minMaxChanged = true;
-                if (normalizedBrightnessToCharsMap.containsKey(brightness) &&
-                        normalizedBrightnessToCharsMap.get(brightness).isEmpty()) {
-                    // Need to find new min or max
-                    if (brightness == minBrightness) {
-                        minBrightness = normalizedBrightnessToCharsMap.higherKey(minBrightness);
-                    }
-                    if (brightness == maxBrightness) {
-                        maxBrightness = normalizedBrightnessToCharsMap.lowerKey(maxBrightness);
-                    }
-                }
-            }
-        }
+    public void getCharsByImageBrightnesses(double[] brightnesses, char[][] chars) {
+        currentSnapshot.get().matchAll(brightnesses, chars);
     }
 
+
     /**
-     * This method normalizes all the brightness values.
+     * This method adds a character to the charset.
+     * @param c the char to add
      */
-    private void normalizeAllBrightnessValues() {
-        if (!minMaxChanged) return; // Skip if min/max haven't changed
-        normalizedBrightnessToCharsMap.clear();
-        for (char c : rawBrightnessMap.keySet()) {
-            double normalizedBrightness = normalizeBrightness(rawBrightnessMap.get(c));
-            normalizedBrightnessToCharsMap.computeIfAbsent(normalizedBrightness, k -> new TreeSet<>()).add(c);
-        }
-        minMaxChanged = false; // Reset flag after recalculating
+    public void addChar(char c) {
+        addChars(new char[]{c});
     }
 
-
-
     /**
-     * This method returns the character that best matches the given brightness.
-     * @param brightness double of the brightness value
-     * @return char of the character that best matches the brightness
+     * This method adds several characters to the charset, publishing them as a single new version.
+     * @param chars char[] of the characters to add
      */
-    public char getCharByImageBrightness(double brightness) {
-        Double lowerKey = normalizedBrightnessToCharsMap.floorKey(brightness);
-        Double higherKey = normalizedBrightnessToCharsMap.ceilingKey(brightness);
-        if (lowerKey == null) {
-            return normalizedBrightnessToCharsMap.get(higherKey).first();
-        }
-
-        if (higherKey == null) {
-            return normalizedBrightnessToCharsMap.get(lowerKey).first();
+    public synchronized void addChars(char[] chars) {
+        CharsetSnapshot snapshot = currentSnapshot.get();
+        char[] newChars = new char[chars.length];
+        double[] brightnesses = new double[chars.length];
+        int count = 0;
+        for (char c : chars) {
+            if (snapshot.contains(c)) continue;
+            newChars[count] = c;
+            brightnesses[count] = calculateBrightness(c, fontName);
+            count++;
         }
-        double lowerDiff = Math.abs(brightness - lowerKey);
-        double higherDiff = Math.abs(brightness - higherKey);
-        if (lowerDiff < higherDiff) {
-            return normalizedBrightnessToCharsMap.get(lowerKey).first();
-        } else {
-            return normalizedBrightnessToCharsMap.get(higherKey).first();
+        if (count == 0) return;
+        char[] addedChars = Arrays.copyOf(newChars, count);
+        double[] addedBrightnesses = Arrays.copyOf(brightnesses, count);
+        while (!currentSnapshot.compareAndSet(snapshot, snapshot.withChars(addedChars,
+                addedBrightnesses))) {
+            snapshot = currentSnapshot.get();
         }
-
     }
 
+    /**
+     * This method sets the font whose glyphs the brightnesses are taken from, and publishes the charset
+     * with the brightnesses of the new font as a single new version.
+     * @param newFontName String of the font name
+     */
+    public synchronized void setFont(String newFontName) {
+        CharsetSnapshot snapshot;
+        CharsetSnapshot newSnapshot;
+        do {
+            snapshot = currentSnapshot.get();
+            TreeSet<Character> chars = snapshot.getChars();
+            double[] brightnesses = new double[chars.size()];
+            int index = 0;
+            for (char c : chars) {
+                brightnesses[index++] = calculateBrightness(c, newFontName);
+            }
+            newSnapshot = snapshot.withBrightnesses(brightnesses);
+        } while (!currentSnapshot.compareAndSet(snapshot, newSnapshot));
+        fontName = newFontName;
+    }
 
     /**
-     * This method adds a character to the char maps - regular and normalized.
-     * @param c the char to add
+     * This method returns the font whose glyphs the brightnesses are taken from.
+     * @return String of the font name
      */
-    public void addChar(char c) {
-        double brightness = calculateBrightness(c);
-        addCharacterToBrightnessMap(c, brightness);
-        if (minMaxChanged) {
-            normalizeAllBrightnessValues(); // Recalculate only if needed
-        }
-        else {
-            double normalizedBrightness = normalizeBrightness(brightness);
-            normalizedBrightnessToCharsMap.computeIfAbsent(normalizedBrightness, k -> new TreeSet<>()).add(c);
-        }
+    public synchronized String getFont() {
+        return fontName;
     }
 
     /**
-     * This method removes a character from the char maps - regular and normalized.
+     * This method removes a character from the charset.
      * @param c the char to remove
      */
     public void removeChar(char c) {
-        if (!rawBrightnessMap.containsKey(c)) return; // Character not present
-
-        double brightness = rawBrightnessMap.remove(c);
-        double normalizedBrightness = normalizeBrightness(brightness);
-        TreeSet<Character> charSet = normalizedBrightnessToCharsMap.get(normalizedBrightness);
-        charSet.remove(c);
-        if (charSet.isEmpty()) {
-            normalizedBrightnessToCharsMap.remove(normalizedBrightness);
-        }
-        updateMinAndMaxBrightness(brightness, false);
-        if (minMaxChanged) {
-            normalizeAllBrightnessValues(); // Recalculate only if needed
-        }
+        removeChars(new char[]{c});
     }
 
     /**
-     * This method calculates the brightness of a character.
+     * This method removes several characters from the charset, publishing the result as a single new
+     * version.
+     * @param chars char[] of the characters to remove
+     */
+    public void removeChars(char[] chars) {
+        CharsetSnapshot snapshot;
+        do {
+            snapshot = currentSnapshot.get();
+        } while (!currentSnapshot.compareAndSet(snapshot, snapshot.withoutChars(chars)));
+    }
+
+    /**
+     * This method calculates the brightness of a character. In the default font, characters in the
+     * prebuilt GlyphBrightnessTable are looked up, and only other characters are rendered. In other fonts,
+     * the glyphs are sampled once and cached.
      * @param c char of the character
+     * @param fontName String of the font name
      * @return double of the brightness value
      */
-    private double calculateBrightness(char c) {
+    private double calculateBrightness(char c, String fontName) {
+        if (!fontName.equals(CharConverter.FONT_NAME)) {
+            return GlyphCoverageCache.getBrightness(fontName, c);
+        }
+        if (GlyphBrightnessTable.contains(c)) {
+            return GlyphBrightnessTable.getBrightness(c);
+        }
+        GlyphBrightnessTable.checkFontFamily();
         boolean[][] charImage = CharConverter.convertToBoolArray(c);
         double whitePixels = 0;
         for (boolean[] row : charImage) {
@@ -171,21 +163,11 @@ public class SubImgCharMatcher {
         return whitePixels / (charImage.length * charImage[0].length);
     }
 
-    /**
-     * This method normalizes the brightness value.
-     * @param brightness double of the brightness value
-     * @return double of the normalized brightness value
-     */
-    private double normalizeBrightness(double brightness) {
-        if (maxBrightness == minBrightness) return 1.0;
-        return (brightness - minBrightness) / (maxBrightness - minBrightness);
-    }
-
     /**
      * This method returns the current characters in the map.
      * @return TreeSet of Character, containing the current characters in the map
      */
     public TreeSet<Character> getCurrentCharsInMap(){
-        return new TreeSet<>(rawBrightnessMap.keySet());
+        return currentSnapshot.get().getChars();
     }
 }
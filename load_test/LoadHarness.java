@@ -0,0 +1,369 @@
+package load_test;
+
+import ascii_art.AsciiArtAlgorithm;
+import ascii_output.AsciiOutput;
+import image.Image;
+import image_char_matching.SubImgCharMatcher;
+
+import java.awt.*;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * LoadHarness drives the whole conversion - Image, AsciiArtAlgorithm and an AsciiOutput - with
+ * synthetic images, to measure its end to end throughput under concurrent load.
+ * Every scenario, a pattern, an image size and a charset, is rendered by a number of concurrent workers
+ * for a fixed time after a warmup. Each worker has its own algorithm, forced to recompute the whole
+ * image on every render, while all of them share the image and the charset matcher. The harness reports
+ * megapixels and renders per second, render latency percentiles and the bytes allocated per render by
+ * the rendering threads, and appends the results to a JSON Lines file, one object per scenario, so the
+ * runs pile up in one file and can be compared over time.
+ * <p>
+ * Usage: {@code java load_test.LoadHarness [seconds per scenario] [workers] [results file]}
+ */
+public class LoadHarness {
+    private static final int DEFAULT_SECONDS = 5;
+    private static final String DEFAULT_RESULTS_FILE = "load_results.jsonl";
+    private static final int[] IMAGE_SIZES = {256, 1024, 2048};
+    private static final int RESOLUTION = 128;
+    private static final String[] CHARSET_NAMES = {"digits", "printable"};
+    private static final char[][] CHARSETS = {"0123456789".toCharArray(), printableAscii()};
+    private static final double WARMUP_FRACTION = 0.2;
+    private static final long SEED = 42;
+    private static final double[] PERCENTILES = {50, 90, 99};
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+    private static final double PIXELS_PER_MEGAPIXEL = 1_000_000.0;
+    private static final String TABLE_HEADER =
+            "pattern   size  charset    MP/s  renders/s  p50 ms  p90 ms  p99 ms  bytes/render";
+    private static final String TABLE_ROW = "%-8s %5d  %-9s %6.1f  %9.1f  %6.2f  %6.2f  %6.2f  %12d";
+
+    /**
+     * The kinds of synthetic images.
+     */
+    enum Pattern {
+        /**
+         * A smooth diagonal gradient.
+         */
+        GRADIENT,
+        /**
+         * Uniform random noise, the worst case for any smoothing.
+         */
+        NOISE,
+        /**
+         * Smooth shapes with soft edges and a little grain, like a photo.
+         */
+        PHOTO
+    }
+
+    /**
+     * The measurements of a single scenario.
+     */
+    private static class Result {
+        private final String pattern;
+        private final int size;
+        private final String charset;
+        private final int workers;
+        private final double seconds;
+        private final long renders;
+        private final long[] latenciesNanos;
+        private final long allocatedBytes;
+
+        private Result(String pattern, int size, String charset, int workers, double seconds,
+                       long[] latenciesNanos, long allocatedBytes) {
+            this.pattern = pattern;
+            this.size = size;
+            this.charset = charset;
+            this.workers = workers;
+            this.seconds = seconds;
+            this.renders = latenciesNanos.length;
+            this.latenciesNanos = latenciesNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        private double megapixelsPerSecond() {
+            return renders * (double) size * size / PIXELS_PER_MEGAPIXEL / seconds;
+        }
+
+        private double rendersPerSecond() {
+            return renders / seconds;
+        }
+
+        private double percentileMillis(double percentile) {
+            if (latenciesNanos.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100 * latenciesNanos.length) - 1;
+            return latenciesNanos[Math.max(0, index)] / NANOS_PER_MILLI;
+        }
+
+        private long allocatedBytesPerRender() {
+            return renders == 0 || allocatedBytes < 0 ? -1 : allocatedBytes / renders;
+        }
+    }
+
+    /**
+     * A growable array of latencies, so collecting them doesn't box every value.
+     */
+    private static class LatencyRecorder {
+        private long[] latencies = new long[1024];
+        private int count = 0;
+
+        private void record(long latencyNanos) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latencyNanos;
+        }
+    }
+
+    /**
+     * An output that only reads the chars of the art, standing in for a real writer without the cost of
+     * I/O.
+     */
+    private static class ChecksumAsciiOutput implements AsciiOutput {
+        private long checksum = 0;
+
+        @Override
+        public void out(char[][] chars) {
+            for (char[] row : chars) {
+                for (char c : row) {
+                    checksum = checksum * 31 + c;
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the harness.
+     * @param args the seconds per scenario, the number of workers and the results file, all optional
+     * @throws IOException if the results file can't be written
+     * @throws InterruptedException if the harness is interrupted
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SECONDS;
+        int workers = args.length > 1 ? Integer.parseInt(args[1]) :
+                Runtime.getRuntime().availableProcessors();
+        String resultsFile = args.length > 2 ? args[2] : DEFAULT_RESULTS_FILE;
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            ((com.sun.management.ThreadMXBean) threads).setThreadAllocatedMemoryEnabled(true);
+        }
+
+        List<Result> results = new ArrayList<>();
+        System.out.println(TABLE_HEADER);
+        for (Pattern pattern : Pattern.values()) {
+            for (int size : IMAGE_SIZES) {
+                Image image = createImage(pattern, size, SEED);
+                for (int i = 0; i < CHARSETS.length; i++) {
+                    Result result = runScenario(image, pattern, CHARSET_NAMES[i], CHARSETS[i], workers,
+                            seconds);
+                    results.add(result);
+                    System.out.println(String.format(TABLE_ROW,
+                            result.pattern, result.size, result.charset, result.megapixelsPerSecond(),
+                            result.rendersPerSecond(), result.percentileMillis(PERCENTILES[0]),
+                            result.percentileMillis(PERCENTILES[1]), result.percentileMillis(PERCENTILES[2]),
+                            result.allocatedBytesPerRender()));
+                }
+            }
+        }
+        writeResults(resultsFile, results);
+    }
+
+    /**
+     * This method renders one scenario with concurrent workers, first for a warmup and then for the
+     * measured time.
+     * @param image Image to render
+     * @param pattern Pattern of the image
+     * @param charsetName String naming the charset
+     * @param charset char[] of the charset
+     * @param workers int of the number of concurrent workers
+     * @param seconds int of the measured time
+     * @return Result of the measured time
+     * @throws InterruptedException if the harness is interrupted
+     */
+    private static Result runScenario(Image image, Pattern pattern, String charsetName, char[] charset,
+                                      int workers, int seconds) throws InterruptedException {
+        SubImgCharMatcher matcher = new SubImgCharMatcher(charset);
+        runWorkers(image, matcher, workers, (long) (seconds * WARMUP_FRACTION * 1000));
+        long startNanos = System.nanoTime();
+        LatencyRecorder[] recorders = new LatencyRecorder[workers];
+        long allocatedBytes = runWorkers(image, matcher, workers, seconds * 1000L, recorders);
+        double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+        int total = 0;
+        for (LatencyRecorder recorder : recorders) {
+            total += recorder.count;
+        }
+        long[] latencies = new long[total];
+        int offset = 0;
+        for (LatencyRecorder recorder : recorders) {
+            System.arraycopy(recorder.latencies, 0, latencies, offset, recorder.count);
+            offset += recorder.count;
+        }
+        Arrays.sort(latencies);
+        return new Result(pattern.name().toLowerCase(), image.getWidth(), charsetName, workers,
+                elapsedSeconds, latencies, allocatedBytes);
+    }
+
+    /**
+     * This method renders with concurrent workers for a warmup, without keeping the measurements.
+     * @param image Image to render
+     * @param matcher SubImgCharMatcher shared by the workers
+     * @param workers int of the number of concurrent workers
+     * @param millis long of the time to render for
+     * @throws InterruptedException if the harness is interrupted
+     */
+    private static void runWorkers(Image image, SubImgCharMatcher matcher, int workers, long millis)
+            throws InterruptedException {
+        runWorkers(image, matcher, workers, millis, new LatencyRecorder[workers]);
+    }
+
+    /**
+     * This method renders with concurrent workers until the time is up.
+     * @param image Image to render
+     * @param matcher SubImgCharMatcher shared by the workers
+     * @param workers int of the number of concurrent workers
+     * @param millis long of the time to render for
+     * @param recorders LatencyRecorder[] filled with a recorder per worker
+     * @return long of the bytes allocated by the workers while rendering, or -1 if the JVM can't tell
+     * @throws InterruptedException if the harness is interrupted
+     */
+    private static long runWorkers(Image image, SubImgCharMatcher matcher, int workers, long millis,
+                                   LatencyRecorder[] recorders) throws InterruptedException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean allocations = threads instanceof com.sun.management.ThreadMXBean ?
+                (com.sun.management.ThreadMXBean) threads : null;
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch done = new CountDownLatch(workers);
+        long[] allocatedBytes = new long[workers];
+        for (int i = 0; i < workers; i++) {
+            int worker = i;
+            recorders[worker] = new LatencyRecorder();
+            Thread thread = new Thread(() -> {
+                AsciiArtAlgorithm algorithm = new AsciiArtAlgorithm(image, RESOLUTION, matcher);
+                ChecksumAsciiOutput output = new ChecksumAsciiOutput();
+                long threadId = Thread.currentThread().getId();
+                long allocated = 0;
+                while (running.get()) {
+                    long allocatedBefore = allocations == null ? 0 :
+                            allocations.getThreadAllocatedBytes(threadId);
+                    long startNanos = System.nanoTime();
+                    algorithm.setAChangeOfImageWasMade(true);
+                    output.out(algorithm.run());
+                    long latency = System.nanoTime() - startNanos;
+                    if (allocations != null) {
+                        allocated += allocations.getThreadAllocatedBytes(threadId) - allocatedBefore;
+                    }
+                    recorders[worker].record(latency);
+                }
+                allocatedBytes[worker] = allocations == null ? -1 : allocated;
+                done.countDown();
+            }, "load-worker-" + worker);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        Thread.sleep(millis);
+        running.set(false);
+        done.await();
+        long total = 0;
+        for (long bytes : allocatedBytes) {
+            if (bytes < 0) {
+                return -1;
+            }
+            total += bytes;
+        }
+        return total;
+    }
+
+    /**
+     * This method creates a synthetic image.
+     * @param pattern Pattern of the image
+     * @param size int of the width and height of the image
+     * @param seed long of the seed of the random parts of the image
+     * @return Image of the pattern
+     */
+    static Image createImage(Pattern pattern, int size, long seed) {
+        Random random = new Random(seed);
+        Color[][] pixels = new Color[size][size];
+        double[][] blobs = new double[8][];
+        for (int i = 0; i < blobs.length; i++) {
+            blobs[i] = new double[]{random.nextDouble() * size, random.nextDouble() * size,
+                    (0.05 + random.nextDouble() * 0.2) * size, random.nextDouble() * 2 - 1};
+        }
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                double value;
+                switch (pattern) {
+                    case GRADIENT:
+                        value = (x + y) / (2.0 * (size - 1));
+                        break;
+                    case NOISE:
+                        value = random.nextDouble();
+                        break;
+                    default:
+                        value = 0.5;
+                        for (double[] blob : blobs) {
+                            double dx = (x - blob[0]) / blob[2];
+                            double dy = (y - blob[1]) / blob[2];
+                            value += 0.4 * blob[3] * Math.exp(-(dx * dx + dy * dy));
+                        }
+                        value += (random.nextDouble() - 0.5) * 0.05;
+                }
+                int gray = (int) Math.round(Math.max(0, Math.min(1, value)) * 255);
+                pixels[y][x] = new Color(gray, gray, gray);
+            }
+        }
+        return new Image(pixels, size, size);
+    }
+
+    /**
+     * This method returns the printable ASCII characters.
+     * @return char[] of the characters from space to tilde
+     */
+    private static char[] printableAscii() {
+        char[] chars = new char['~' - ' ' + 1];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) (' ' + i);
+        }
+        return chars;
+    }
+
+    /**
+     * This method appends the results to a JSON Lines file, one object per scenario, all with the
+     * timestamp of this run. The file is created if it doesn't exist.
+     * @param resultsFile String of the file to append to
+     * @param results List of the results
+     * @throws IOException if the file can't be written
+     */
+    private static void writeResults(String resultsFile, List<Result> results) throws IOException {
+        long timestamp = System.currentTimeMillis();
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(resultsFile),
+                StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (Result result : results) {
+                writer.write(String.format(Locale.ROOT,
+                        "{\"timestamp\": %d, \"pattern\": \"%s\", \"size\": %d, \"resolution\": %d, " +
+                                "\"charset\": \"%s\", \"workers\": %d, \"seconds\": %.3f, \"renders\": %d, " +
+                                "\"megapixelsPerSecond\": %.3f, \"rendersPerSecond\": %.3f, " +
+                                "\"p50Millis\": %.3f, \"p90Millis\": %.3f, \"p99Millis\": %.3f, " +
+                                "\"allocatedBytesPerRender\": %d}\n",
+                        timestamp, result.pattern, result.size, RESOLUTION, result.charset,
+                        result.workers, result.seconds, result.renders, result.megapixelsPerSecond(),
+                        result.rendersPerSecond(), result.percentileMillis(PERCENTILES[0]),
+                        result.percentileMillis(PERCENTILES[1]), result.percentileMillis(PERCENTILES[2]),
+                        result.allocatedBytesPerRender()));
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package oh_tests;
+
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.Assume;
+import org.junit.Test;
+import ascii_art.AsciiArtAlgorithm;
+import distributed.BandCoordinator;
+import image.Image;
+import image_char_matching.SubCellEncoder;
+import image_char_matching.SubImgCharMatcher;
+
+/**
+ * Renders on worker processes spawned on this machine, and checks the art against a render without
+ * workers.
+ */
+public class BandCoordinatorTest {
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 200;
+    private static final int[] RESOLUTIONS = {64, 100};
+    private static final int HUNG_WORKER_TIMEOUT_MILLIS = 2000;
+
+    private static void assertSameAsLocal(BandCoordinator coordinator, Image image, int resolution,
+                                          SubCellEncoder.Mode cellMode) throws IOException {
+        SubImgCharMatcher matcher = new SubImgCharMatcher("0123456789".toCharArray());
+        AsciiArtAlgorithm algorithm = new AsciiArtAlgorithm(image, resolution, matcher);
+        algorithm.setSubCellMode(cellMode);
+        char[][] expected = algorithm.run();
+        char[][] actual = coordinator.render(image, resolution, cellMode, matcher.getSnapshot());
+        assert Arrays.deepEquals(expected, actual) : resolution + " " + cellMode;
+    }
+
+    @Test
+    public void TestMatchesLocalRender() throws IOException {
+        Image image = TestImages.createGradient(WIDTH, HEIGHT);
+        try (BandCoordinator coordinator = new BandCoordinator(2)) {
+            for (int resolution : RESOLUTIONS) {
+                for (SubCellEncoder.Mode cellMode : SubCellEncoder.Mode.values()) {
+                    assertSameAsLocal(coordinator, image, resolution, cellMode);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void TestRetriesBandOfDeadWorker() throws Exception {
+        Image image = TestImages.createGradient(WIDTH, HEIGHT);
+        try (BandCoordinator coordinator = new BandCoordinator(3)) {
+            ProcessHandle worker = ProcessHandle.current().children().findFirst().orElseThrow();
+            worker.destroyForcibly();
+            worker.onExit().get();
+            assertSameAsLocal(coordinator, image, 64, SubCellEncoder.Mode.NONE);
+            assert coordinator.getLiveWorkers() == 2;
+        }
+    }
+
+    @Test
+    public void TestRetriesBandOfHungWorker() throws Exception {
+        Image image = TestImages.createGradient(WIDTH, HEIGHT);
+        try (BandCoordinator coordinator = new BandCoordinator(2, HUNG_WORKER_TIMEOUT_MILLIS)) {
+            ProcessHandle worker = ProcessHandle.current().children().findFirst().orElseThrow();
+            Process stop = new ProcessBuilder("kill", "-STOP", Long.toString(worker.pid())).start();
+            Assume.assumeTrue(stop.waitFor() == 0);
+            assertSameAsLocal(coordinator, image, 64, SubCellEncoder.Mode.NONE);
+            assert coordinator.getLiveWorkers() == 1;
+        }
+    }
+
+    @Test
+    public void TestFailsWithoutWorkers() throws Exception {
+        Image image = TestImages.createGradient(WIDTH, HEIGHT);
+        try (BandCoordinator coordinator = new BandCoordinator(1)) {
+            ProcessHandle worker = ProcessHandle.current().children().findFirst().orElseThrow();
+            worker.destroyForcibly();
+            worker.onExit().get();
+            boolean failed = false;
+            try {
+                coordinator.render(image, 64, SubCellEncoder.Mode.NONE,
+                        new SubImgCharMatcher("01".toCharArray()).getSnapshot());
+            } catch (IOException e) {
+                failed = true;
+            }
+            assert failed;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package oh_tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import javax.imageio.ImageIO;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ascii_art.AsciiArtAlgorithm;
+import ascii_art.BatchPipeline;
+import ascii_art.RenderCache;
+import ascii_output.HtmlAsciiOutput;
+import image.Image;
+import image.ImageBudget;
+import image_char_matching.ContrastNormalizer;
+import image_char_matching.SubCellEncoder;
+import image_char_matching.SubImgCharMatcher;
+
+/**
+ * Renders a directory of images through the pipeline, and checks every art against a render of the
+ * same image without it, also when the arts come from the render cache or can't be written.
+ */
+public class BatchPipelineTest {
+    private static final int IMAGES = 6;
+    private static final int RESOLUTION = 32;
+    private static final int QUEUE_CAPACITY = 2;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path createImages() throws IOException {
+        Path directory = folder.newFolder("images").toPath();
+        for (int i = 0; i < IMAGES; i++) {
+            BufferedImage image = new BufferedImage(100 + i * 10, 80, BufferedImage.TYPE_INT_RGB);
+            for (int y = 0; y < image.getHeight(); y++) {
+                for (int x = 0; x < image.getWidth(); x++) {
+                    int value = (x * (i + 1) + y * 3) % 256;
+                    image.setRGB(x, y, value << 16 | (255 - value) << 8 | (x * y) % 256);
+                }
+            }
+            ImageIO.write(image, "png", directory.resolve("image" + i + ".png").toFile());
+        }
+        Files.write(directory.resolve("broken.png"), new byte[]{1, 2, 3});
+        return directory;
+    }
+
+    private void assertSameAsRender(Path file, SubImgCharMatcher matcher, boolean dithering)
+            throws IOException {
+        AsciiArtAlgorithm algorithm = new AsciiArtAlgorithm(new Image(file.toString()), RESOLUTION, matcher);
+        algorithm.setDithering(dithering);
+        Path expected = folder.newFile().toPath();
+        new HtmlAsciiOutput(expected.toString(), matcher.getFont()).out(algorithm.run());
+        assertEquals(file.toString(), Files.readString(expected),
+                Files.readString(BatchPipeline.getOutputPath(file)));
+    }
+
+    private static BatchPipeline runBatch(List<Path> files, RenderCache cache, SubImgCharMatcher matcher,
+                                          boolean dithering, int threads) {
+        BatchPipeline pipeline = new BatchPipeline(new ImageBudget(1L << 24, 1L << 30), cache,
+                matcher, RESOLUTION, dithering, ContrastNormalizer.Mode.NONE, SubCellEncoder.Mode.NONE,
+                threads, threads, threads, threads, QUEUE_CAPACITY);
+        pipeline.run(files);
+        for (BatchPipeline.Stage stage : pipeline.getStages()) {
+            assertTrue(stage.getName(), stage.getMaxQueueDepth() <= QUEUE_CAPACITY);
+        }
+        return pipeline;
+    }
+
+    private void assertSameAsRenders(List<Path> files, SubImgCharMatcher matcher, boolean dithering)
+            throws IOException {
+        for (Path file : files) {
+            if (!file.getFileName().toString().startsWith("broken")) {
+                assertSameAsRender(file, matcher, dithering);
+            }
+        }
+    }
+
+    private void assertBatchMatchesRenders(boolean dithering, int threads) throws IOException {
+        List<Path> files = BatchPipeline.listImages(createImages());
+        assertEquals(IMAGES + 1, files.size());
+        SubImgCharMatcher matcher = new SubImgCharMatcher("0123456789".toCharArray());
+        BatchPipeline pipeline = runBatch(files, null, matcher, dithering, threads);
+        assertEquals(1, pipeline.getFailedImages());
+        for (BatchPipeline.Stage stage : pipeline.getStages()) {
+            assertEquals(stage.getName(), IMAGES, stage.getProcessedImages());
+        }
+        assertSameAsRenders(files, matcher, dithering);
+    }
+
+    @Test
+    public void TestSingleThreadStages() throws IOException {
+        assertBatchMatchesRenders(false, 1);
+    }
+
+    @Test
+    public void TestMultiThreadStagesWithDithering() throws IOException {
+        assertBatchMatchesRenders(true, 3);
+    }
+
+    @Test
+    public void TestCachedArtsSkipRendering() throws IOException {
+        List<Path> files = BatchPipeline.listImages(createImages());
+        RenderCache cache = new RenderCache(folder.newFolder("cache").getPath(), 1L << 24);
+        SubImgCharMatcher matcher = new SubImgCharMatcher("0123456789".toCharArray());
+        assertEquals(0, runBatch(files, cache, matcher, false, 2).getCachedImages());
+        for (Path file : files) {
+            Files.deleteIfExists(BatchPipeline.getOutputPath(file));
+        }
+        BatchPipeline pipeline = runBatch(files, cache, matcher, false, 2);
+        assertEquals(IMAGES, pipeline.getCachedImages());
+        assertEquals(1, pipeline.getFailedImages());
+        for (BatchPipeline.Stage stage : pipeline.getStages()) {
+            boolean rendersArt = stage.getName().equals("brightness") || stage.getName().equals("match");
+            assertEquals(stage.getName(), rendersArt ? 0 : IMAGES, stage.getProcessedImages());
+        }
+        assertSameAsRenders(files, matcher, false);
+    }
+
+    @Test
+    public void TestCountsFailedWrites() throws IOException {
+        List<Path> files = BatchPipeline.listImages(createImages());
+        Files.createDirectory(BatchPipeline.getOutputPath(files.get(1)));
+        BatchPipeline pipeline = runBatch(files, null, new SubImgCharMatcher("0123456789".toCharArray()),
+                false, 1);
+        assertEquals(2, pipeline.getFailedImages());
+        assertEquals(IMAGES - 1, pipeline.getStages().get(3).getProcessedImages());
+    }
+}
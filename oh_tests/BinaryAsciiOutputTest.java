@@ -0,0 +1,88 @@
+package oh_tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ascii_output.BinaryAsciiArtReader;
+import ascii_output.BinaryAsciiOutput;
+
+/**
+ * Writes ASCII arts to binary files and reads them back, and checks broken headers are rejected.
+ */
+public class BinaryAsciiOutputTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private char[][] roundTrip(char[][] art) throws IOException {
+        Path file = folder.newFile().toPath();
+        new BinaryAsciiOutput(file.toString()).write(art);
+        try (BinaryAsciiArtReader reader = new BinaryAsciiArtReader(file.toString())) {
+            assertEquals(art.length, reader.getRows());
+            assertEquals(art[0].length, reader.getColumns());
+            for (int row = 0; row < art.length; row++) {
+                for (int column = 0; column < art[row].length; column++) {
+                    assertEquals(art[row][column], reader.getChar(row, column));
+                }
+            }
+            return reader.readAll();
+        }
+    }
+
+    private void assertRejected(int rows, int columns) throws IOException {
+        Path file = folder.newFile().toPath();
+        try (DataOutputStream writer = new DataOutputStream(new FileOutputStream(file.toFile()))) {
+            writer.writeInt(BinaryAsciiOutput.MAGIC);
+            writer.writeByte(BinaryAsciiOutput.FORMAT_VERSION);
+            writer.writeInt(rows);
+            writer.writeInt(columns);
+            writer.writeShort(1);
+            writer.writeChar('@');
+            writer.write(new byte[64]);
+        }
+        try {
+            new BinaryAsciiArtReader(file.toString()).close();
+        } catch (IOException e) {
+            return;
+        }
+        fail("Accepted " + rows + " by " + columns + " art of 64 cells");
+    }
+
+    @Test
+    public void TestByteIndexedRoundTrip() throws IOException {
+        char[][] art = {
+                {' ', '.', '@', '#'},
+                {'#', '#', ' ', '.'},
+                {'@', ' ', ' ', '@'},
+        };
+        assertArrayEquals(art, roundTrip(art));
+    }
+
+    @Test
+    public void TestShortIndexedRoundTrip() throws IOException {
+        char[][] art = new char[3][200];
+        for (int row = 0; row < art.length; row++) {
+            for (int column = 0; column < art[row].length; column++) {
+                art[row][column] = (char) ('!' + row * art[row].length + column);
+            }
+        }
+        assertArrayEquals(art, roundTrip(art));
+    }
+
+    @Test
+    public void TestRejectsBrokenSizes() throws IOException {
+        assertRejected(0, 8);
+        assertRejected(-1, 8);
+        assertRejected(8, -8);
+        assertRejected(65536, 65536);
+        assertRejected(Integer.MAX_VALUE, Integer.MAX_VALUE);
+        assertRejected(9, 8);
+    }
+}
@@ -0,0 +1,82 @@
+package oh_tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import org.junit.Test;
+import ascii_art.AsciiArtAlgorithm;
+import image.Image;
+import image_char_matching.ContrastNormalizer;
+import image_char_matching.SubCellEncoder;
+
+/**
+ * Renders an image and then a copy of it with a small change through the same algorithm, which keeps
+ * the brightnesses of the unchanged rows, and checks the art is the same as a render of the copy from
+ * scratch, in every grid, sub-cell, dithering and contrast mode.
+ */
+public class BrightnessReuseTest {
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 205;
+    private static final int[] RESOLUTIONS = {32, 37};
+    private static final char[] CHARSET = "0123456789".toCharArray();
+
+    private static Image createChangedCopy(Image image) {
+        Color[][] pixels = new Color[HEIGHT][WIDTH];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                pixels[y][x] = image.getPixel(y, x);
+            }
+        }
+        // Row 106 is shared by the 8.2 pixel high cells above and below it at resolution 37.
+        for (int x = 0; x < WIDTH; x++) {
+            pixels[106][x] = Color.WHITE;
+        }
+        for (int y = 60; y < 70; y++) {
+            for (int x = 20; x < 45; x++) {
+                pixels[y][x] = Color.WHITE;
+            }
+        }
+        return new Image(pixels, WIDTH, HEIGHT);
+    }
+
+    private static AsciiArtAlgorithm createAlgorithm(Image image, int resolution,
+                                                     SubCellEncoder.Mode subCellMode, boolean dithering,
+                                                     ContrastNormalizer.Mode contrastMode) {
+        AsciiArtAlgorithm algorithm = new AsciiArtAlgorithm(image, resolution, CHARSET);
+        algorithm.setSubCellMode(subCellMode);
+        algorithm.setDithering(dithering);
+        algorithm.setContrastMode(contrastMode);
+        return algorithm;
+    }
+
+    private static void assertReuseMatchesFreshRender(Image image, Image changed, int resolution,
+                                                      SubCellEncoder.Mode subCellMode, boolean dithering,
+                                                      ContrastNormalizer.Mode contrastMode) {
+        AsciiArtAlgorithm algorithm = createAlgorithm(image, resolution, subCellMode, dithering,
+                contrastMode);
+        algorithm.run();
+        algorithm.setImage(changed);
+        char[][] reused = algorithm.run();
+        String mode = resolution + " " + subCellMode + " " + dithering + " " + contrastMode;
+        assertTrue(mode, algorithm.getReusedSubImages() > 0);
+        char[][] fresh = createAlgorithm(changed, resolution, subCellMode, dithering, contrastMode).run();
+        assertArrayEquals(mode, fresh, reused);
+    }
+
+    @Test
+    public void TestReuseMatchesFreshRender() {
+        Image image = TestImages.createGradient(WIDTH, HEIGHT);
+        Image changed = createChangedCopy(image);
+        for (int resolution : RESOLUTIONS) {
+            for (SubCellEncoder.Mode subCellMode : SubCellEncoder.Mode.values()) {
+                for (boolean dithering : new boolean[]{false, true}) {
+                    for (ContrastNormalizer.Mode contrastMode : ContrastNormalizer.Mode.values()) {
+                        assertReuseMatchesFreshRender(image, changed, resolution, subCellMode, dithering,
+                                contrastMode);
+                    }
+                }
+            }
+        }
+    }
+}
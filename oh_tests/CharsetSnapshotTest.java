@@ -0,0 +1,92 @@
+package oh_tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import org.junit.Test;
+import image_char_matching.CharsetSnapshot;
+
+/**
+ * Matches grids of random, exact-threshold, tied and NaN brightnesses with matchAll, and checks every
+ * cell against getCharByImageBrightness, for charsets of 1, 2 and 95 chars.
+ */
+public class CharsetSnapshotTest {
+    private static final long SEED = 42;
+    private static final int COLUMNS = 256;
+    private static final int SMALL_ROWS = 40;
+    // Enough cells for matchAll to match the rows in parallel.
+    private static final int LARGE_ROWS = 300;
+
+    private static CharsetSnapshot createCharset(int size, Random random) {
+        char[] chars = new char[size];
+        double[] brightnesses = new double[size];
+        for (int i = 0; i < size; i++) {
+            chars[i] = (char) (' ' + i);
+            // Coarse brightnesses, so some chars share a threshold.
+            brightnesses[i] = random.nextInt(64) / 256.0;
+        }
+        return CharsetSnapshot.of(chars, brightnesses);
+    }
+
+    private static double nextBrightness(CharsetSnapshot charset, Random random, double previous) {
+        switch (random.nextInt(8)) {
+            case 0:
+                return charset.getBrightnessAt(charset.getMatchIndex(random.nextDouble()));
+            case 1: {
+                int index = charset.getMatchIndex(random.nextDouble());
+                int other = charset.getMatchIndex(random.nextDouble());
+                return (charset.getBrightnessAt(index) + charset.getBrightnessAt(other)) / 2;
+            }
+            case 2:
+                return Double.NaN;
+            case 3:
+                return random.nextDouble() * 3 - 1;
+            case 4:
+                return new double[]{-0.0, 0.0, 1.0, Double.NEGATIVE_INFINITY,
+                        Double.POSITIVE_INFINITY}[random.nextInt(5)];
+            default:
+                return Double.isNaN(previous) ? random.nextDouble() :
+                        previous + (random.nextDouble() - 0.5) / 64;
+        }
+    }
+
+    private static void assertMatchAllMatchesCells(int charsetSize, int rows) {
+        Random random = new Random(SEED + charsetSize);
+        CharsetSnapshot charset = createCharset(charsetSize, random);
+        double[] brightnesses = new double[rows * COLUMNS];
+        double previous = 0;
+        for (int i = 0; i < brightnesses.length; i++) {
+            brightnesses[i] = nextBrightness(charset, random, previous);
+            previous = brightnesses[i];
+        }
+        char[][] chars = new char[rows][COLUMNS];
+        charset.matchAll(brightnesses, chars);
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < COLUMNS; column++) {
+                double brightness = brightnesses[row * COLUMNS + column];
+                assertEquals("Brightness " + brightness, charset.getCharByImageBrightness(brightness),
+                        chars[row][column]);
+            }
+        }
+    }
+
+    @Test
+    public void TestSingleChar() {
+        assertMatchAllMatchesCells(1, SMALL_ROWS);
+    }
+
+    @Test
+    public void TestTwoChars() {
+        assertMatchAllMatchesCells(2, SMALL_ROWS);
+    }
+
+    @Test
+    public void TestPrintableAscii() {
+        assertMatchAllMatchesCells(95, SMALL_ROWS);
+    }
+
+    @Test
+    public void TestPrintableAsciiInParallel() {
+        assertMatchAllMatchesCells(95, LARGE_ROWS);
+    }
+}
@@ -0,0 +1,88 @@
+package oh_tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import image_char_matching.ContrastNormalizer;
+
+/**
+ * Normalizes low-contrast and skewed sets of brightnesses, and checks a stretch maps the darkest and
+ * brightest ones to 0 and 1, equalization leaves a flat histogram, and both keep the order of the
+ * brightnesses.
+ */
+public class ContrastNormalizerTest {
+    private static final int COUNT = 10000;
+    private static final int HISTOGRAM_BINS = 10;
+    // The tables work on 256 buckets, so values may be off by the size of a bucket.
+    private static final double BUCKET_TOLERANCE = 1.0 / 256;
+
+    private static double[] createLinear(double low, double high) {
+        double[] brightnesses = new double[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            brightnesses[i] = low + (high - low) * i / (COUNT - 1);
+        }
+        return brightnesses;
+    }
+
+    private static double[] normalize(double[] brightnesses, ContrastNormalizer.Mode mode) {
+        double[] normalized = new double[brightnesses.length];
+        ContrastNormalizer.fromBrightnesses(brightnesses, mode).apply(brightnesses, normalized);
+        return normalized;
+    }
+
+    private static void assertNonDecreasing(double[] normalized) {
+        for (int i = 1; i < normalized.length; i++) {
+            assertTrue("Order broken at " + i, normalized[i] >= normalized[i - 1]);
+        }
+    }
+
+    @Test
+    public void TestNoneKeepsBrightness() {
+        double[] brightnesses = createLinear(0.3, 0.6);
+        double[] normalized = normalize(brightnesses, ContrastNormalizer.Mode.NONE);
+        for (int i = 0; i < COUNT; i++) {
+            assertEquals(brightnesses[i], normalized[i], 0);
+        }
+    }
+
+    @Test
+    public void TestStretchMapsRangeToFull() {
+        double[] normalized = normalize(createLinear(0.3, 0.6), ContrastNormalizer.Mode.STRETCH);
+        assertEquals(0, normalized[0], 0);
+        assertEquals(1, normalized[COUNT - 1], 0);
+        // The middle of the range stays in the middle, give or take the percentiles cut at both ends.
+        assertEquals(0.5, normalized[COUNT / 2], 0.05);
+        assertNonDecreasing(normalized);
+    }
+
+    @Test
+    public void TestEqualizeFlattensHistogram() {
+        // Four fifths of the brightnesses are crowded into the darkest fifth of the range.
+        double[] dark = createLinear(0, 0.2);
+        double[] light = createLinear(0.2, 1);
+        double[] brightnesses = new double[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            brightnesses[i] = i < COUNT * 4 / 5 ? dark[i * 5 / 4] : light[(i - COUNT * 4 / 5) * 5];
+        }
+        double[] normalized = normalize(brightnesses, ContrastNormalizer.Mode.EQUALIZE);
+        int[] histogram = new int[HISTOGRAM_BINS];
+        for (double brightness : normalized) {
+            histogram[Math.min(HISTOGRAM_BINS - 1, (int) (brightness * HISTOGRAM_BINS))]++;
+        }
+        for (int bin = 0; bin < HISTOGRAM_BINS; bin++) {
+            assertEquals("Bin " + bin, 1.0 / HISTOGRAM_BINS, (double) histogram[bin] / COUNT,
+                    2 * BUCKET_TOLERANCE);
+        }
+        assertNonDecreasing(normalized);
+    }
+
+    @Test
+    public void TestEqualizeMapsToFractionBelow() {
+        double[] brightnesses = createLinear(0.3, 0.6);
+        double[] normalized = normalize(brightnesses, ContrastNormalizer.Mode.EQUALIZE);
+        for (int i = 0; i < COUNT; i += COUNT / 20) {
+            assertEquals((double) i / COUNT, normalized[i], 2 * BUCKET_TOLERANCE / 0.3);
+        }
+    }
+}
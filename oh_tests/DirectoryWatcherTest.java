@@ -0,0 +1,61 @@
+package oh_tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ascii_art.DirectoryWatcher;
+import image.ImageBudget;
+import image_char_matching.ContrastNormalizer;
+import image_char_matching.SubCellEncoder;
+import image_char_matching.SubImgCharMatcher;
+
+/**
+ * Watches a directory with a short debounce time, writes an image into it twice in a row, and checks
+ * the image is rendered once, next to the image.
+ */
+public class DirectoryWatcherTest {
+    private static final long DEBOUNCE_MILLIS = 300;
+    private static final long TIMEOUT_MILLIS = 10000;
+    private static final int SIZE = 64;
+    private static final int RESOLUTION = 16;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void writeImage(File file, int color) throws IOException {
+        BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                image.setRGB(x, y, x < SIZE / 2 ? color : 0xffffff);
+            }
+        }
+        ImageIO.write(image, "png", file);
+    }
+
+    @Test
+    public void TestRendersRewrittenFileOnce() throws IOException, InterruptedException {
+        File image = new File(folder.getRoot(), "image.png");
+        SubImgCharMatcher matcher = new SubImgCharMatcher("0123456789".toCharArray());
+        try (DirectoryWatcher watcher = new DirectoryWatcher(folder.getRoot().getPath(),
+                new ImageBudget(Long.MAX_VALUE, Long.MAX_VALUE), matcher, RESOLUTION, false,
+                ContrastNormalizer.Mode.NONE, SubCellEncoder.Mode.NONE, 1, 4, DEBOUNCE_MILLIS)) {
+            writeImage(image, 0x000000);
+            writeImage(image, 0x404040);
+            long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            while (watcher.getRenders() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            // Any further render would be due a debounce time after the last event.
+            Thread.sleep(3 * DEBOUNCE_MILLIS);
+            assertEquals(1, watcher.getRenders());
+        }
+        assertTrue(new File(folder.getRoot(), "image.png.html").isFile());
+    }
+}
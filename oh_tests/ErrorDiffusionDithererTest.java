@@ -0,0 +1,98 @@
+package oh_tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import org.junit.Test;
+import image_char_matching.CharsetSnapshot;
+import image_char_matching.ErrorDiffusionDitherer;
+
+/**
+ * Dithers small grids with a charset of a black and a white char, with brightnesses that are exact in
+ * binary, and checks the error of a sub-image reaches each of its neighbours to the right and below,
+ * is forgotten on reset, and keeps the average brightness of a flat grid.
+ */
+public class ErrorDiffusionDithererTest {
+    private static final char BLACK = '#';
+    private static final char WHITE = ' ';
+    private static final CharsetSnapshot CHARSET = CharsetSnapshot.of(new char[]{BLACK, WHITE},
+            new double[]{0, 1});
+    // Matched to black with an error of 6/16.
+    private static final double DARK_GRAY = 0.375;
+
+    private static char[][] dither(ErrorDiffusionDitherer ditherer, double[][] rows) {
+        char[][] chars = new char[rows.length][ditherer.getColumns()];
+        for (int i = 0; i < rows.length; i++) {
+            ditherer.ditherRow(rows[i], 0, CHARSET, chars[i]);
+        }
+        return chars;
+    }
+
+    private static char[][] dither(double[][] rows) {
+        return dither(new ErrorDiffusionDitherer(rows[0].length), rows);
+    }
+
+    @Test
+    public void TestErrorCarriedRight() {
+        // 0.375 + 7/16 * 0.375 is above one half.
+        char[][] chars = dither(new double[][]{{DARK_GRAY, DARK_GRAY}});
+        assertEquals(BLACK, chars[0][0]);
+        assertEquals(WHITE, chars[0][1]);
+    }
+
+    @Test
+    public void TestErrorCarriedBelow() {
+        // 0.4375 + 5/16 * 0.375 is above one half.
+        char[][] chars = dither(new double[][]{{DARK_GRAY}, {0.4375}});
+        assertEquals(BLACK, chars[0][0]);
+        assertEquals(WHITE, chars[1][0]);
+    }
+
+    @Test
+    public void TestErrorCarriedBelowLeft() {
+        // The upper left sub-image is white with no error, so only the upper right one reaches the
+        // lower left one: 0.4375 + 3/16 * 0.375 is above one half.
+        char[][] chars = dither(new double[][]{{1, DARK_GRAY}, {0.4375, 0}});
+        assertEquals(WHITE, chars[0][0]);
+        assertEquals(BLACK, chars[0][1]);
+        assertEquals(WHITE, chars[1][0]);
+    }
+
+    @Test
+    public void TestErrorCarriedBelowRight() {
+        // The upper right and lower left sub-images become exactly white with the error they receive, so
+        // only the upper left one reaches the lower right one: 0.49 + 1/16 * 0.375 is above one half.
+        double upperRight = 1 - DARK_GRAY * 7 / 16;
+        double lowerLeft = 1 - DARK_GRAY * 5 / 16;
+        char[][] chars = dither(new double[][]{{DARK_GRAY, upperRight}, {lowerLeft, 0.49}});
+        assertEquals(BLACK, chars[0][0]);
+        assertEquals(WHITE, chars[0][1]);
+        assertEquals(WHITE, chars[1][0]);
+        assertEquals(WHITE, chars[1][1]);
+        assertEquals(BLACK, dither(new double[][]{{0.49}})[0][0]);
+    }
+
+    @Test
+    public void TestResetForgetsError() {
+        ErrorDiffusionDitherer ditherer = new ErrorDiffusionDitherer(1);
+        dither(ditherer, new double[][]{{DARK_GRAY}});
+        ditherer.reset();
+        assertEquals(BLACK, dither(ditherer, new double[][]{{0.4375}})[0][0]);
+    }
+
+    @Test
+    public void TestKeepsAverageBrightness() {
+        int size = 64;
+        double[][] rows = new double[size][size];
+        for (double[] row : rows) {
+            Arrays.fill(row, 0.25);
+        }
+        int white = 0;
+        for (char[] row : dither(rows)) {
+            for (char c : row) {
+                white += c == WHITE ? 1 : 0;
+            }
+        }
+        assertEquals(0.25, (double) white / (size * size), 0.01);
+    }
+}
@@ -0,0 +1,41 @@
+package oh_tests;
+
+import org.junit.Test;
+import image_char_matching.CharConverter;
+import image_char_matching.GlyphCoverageCache;
+import image_char_matching.SubImgCharMatcher;
+
+/**
+ * Switches the font of a charset, and checks the brightnesses follow the font and its glyphs are
+ * sampled only once.
+ */
+public class FontTest {
+    private static final String FONT = "Monospaced";
+    private static final char[] CHARSET = " .:-=+*#%@0123456789".toCharArray();
+
+    @Test
+    public void TestSwitchingBackRestoresCharset() {
+        SubImgCharMatcher matcher = new SubImgCharMatcher(CHARSET);
+        long defaultFingerprint = matcher.getSnapshot().getFingerprint();
+        long defaultVersion = matcher.getSnapshot().getVersion();
+        matcher.setFont(FONT);
+        assert FONT.equals(matcher.getFont());
+        assert matcher.getSnapshot().getFingerprint() != defaultFingerprint;
+        assert matcher.getSnapshot().getVersion() > defaultVersion;
+        for (char c : CHARSET) {
+            assert matcher.getSnapshot().getRawBrightness(c) == GlyphCoverageCache.getBrightness(FONT, c);
+        }
+        matcher.setFont(CharConverter.FONT_NAME);
+        assert matcher.getSnapshot().getFingerprint() == defaultFingerprint;
+    }
+
+    @Test
+    public void TestGlyphsSampledOnce() {
+        byte[] coverage = GlyphCoverageCache.getCoverage(FONT, '@');
+        int resolution = GlyphCoverageCache.SAMPLING_RESOLUTION;
+        assert coverage.length == resolution * resolution;
+        assert GlyphCoverageCache.getCoverage(FONT, '@') == coverage;
+        assert GlyphCoverageCache.getBrightness(FONT, ' ') == 1.0;
+        assert GlyphCoverageCache.getBrightness(FONT, '@') < GlyphCoverageCache.getBrightness(FONT, '.');
+    }
+}
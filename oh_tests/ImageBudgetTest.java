@@ -0,0 +1,70 @@
+package oh_tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import image.Image;
+import image.ImageBudget;
+
+/**
+ * Loads an image of uniform blocks within budgets that force different scale factors and subsampling
+ * periods, and checks every block becomes a pixel of its color.
+ */
+public class ImageBudgetTest {
+    private static final int BLOCK_SIZE = 8;
+    private static final int BLOCKS_PER_ROW = 13;
+    private static final int BLOCKS_PER_COLUMN = 7;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static int blockColor(int blockRow, int blockColumn) {
+        return (blockRow * 37 % 256) << 16 | (blockColumn * 19 % 256) << 8 | (blockRow + blockColumn) * 11;
+    }
+
+    private String createImage() throws IOException {
+        BufferedImage image = new BufferedImage(BLOCKS_PER_ROW * BLOCK_SIZE, BLOCKS_PER_COLUMN * BLOCK_SIZE,
+                BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, blockColor(y / BLOCK_SIZE, x / BLOCK_SIZE));
+            }
+        }
+        File file = folder.newFile("image.png");
+        ImageIO.write(image, "png", file);
+        return file.getPath();
+    }
+
+    private void assertBlocksBecomePixels(long maxPixels, long maxBytes) throws IOException {
+        String filename = createImage();
+        ImageBudget budget = new ImageBudget(maxPixels, maxBytes);
+        assertEquals(BLOCK_SIZE, budget.getScaleFactor(BLOCKS_PER_ROW * BLOCK_SIZE,
+                BLOCKS_PER_COLUMN * BLOCK_SIZE));
+        Image image = budget.load(filename);
+        assertEquals(BLOCKS_PER_ROW, image.getWidth());
+        assertEquals(BLOCKS_PER_COLUMN, image.getHeight());
+        for (int row = 0; row < BLOCKS_PER_COLUMN; row++) {
+            for (int column = 0; column < BLOCKS_PER_ROW; column++) {
+                assertEquals(blockColor(row, column), image.getPixel(row, column).getRGB() & 0xffffff);
+            }
+        }
+    }
+
+    @Test
+    public void TestBoxFilterOfFullDecode() throws IOException {
+        assertBlocksBecomePixels(BLOCKS_PER_ROW * BLOCKS_PER_COLUMN, 1L << 30);
+    }
+
+    @Test
+    public void TestBoxFilterOfSubsampledDecode() throws IOException {
+        long blocks = BLOCKS_PER_ROW * BLOCKS_PER_COLUMN;
+        // The raster subsampled by 2 fits, the full one doesn't, so blocks of 4 samples are averaged.
+        assertBlocksBecomePixels(blocks, blocks * 16 * ImageBudget.BYTES_PER_RASTER_PIXEL);
+    }
+}
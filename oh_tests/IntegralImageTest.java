@@ -0,0 +1,91 @@
+package oh_tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Color;
+import java.util.Random;
+import org.junit.Test;
+import image.Image;
+import image.IntegralImage;
+
+/**
+ * Averages random regions with IntegralImage and with Image, which sums their pixels one by one, and
+ * checks both agree, for regions with edges inside pixels, single pixels and regions that reach outside
+ * the image. Outside the image IntegralImage counts white, so those regions are compared with the same
+ * region of a copy of the image with a white margin.
+ */
+public class IntegralImageTest {
+    private static final long SEED = 7;
+    private static final int WIDTH = 90;
+    private static final int HEIGHT = 60;
+    private static final int MARGIN = 20;
+    private static final int REGIONS = 2000;
+    private static final double TOLERANCE = 1e-9;
+
+    private static Image createWithMargin(Image image) {
+        int width = WIDTH + 2 * MARGIN;
+        int height = HEIGHT + 2 * MARGIN;
+        Color[][] pixels = new Color[height][width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                boolean inside = y >= MARGIN && y < MARGIN + HEIGHT && x >= MARGIN && x < MARGIN + WIDTH;
+                pixels[y][x] = inside ? image.getPixel(y - MARGIN, x - MARGIN) : Color.WHITE;
+            }
+        }
+        return new Image(pixels, width, height);
+    }
+
+    private static double randomEdge(Random random, double low, double high) {
+        return low + random.nextDouble() * (high - low);
+    }
+
+    @Test
+    public void TestRegionsInsideImage() {
+        Image image = TestImages.createGradient(WIDTH, HEIGHT);
+        IntegralImage integral = new IntegralImage(image);
+        Random random = new Random(SEED);
+        for (int i = 0; i < REGIONS; i++) {
+            double left = randomEdge(random, 0, WIDTH - 1);
+            double top = randomEdge(random, 0, HEIGHT - 1);
+            double right = randomEdge(random, left + 0.01, WIDTH);
+            double bottom = randomEdge(random, top + 0.01, HEIGHT);
+            assertEquals(image.calculateAverageBrightnessOfRegion(left, top, right, bottom),
+                    integral.calculateAverageBrightnessOfRegion(left, top, right, bottom), TOLERANCE);
+        }
+    }
+
+    @Test
+    public void TestSinglePixels() {
+        Image image = TestImages.createGradient(WIDTH, HEIGHT);
+        IntegralImage integral = new IntegralImage(image);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertEquals(image.calculateAverageBrightnessOfRegion(x, y, x + 1, y + 1),
+                        integral.calculateAverageBrightnessOfRegion(x, y, x + 1, y + 1), TOLERANCE);
+            }
+        }
+    }
+
+    @Test
+    public void TestRegionsOutsideImageAreWhite() {
+        Image image = TestImages.createGradient(WIDTH, HEIGHT);
+        IntegralImage integral = new IntegralImage(image);
+        Image withMargin = createWithMargin(image);
+        Random random = new Random(SEED);
+        for (int i = 0; i < REGIONS; i++) {
+            double left = randomEdge(random, -MARGIN, WIDTH + MARGIN - 1);
+            double top = randomEdge(random, -MARGIN, HEIGHT + MARGIN - 1);
+            double right = randomEdge(random, left + 0.01, WIDTH + MARGIN);
+            double bottom = randomEdge(random, top + 0.01, HEIGHT + MARGIN);
+            assertEquals(withMargin.calculateAverageBrightnessOfRegion(left + MARGIN, top + MARGIN,
+                            right + MARGIN, bottom + MARGIN),
+                    integral.calculateAverageBrightnessOfRegion(left, top, right, bottom), TOLERANCE);
+        }
+        // Entirely outside, past every edge.
+        assertEquals(1, integral.calculateAverageBrightnessOfRegion(-10, -10, -5, -5), TOLERANCE);
+        assertEquals(1, integral.calculateAverageBrightnessOfRegion(WIDTH + 1, 0, WIDTH + 3, HEIGHT),
+                TOLERANCE);
+        assertEquals(1, integral.calculateAverageBrightnessOfRegion(0, HEIGHT, WIDTH, HEIGHT + 4),
+                TOLERANCE);
+    }
+}
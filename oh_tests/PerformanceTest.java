@@ -0,0 +1,344 @@
+package oh_tests;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ascii_art.AsciiArtAlgorithm;
+import ascii_output.AsciiOutput;
+import ascii_output.BinaryAsciiOutput;
+import ascii_output.ConsoleAsciiOutput;
+import ascii_output.HtmlAsciiOutput;
+import ascii_output.RasterAsciiOutput;
+import image.Image;
+import image_char_matching.CharsetSnapshot;
+
+/**
+ * Renders the reference images at several resolutions and charsets and compares the arts with golden
+ * files, then holds image loading, rendering and every output to budgets of wall time and of bytes
+ * allocated, so a performance regression fails like a functional one.
+ * <p>
+ * Wall time is measured in units of a fixed calibration loop run on the same machine, so the budgets
+ * hold on faster and slower machines alike. Allocations are counted on the measuring thread only, and
+ * their budgets are skipped on a JVM that can't count them, while the time budgets still hold.
+ * The goldens are generated by running this class, and have to be regenerated whenever a change of the
+ * matching is intended. The chars are matched with fixed brightnesses rather than with ones taken from
+ * a font, so the goldens hold whatever fonts the machine has. Running the class also prints the
+ * measured figures to compare with the budgets.
+ */
+public class PerformanceTest {
+    private static final String[] IMAGES = {"cat.jpeg", "board.jpeg"};
+    private static final int[] RESOLUTIONS = {32, 64, 128};
+    private static final String[] CHARSETS = {"0123456789", " .:-=+*#%@"};
+    // Raw brightness of every char of CHARSETS, as rendered in the Dialog font.
+    private static final double[][] CHARSET_BRIGHTNESSES = {
+            {0.890625, 0.9140625, 0.90625, 0.890625, 0.890625, 0.89453125, 0.8828125, 0.92578125,
+                    0.859375, 0.8828125},
+            {1.0, 0.9921875, 0.984375, 0.984375, 0.921875, 0.93359375, 0.921875, 0.828125, 0.8515625,
+                    0.7734375},
+    };
+    private static final String GOLDEN_DIRECTORY = "oh_tests/goldens";
+    private static final int BUDGET_RESOLUTION = 128;
+    // A wide art, whose raster is large enough for its rows to be filled in parallel.
+    private static final int LARGE_RASTER_RESOLUTION = 512;
+    private static final int WARMUP_RUNS = 5;
+    private static final int MEASURED_RUNS = 9;
+    private static final int CALIBRATION_SIZE = 1 << 20;
+
+    // Budgets of the median run, in calibration loops and in bytes per pixel of the image or per cell
+    // of the art. They leave about three times the measured figures, for noisy machines.
+    private static final double LOAD_TIME_BUDGET = 45;
+    private static final double LOAD_BYTES_PER_PIXEL_BUDGET = 210;
+    private static final double RENDER_TIME_BUDGET = 6;
+    private static final double RENDER_BYTES_PER_CELL_BUDGET = 60;
+    private static final double CONSOLE_TIME_BUDGET = 8;
+    private static final double CONSOLE_BYTES_PER_CELL_BUDGET = 320;
+    private static final double HTML_TIME_BUDGET = 3;
+    private static final double HTML_BYTES_PER_CELL_BUDGET = 150;
+    private static final double BINARY_TIME_BUDGET = 3;
+    private static final double BINARY_BYTES_PER_CELL_BUDGET = 50;
+    private static final double RASTER_TIME_BUDGET = 15;
+    private static final double RASTER_BYTES_PER_CELL_BUDGET = 640;
+    private static final double LARGE_RASTER_TIME_BUDGET = 220;
+    private static final double LARGE_RASTER_BYTES_PER_CELL_BUDGET = 600;
+
+    /**
+     * A step whose time and allocations are measured.
+     */
+    private interface Step {
+        void run() throws IOException;
+    }
+
+    /**
+     * The median time and allocations of the runs of a step, with allocations of -1 if they can't be
+     * counted.
+     */
+    private static class Measurement {
+        private final double calibrationLoops;
+        private final long bytes;
+
+        private Measurement(double calibrationLoops, long bytes) {
+            this.calibrationLoops = calibrationLoops;
+            this.bytes = bytes;
+        }
+    }
+
+    private static volatile double calibrationSink;
+
+    @Rule
+    public TemporaryFolder outputFolder = new TemporaryFolder();
+
+    private static String goldenName(String image, int resolution, int charsetIndex) {
+        return image + "-" + resolution + "-" + charsetIndex + ".txt";
+    }
+
+    private static String toText(char[][] art) {
+        StringBuilder text = new StringBuilder();
+        for (char[] row : art) {
+            text.append(row).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static char[][] render(Image image, int resolution, String charset) {
+        return new AsciiArtAlgorithm(image, resolution, charset.toCharArray()).run();
+    }
+
+    /**
+     * Renders an image like render, but matches the chars with the fixed brightnesses of the charset.
+     */
+    private static char[][] renderGolden(Image image, int resolution, int charsetIndex) {
+        char[] chars = CHARSETS[charsetIndex].toCharArray();
+        double[] brightnesses = new AsciiArtAlgorithm(image, resolution, chars).calculateBrightnesses();
+        char[][] art = new char[brightnesses.length / resolution][resolution];
+        CharsetSnapshot.of(chars, CHARSET_BRIGHTNESSES[charsetIndex]).matchAll(brightnesses, art);
+        return art;
+    }
+
+    /**
+     * Returns the counter of the bytes allocated by a thread.
+     * @return the counter, or null if the JVM can't count allocations
+     */
+    private static com.sun.management.ThreadMXBean getAllocationCounter() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        if (!allocations.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        allocations.setThreadAllocatedMemoryEnabled(true);
+        return allocations;
+    }
+
+    private static long getAllocatedBytes(com.sun.management.ThreadMXBean allocations, long threadId) {
+        return allocations == null ? 0 : allocations.getThreadAllocatedBytes(threadId);
+    }
+
+    /**
+     * Runs a loop of a fixed amount of arithmetic and memory traffic, like that of a render.
+     * @return the median time of the loop, in nanoseconds
+     */
+    private static long calibrate() {
+        double[] values = new double[CALIBRATION_SIZE];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i % 256;
+        }
+        long[] nanos = new long[WARMUP_RUNS + MEASURED_RUNS];
+        for (int run = 0; run < nanos.length; run++) {
+            long start = System.nanoTime();
+            double sum = 0;
+            for (int i = 0; i < values.length; i++) {
+                sum += values[i] * 0.2126 + values[(i * 7) & (values.length - 1)] * 0.7152;
+            }
+            calibrationSink = sum;
+            nanos[run] = System.nanoTime() - start;
+        }
+        long[] measured = Arrays.copyOfRange(nanos, WARMUP_RUNS, nanos.length);
+        Arrays.sort(measured);
+        return measured[measured.length / 2];
+    }
+
+    private static Measurement measure(Step step) throws IOException {
+        com.sun.management.ThreadMXBean allocations = getAllocationCounter();
+        long threadId = Thread.currentThread().getId();
+        for (int run = 0; run < WARMUP_RUNS; run++) {
+            step.run();
+        }
+        long[] nanos = new long[MEASURED_RUNS];
+        long[] bytes = new long[MEASURED_RUNS];
+        for (int run = 0; run < MEASURED_RUNS; run++) {
+            long startBytes = getAllocatedBytes(allocations, threadId);
+            long start = System.nanoTime();
+            step.run();
+            nanos[run] = System.nanoTime() - start;
+            bytes[run] = getAllocatedBytes(allocations, threadId) - startBytes;
+        }
+        Arrays.sort(nanos);
+        Arrays.sort(bytes);
+        return new Measurement((double) nanos[MEASURED_RUNS / 2] / calibrate(),
+                allocations == null ? -1 : bytes[MEASURED_RUNS / 2]);
+    }
+
+    private static Measurement measureOutput(AsciiOutput output, char[][] art) throws IOException {
+        return measure(() -> output.out(art));
+    }
+
+    private static void assertWithinBudget(String name, Measurement measurement, long units,
+                                           double timeBudget, double bytesPerUnitBudget) {
+        Assert.assertTrue(String.format("%s took %.1f calibration loops, budget %.1f", name,
+                measurement.calibrationLoops, timeBudget), measurement.calibrationLoops <= timeBudget);
+        if (measurement.bytes < 0) {
+            return;
+        }
+        double bytesPerUnit = (double) measurement.bytes / units;
+        Assert.assertTrue(String.format("%s allocated %.1f bytes per unit, budget %.1f", name, bytesPerUnit,
+                bytesPerUnitBudget), bytesPerUnit <= bytesPerUnitBudget);
+    }
+
+    @Test
+    public void TestGoldens() throws IOException {
+        for (String imageName : IMAGES) {
+            Image image = new Image(imageName);
+            for (int resolution : RESOLUTIONS) {
+                for (int i = 0; i < CHARSETS.length; i++) {
+                    String expected = new String(Files.readAllBytes(Paths.get(GOLDEN_DIRECTORY,
+                            goldenName(imageName, resolution, i))), StandardCharsets.UTF_8);
+                    Assert.assertEquals(goldenName(imageName, resolution, i), expected,
+                            toText(renderGolden(image, resolution, i)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void TestLoadBudget() throws IOException {
+        for (String imageName : IMAGES) {
+            Image image = new Image(imageName);
+            assertWithinBudget("Loading " + imageName, measure(() -> new Image(imageName)),
+                    (long) image.getWidth() * image.getHeight(), LOAD_TIME_BUDGET,
+                    LOAD_BYTES_PER_PIXEL_BUDGET);
+        }
+    }
+
+    @Test
+    public void TestRenderBudget() throws IOException {
+        for (String imageName : IMAGES) {
+            Image image = new Image(imageName);
+            char[][] art = render(image, BUDGET_RESOLUTION, CHARSETS[0]);
+            assertWithinBudget("Rendering " + imageName, measure(() -> render(image, BUDGET_RESOLUTION,
+                    CHARSETS[0])), (long) art.length * art[0].length, RENDER_TIME_BUDGET,
+                    RENDER_BYTES_PER_CELL_BUDGET);
+        }
+    }
+
+    @Test
+    public void TestOutputBudgets() throws IOException {
+        char[][] art = render(new Image(IMAGES[0]), BUDGET_RESOLUTION, CHARSETS[0]);
+        long cells = (long) art.length * art[0].length;
+        Path directory = outputFolder.getRoot().toPath();
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Measurement consoleMeasurement;
+        try {
+            consoleMeasurement = measureOutput(new ConsoleAsciiOutput(), art);
+        } finally {
+            System.setOut(console);
+        }
+        assertWithinBudget("Console output", consoleMeasurement, cells, CONSOLE_TIME_BUDGET,
+                CONSOLE_BYTES_PER_CELL_BUDGET);
+        assertWithinBudget("HTML output", measureOutput(new HtmlAsciiOutput(
+                directory.resolve("out.html").toString(), "Courier New"), art), cells, HTML_TIME_BUDGET,
+                HTML_BYTES_PER_CELL_BUDGET);
+        assertWithinBudget("Binary output", measureOutput(new BinaryAsciiOutput(
+                directory.resolve("out.asc").toString()), art), cells, BINARY_TIME_BUDGET,
+                BINARY_BYTES_PER_CELL_BUDGET);
+        assertWithinBudget("Raster output", measureOutput(new RasterAsciiOutput(
+                directory.resolve("out.png").toString(), "Courier New",
+                RasterAsciiOutput.DEFAULT_CELL_SIZE), art), cells, RASTER_TIME_BUDGET,
+                RASTER_BYTES_PER_CELL_BUDGET);
+    }
+
+    @Test
+    public void TestLargeRasterBudget() throws IOException {
+        char[][] art = render(new Image(IMAGES[0]), LARGE_RASTER_RESOLUTION, CHARSETS[0]);
+        String filename = outputFolder.getRoot().toPath().resolve("out.png").toString();
+        assertWithinBudget("Raster output of " + LARGE_RASTER_RESOLUTION + " columns",
+                measureOutput(new RasterAsciiOutput(filename, "Courier New",
+                        RasterAsciiOutput.DEFAULT_CELL_SIZE), art), (long) art.length * art[0].length,
+                LARGE_RASTER_TIME_BUDGET, LARGE_RASTER_BYTES_PER_CELL_BUDGET);
+    }
+
+    /**
+     * Writes the golden files of the current matching, and prints the measured figures of every budget.
+     * @param args unused
+     * @throws IOException if an image can't be read or a golden file can't be written
+     */
+    public static void main(String[] args) throws IOException {
+        Files.createDirectories(Paths.get(GOLDEN_DIRECTORY));
+        for (String imageName : IMAGES) {
+            Image image = new Image(imageName);
+            for (int resolution : RESOLUTIONS) {
+                for (int i = 0; i < CHARSETS.length; i++) {
+                    Files.write(Paths.get(GOLDEN_DIRECTORY, goldenName(imageName, resolution, i)),
+                            toText(renderGolden(image, resolution, i)).getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            Measurement load = measure(() -> new Image(imageName));
+            char[][] art = render(image, BUDGET_RESOLUTION, CHARSETS[0]);
+            Measurement run = measure(() -> render(image, BUDGET_RESOLUTION, CHARSETS[0]));
+            System.out.printf("%s: load %.1f loops, %.1f bytes/pixel; render %.1f loops, %.1f bytes/cell%n",
+                    imageName, load.calibrationLoops,
+                    (double) load.bytes / (image.getWidth() * image.getHeight()), run.calibrationLoops,
+                    (double) run.bytes / (art.length * art[0].length));
+        }
+        char[][] art = render(new Image(IMAGES[0]), BUDGET_RESOLUTION, CHARSETS[0]);
+        long cells = (long) art.length * art[0].length;
+        TemporaryFolder folder = new TemporaryFolder();
+        folder.create();
+        try {
+            Path directory = folder.getRoot().toPath();
+            AsciiOutput[] outputs = {
+                    new HtmlAsciiOutput(directory.resolve("out.html").toString(), "Courier New"),
+                    new BinaryAsciiOutput(directory.resolve("out.asc").toString()),
+                    new RasterAsciiOutput(directory.resolve("out.png").toString(), "Courier New",
+                            RasterAsciiOutput.DEFAULT_CELL_SIZE),
+            };
+            for (AsciiOutput output : outputs) {
+                Measurement measurement = measureOutput(output, art);
+                System.out.printf("%s: %.1f loops, %.1f bytes/cell%n", output.getClass().getSimpleName(),
+                        measurement.calibrationLoops, (double) measurement.bytes / cells);
+            }
+            char[][] largeArt = render(new Image(IMAGES[0]), LARGE_RASTER_RESOLUTION, CHARSETS[0]);
+            Measurement largeRaster = measureOutput(new RasterAsciiOutput(
+                    directory.resolve("out.png").toString(), "Courier New",
+                    RasterAsciiOutput.DEFAULT_CELL_SIZE), largeArt);
+            System.out.printf("RasterAsciiOutput of %d columns: %.1f loops, %.1f bytes/cell%n",
+                    LARGE_RASTER_RESOLUTION, largeRaster.calibrationLoops,
+                    (double) largeRaster.bytes / (largeArt.length * largeArt[0].length));
+        } finally {
+            folder.delete();
+        }
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Measurement measurement;
+        try {
+            measurement = measureOutput(new ConsoleAsciiOutput(), art);
+        } finally {
+            System.setOut(console);
+        }
+        System.out.printf("ConsoleAsciiOutput: %.1f loops, %.1f bytes/cell%n",
+                measurement.calibrationLoops, (double) measurement.bytes / cells);
+    }
+}
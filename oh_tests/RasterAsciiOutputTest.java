@@ -0,0 +1,61 @@
+package oh_tests;
+
+import java.awt.image.BufferedImage;
+import org.junit.Test;
+import ascii_output.RasterAsciiOutput;
+
+/**
+ * Renders ASCII arts to images, and checks every char lands in its own cell.
+ */
+public class RasterAsciiOutputTest {
+    private static final int WHITE = 0xffffff;
+    private static final int CELL_SIZE = 8;
+
+    private static boolean isBlankCell(BufferedImage image, int row, int column) {
+        for (int y = row * CELL_SIZE; y < (row + 1) * CELL_SIZE; y++) {
+            for (int x = column * CELL_SIZE; x < (column + 1) * CELL_SIZE; x++) {
+                if ((image.getRGB(x, y) & WHITE) != WHITE) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Test
+    public void TestCharsInCells() {
+        char[][] art = {
+                {' ', '@', ' '},
+                {'#', ' ', '#'},
+        };
+        BufferedImage image = new RasterAsciiOutput("art.png", "Monospaced", CELL_SIZE).render(art);
+        assert image.getWidth() == 3 * CELL_SIZE && image.getHeight() == 2 * CELL_SIZE;
+        for (int row = 0; row < art.length; row++) {
+            for (int column = 0; column < art[row].length; column++) {
+                assert isBlankCell(image, row, column) == (art[row][column] == ' ') : row + " " + column;
+            }
+        }
+    }
+
+    @Test
+    public void TestSameCharsSamePixels() {
+        char[][] art = {{'@', 'x', '@'}};
+        BufferedImage image = new RasterAsciiOutput("art.jpg", "Monospaced", CELL_SIZE).render(art);
+        for (int y = 0; y < CELL_SIZE; y++) {
+            for (int x = 0; x < CELL_SIZE; x++) {
+                assert image.getRGB(x, y) == image.getRGB(2 * CELL_SIZE + x, y);
+            }
+        }
+    }
+
+    @Test
+    public void TestRejectsUnknownFormat() {
+        boolean rejected = false;
+        try {
+            new RasterAsciiOutput("art.gif", "Monospaced", CELL_SIZE);
+        } catch (IllegalArgumentException e) {
+            rejected = true;
+        }
+        assert rejected;
+    }
+}
@@ -0,0 +1,84 @@
+package oh_tests;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import org.junit.Assume;
+import org.junit.Test;
+import ascii_art.AsciiArtAlgorithm;
+import image_char_matching.ContrastNormalizer;
+import image_char_matching.SubCellEncoder;
+
+/**
+ * Checks that repeated renders at an unchanged resolution reuse the buffers of the algorithm, by
+ * counting the bytes the rendering thread allocates.
+ */
+public class RenderAllocationTest {
+    private static final int IMAGE_SIZE = 200;
+    private static final int WARMUP_RENDERS = 200;
+    private static final int MEASURED_RENDERS = 100;
+    // The allocation counter itself may allocate a little, but a single reallocated buffer is far more.
+    private static final long TOLERANCE_BYTES = 1024;
+
+    private static AsciiArtAlgorithm createAlgorithm(int resolution) {
+        return new AsciiArtAlgorithm(TestImages.createGradient(IMAGE_SIZE, IMAGE_SIZE), resolution,
+                "0123456789".toCharArray());
+    }
+
+    private static long measureRenders(AsciiArtAlgorithm algorithm) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        Assume.assumeTrue(allocations.isThreadAllocatedMemorySupported());
+        allocations.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < WARMUP_RENDERS; i++) {
+            algorithm.setAChangeOfImageWasMade(true);
+            algorithm.run();
+        }
+        long before = allocations.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_RENDERS; i++) {
+            algorithm.setAChangeOfImageWasMade(true);
+            algorithm.run();
+        }
+        return allocations.getThreadAllocatedBytes(threadId) - before;
+    }
+
+    private static void assertNoAllocations(AsciiArtAlgorithm algorithm) {
+        long allocated = measureRenders(algorithm);
+        assert allocated <= TOLERANCE_BYTES :
+                allocated + " bytes allocated by " + MEASURED_RENDERS + " renders";
+    }
+
+    @Test
+    public void TestPaddedGrid() {
+        assertNoAllocations(createAlgorithm(64));
+    }
+
+    @Test
+    public void TestFractionalGrid() {
+        assertNoAllocations(createAlgorithm(50));
+    }
+
+    @Test
+    public void TestDithering() {
+        AsciiArtAlgorithm algorithm = createAlgorithm(64);
+        algorithm.setDithering(true);
+        assertNoAllocations(algorithm);
+    }
+
+    @Test
+    public void TestSubCells() {
+        AsciiArtAlgorithm algorithm = createAlgorithm(64);
+        algorithm.setSubCellMode(SubCellEncoder.Mode.BRAILLE);
+        assertNoAllocations(algorithm);
+    }
+
+    @Test
+    public void TestReusesArt() {
+        AsciiArtAlgorithm algorithm = createAlgorithm(64);
+        char[][] first = algorithm.run();
+        algorithm.setContrastMode(ContrastNormalizer.Mode.NONE);
+        algorithm.setAChangeOfImageWasMade(true);
+        assert algorithm.run() == first;
+    }
+}
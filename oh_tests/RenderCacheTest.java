@@ -0,0 +1,124 @@
+package oh_tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ascii_art.RenderCache;
+import ascii_output.BinaryAsciiOutput;
+import image_char_matching.CharsetSnapshot;
+
+/**
+ * Stores arts in a render cache and reads them back, and checks its keys, its eviction of the least
+ * recently used arts, and that broken entries and failed writes leave nothing behind.
+ */
+public class RenderCacheTest {
+    private static final String ENTRY_SUFFIX = ".asc";
+    private static final String MODE = "mode";
+    private static final char[] CHARS = {' ', '.', '@'};
+    private static final CharsetSnapshot CHARSET = CharsetSnapshot.of(CHARS, new double[]{1, 0.5, 0});
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static char[][] createArt(char first) {
+        return new char[][]{
+                {first, '.', '@', ' '},
+                {'@', first, ' ', '.'},
+        };
+    }
+
+    private static Path entryOf(File directory, String key) {
+        return directory.toPath().resolve(key + ENTRY_SUFFIX);
+    }
+
+    private static long measureEntrySize(File directory) throws IOException {
+        File file = new File(directory, "measured" + ENTRY_SUFFIX);
+        new BinaryAsciiOutput(file.getPath()).write(createArt('0'));
+        return file.length();
+    }
+
+    private static int countFiles(File directory) {
+        String[] names = directory.list();
+        return names == null ? 0 : names.length;
+    }
+
+    @Test
+    public void TestRoundTrip() throws IOException {
+        RenderCache cache = new RenderCache(folder.newFolder("cache").getPath(), Long.MAX_VALUE);
+        char[][] art = createArt('@');
+        cache.put("key", art);
+        assertArrayEquals(art, cache.get("key"));
+        assertNull(cache.get("other"));
+    }
+
+    @Test
+    public void TestKeyStability() throws IOException {
+        String cacheDirectory = folder.newFolder("cache").getPath();
+        File image = folder.newFile("image.bin");
+        Files.write(image.toPath(), new byte[]{1, 2, 3});
+        RenderCache cache = new RenderCache(cacheDirectory, Long.MAX_VALUE);
+        String key = cache.createKey(image.getPath(), 32, CHARSET, MODE);
+        assertEquals(key, cache.createKey(image.getPath(), 32, CHARSET, MODE));
+        assertEquals(key, new RenderCache(cacheDirectory, Long.MAX_VALUE).createKey(image.getPath(), 32,
+                CHARSET, MODE));
+        assertNotEquals(key, cache.createKey(image.getPath(), 64, CHARSET, MODE));
+        assertNotEquals(key, cache.createKey(image.getPath(), 32, CHARSET, MODE + "2"));
+        assertNotEquals(key, cache.createKey(image.getPath(), 32,
+                CharsetSnapshot.of(CHARS, new double[]{1, 0.4, 0}), MODE));
+        Files.write(image.toPath(), new byte[]{1, 2, 3, 4});
+        assertNotEquals(key, cache.createKey(image.getPath(), 32, CHARSET, MODE));
+    }
+
+    @Test
+    public void TestEvictsLeastRecentlyUsed() throws IOException {
+        File directory = folder.newFolder("cache");
+        long entrySize = measureEntrySize(folder.getRoot());
+        RenderCache cache = new RenderCache(directory.getPath(), 2 * entrySize);
+        cache.put("first", createArt('1'));
+        cache.put("second", createArt('2'));
+        Files.setLastModifiedTime(entryOf(directory, "first"), FileTime.fromMillis(1_000_000));
+        Files.setLastModifiedTime(entryOf(directory, "second"), FileTime.fromMillis(2_000_000));
+        // Reading the first art makes it the most recently used, so the second one goes.
+        assertArrayEquals(createArt('1'), cache.get("first"));
+        cache.put("third", createArt('3'));
+        assertTrue(Files.exists(entryOf(directory, "first")));
+        assertFalse(Files.exists(entryOf(directory, "second")));
+        assertTrue(Files.exists(entryOf(directory, "third")));
+        assertNull(cache.get("second"));
+    }
+
+    @Test
+    public void TestTruncatedEntryIsDropped() throws IOException {
+        File directory = folder.newFolder("cache");
+        RenderCache cache = new RenderCache(directory.getPath(), Long.MAX_VALUE);
+        cache.put("key", createArt('@'));
+        Path entry = entryOf(directory, "key");
+        try (RandomAccessFile file = new RandomAccessFile(entry.toFile(), "rw")) {
+            file.setLength(file.length() / 2);
+        }
+        assertNull(cache.get("key"));
+        assertFalse(Files.exists(entry));
+    }
+
+    @Test
+    public void TestFailedWriteLeavesNoTempFile() throws IOException {
+        File directory = folder.newFolder("cache");
+        RenderCache cache = new RenderCache(directory.getPath(), Long.MAX_VALUE);
+        // The entry of this key is in a directory that doesn't exist, so moving the art there fails.
+        cache.put("missing/key", createArt('@'));
+        assertEquals(0, countFiles(directory));
+    }
+}
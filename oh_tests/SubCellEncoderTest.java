@@ -0,0 +1,110 @@
+package oh_tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import org.junit.Test;
+import image_char_matching.SubCellEncoder;
+
+/**
+ * Encodes hand-built grids of sub-pixel brightnesses, drawn with '#' for dark and '.' for light
+ * sub-pixels, and checks the code point of every cell in the Braille and quadrant modes.
+ */
+public class SubCellEncoderTest {
+    private static final double DARK = 0;
+    private static final double LIGHT = 1;
+
+    /**
+     * Returns the brightnesses of a grid drawn one row of sub-pixels per string.
+     */
+    private static double[] draw(String... rows) {
+        int columns = rows[0].length();
+        double[] brightnesses = new double[rows.length * columns];
+        for (int y = 0; y < rows.length; y++) {
+            for (int x = 0; x < columns; x++) {
+                brightnesses[y * columns + x] = rows[y].charAt(x) == '#' ? DARK : LIGHT;
+            }
+        }
+        return brightnesses;
+    }
+
+    private static char encodeCell(SubCellEncoder.Mode mode, String... rows) {
+        char[][] chars = SubCellEncoder.encode(draw(rows), 1, mode);
+        assertEquals(1, chars.length);
+        return chars[0][0];
+    }
+
+    @Test
+    public void TestBrailleDots() {
+        assertEquals('\u2800', encodeCell(SubCellEncoder.Mode.BRAILLE, "..", "..", "..", ".."));
+        assertEquals('\u2801', encodeCell(SubCellEncoder.Mode.BRAILLE, "#.", "..", "..", ".."));
+        assertEquals('\u2802', encodeCell(SubCellEncoder.Mode.BRAILLE, "..", "#.", "..", ".."));
+        assertEquals('\u2804', encodeCell(SubCellEncoder.Mode.BRAILLE, "..", "..", "#.", ".."));
+        assertEquals('\u2808', encodeCell(SubCellEncoder.Mode.BRAILLE, ".#", "..", "..", ".."));
+        assertEquals('\u2810', encodeCell(SubCellEncoder.Mode.BRAILLE, "..", ".#", "..", ".."));
+        assertEquals('\u2820', encodeCell(SubCellEncoder.Mode.BRAILLE, "..", "..", ".#", ".."));
+        assertEquals('\u2840', encodeCell(SubCellEncoder.Mode.BRAILLE, "..", "..", "..", "#."));
+        assertEquals('\u2880', encodeCell(SubCellEncoder.Mode.BRAILLE, "..", "..", "..", ".#"));
+        assertEquals('\u2847', encodeCell(SubCellEncoder.Mode.BRAILLE, "#.", "#.", "#.", "#."));
+        assertEquals('\u28FF', encodeCell(SubCellEncoder.Mode.BRAILLE, "##", "##", "##", "##"));
+    }
+
+    @Test
+    public void TestQuadrantTable() {
+        String[][] cells = {
+                {"..", ".."}, {"#.", ".."}, {".#", ".."}, {"##", ".."},
+                {"..", "#."}, {"#.", "#."}, {".#", "#."}, {"##", "#."},
+                {"..", ".#"}, {"#.", ".#"}, {".#", ".#"}, {"##", ".#"},
+                {"..", "##"}, {"#.", "##"}, {".#", "##"}, {"##", "##"},
+        };
+        char[] expected = {
+                ' ', '\u2598', '\u259D', '\u2580', '\u2596', '\u258C', '\u259E', '\u259B',
+                '\u2597', '\u259A', '\u2590', '\u259C', '\u2584', '\u2599', '\u259F', '\u2588',
+        };
+        for (int i = 0; i < cells.length; i++) {
+            assertEquals(Arrays.toString(cells[i]), expected[i],
+                    encodeCell(SubCellEncoder.Mode.QUADRANT, cells[i]));
+        }
+    }
+
+    @Test
+    public void TestInkThreshold() {
+        double[] brightnesses = {
+                SubCellEncoder.INK_THRESHOLD, Math.nextDown(SubCellEncoder.INK_THRESHOLD),
+                LIGHT, LIGHT,
+        };
+        char[][] chars = SubCellEncoder.encode(brightnesses, 1, SubCellEncoder.Mode.QUADRANT);
+        assertEquals('\u259D', chars[0][0]);
+    }
+
+    @Test
+    public void TestCellLayout() {
+        // Two rows of two Braille cells, with a dot in the first and in the last cell only.
+        double[] brightnesses = draw(
+                "#...",
+                "....",
+                "....",
+                "....",
+                "....",
+                "....",
+                "....",
+                "...#");
+        char[][] chars = SubCellEncoder.encode(brightnesses, 2, SubCellEncoder.Mode.BRAILLE);
+        assertEquals(2, chars.length);
+        assertEquals('\u2801', chars[0][0]);
+        assertEquals('\u2800', chars[0][1]);
+        assertEquals('\u2800', chars[1][0]);
+        assertEquals('\u2880', chars[1][1]);
+    }
+
+    @Test
+    public void TestRejectsModeNone() {
+        try {
+            SubCellEncoder.encode(new double[]{DARK}, 1, SubCellEncoder.Mode.NONE);
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        fail("Encoded cells without sub-pixels");
+    }
+}
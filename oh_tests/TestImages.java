@@ -0,0 +1,29 @@
+package oh_tests;
+
+import java.awt.Color;
+import image.Image;
+
+/**
+ * Synthetic images shared by the tests, so they don't depend on image files.
+ */
+final class TestImages {
+    private TestImages() {
+    }
+
+    /**
+     * Creates an image of crossing gradients, with a different brightness in every region.
+     * @param width the width of the image
+     * @param height the height of the image
+     * @return the image
+     */
+    static Image createGradient(int width, int height) {
+        Color[][] pixels = new Color[height][width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int value = (x * y / 7 + x) % 256;
+                pixels[y][x] = new Color(value, 255 - value, (x + y) % 256);
+            }
+        }
+        return new Image(pixels, width, height);
+    }
+}
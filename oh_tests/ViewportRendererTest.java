@@ -0,0 +1,61 @@
+package oh_tests;
+
+import java.util.Arrays;
+import org.junit.Test;
+import ascii_art.Viewport;
+import ascii_art.ViewportRenderer;
+import image.Image;
+import image_char_matching.CharsetSnapshot;
+import image_char_matching.SubImgCharMatcher;
+
+/**
+ * Pans and zooms viewports, and checks the art against a render of the same viewport from scratch.
+ */
+public class ViewportRendererTest {
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 200;
+    private static final int COLUMNS = 40;
+
+    private static char[][] renderFromScratch(Image image, Viewport viewport, CharsetSnapshot charset) {
+        ViewportRenderer renderer = new ViewportRenderer();
+        renderer.setImage(image);
+        return renderer.render(viewport, charset);
+    }
+
+    @Test
+    public void TestPanComputesOnlyExposedCells() {
+        Image image = TestImages.createGradient(WIDTH, HEIGHT);
+        CharsetSnapshot charset = new SubImgCharMatcher("0123456789".toCharArray()).getSnapshot();
+        ViewportRenderer renderer = new ViewportRenderer();
+        renderer.setImage(image);
+        Viewport viewport = Viewport.whole(WIDTH, HEIGHT, COLUMNS).zoomed(true);
+        renderer.render(viewport, charset);
+        assert renderer.getComputedCells() == viewport.getColumns() * viewport.getRows();
+        int[][] offsets = {{1, 0}, {0, -1}, {-3, 2}};
+        for (int[] offset : offsets) {
+            viewport = viewport.panned(offset[0], offset[1]);
+            char[][] art = renderer.render(viewport, charset);
+            int keptColumns = viewport.getColumns() - Math.abs(offset[0]);
+            int keptRows = viewport.getRows() - Math.abs(offset[1]);
+            assert renderer.getComputedCells() == viewport.getColumns() * viewport.getRows() -
+                    keptColumns * keptRows;
+            assert Arrays.deepEquals(art, renderFromScratch(image, viewport, charset));
+        }
+    }
+
+    @Test
+    public void TestZoomMatchesRenderFromScratch() {
+        Image image = TestImages.createGradient(WIDTH, HEIGHT);
+        CharsetSnapshot charset = new SubImgCharMatcher("0123456789".toCharArray()).getSnapshot();
+        ViewportRenderer renderer = new ViewportRenderer();
+        renderer.setImage(image);
+        Viewport viewport = Viewport.whole(WIDTH, HEIGHT, COLUMNS);
+        while (viewport.canZoom(true)) {
+            viewport = viewport.zoomed(true);
+            assert Arrays.deepEquals(renderer.render(viewport, charset),
+                    renderFromScratch(image, viewport, charset));
+        }
+        assert viewport.getCellSize() >= Viewport.MIN_CELL_SIZE;
+        assert viewport.getZoomLevel() > 0;
+    }
+}